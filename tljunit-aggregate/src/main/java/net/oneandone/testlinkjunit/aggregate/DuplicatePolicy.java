@@ -0,0 +1,133 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.aggregate;
+
+import net.oneandone.testlinkjunit.tljunit.MergeRule;
+
+/**
+ * Decides which testcase is kept when the same Testlink id is found more than once in the merged files.
+ *
+ * @author Mirko Friedenhagen
+ */
+public enum DuplicatePolicy {
+
+    /** Keep every testcase, duplicates are not detected at all. */
+    all {
+        /** {@inheritDoc} */
+        @Override
+        boolean replaces(final Occurrence current, final Occurrence candidate) {
+            return false;
+        }
+    },
+
+    /** Keep the last testcase, as given by the order of the files and the position in the file. */
+    last {
+        /** {@inheritDoc} */
+        @Override
+        boolean replaces(final Occurrence current, final Occurrence candidate) {
+            return candidate.isAfter(current);
+        }
+    },
+
+    /**
+     * Keep the testcase with the worst result, <tt>FAILED</tt> before <tt>BLOCKED</tt> before <tt>PASSED</tt>, ranked
+     * by {@link MergeRule#rankOf(String)}.
+     */
+    worst {
+        /** {@inheritDoc} */
+        @Override
+        boolean replaces(final Occurrence current, final Occurrence candidate) {
+            return candidate.getRank() > current.getRank()
+                    || candidate.getRank() == current.getRank() && candidate.isAfter(current);
+        }
+    };
+
+    /**
+     * Whether <tt>candidate</tt> wins over the <tt>current</tt> winner.
+     *
+     * @param current
+     *            occurrence kept so far.
+     * @param candidate
+     *            another occurrence of the same id.
+     * @return true when <tt>candidate</tt> should be kept instead.
+     */
+    abstract boolean replaces(Occurrence current, Occurrence candidate);
+
+    /**
+     * Whether duplicates have to be detected in a first pass.
+     *
+     * @return false for {@link DuplicatePolicy#all}.
+     */
+    boolean detectsDuplicates() {
+        return this != all;
+    }
+
+    /**
+     * Position and severity of a testcase within the merged files.
+     */
+    static final class Occurrence {
+
+        /** Index of the file in the list of merged files. */
+        private final int file;
+
+        /** Position of the testcase within its file. */
+        private final int position;
+
+        /** Severity of the result, higher is worse. */
+        private final int rank;
+
+        /**
+         * @param file
+         *            index of the file in the list of merged files.
+         * @param position
+         *            position of the testcase within its file.
+         * @param result
+         *            one letter result of the testcase.
+         */
+        Occurrence(final int file, final int position, final String result) {
+            this.file = file;
+            this.position = position;
+            this.rank = MergeRule.rankOf(result);
+        }
+
+        /**
+         * @return severity of the result, higher is worse.
+         */
+        int getRank() {
+            return rank;
+        }
+
+        /**
+         * @param other
+         *            occurrence.
+         * @return true when this occurrence comes after <tt>other</tt>.
+         */
+        boolean isAfter(final Occurrence other) {
+            return file > other.file || file == other.file && position > other.position;
+        }
+
+        /**
+         * @param otherFile
+         *            index of the file in the list of merged files.
+         * @param otherPosition
+         *            position of the testcase within its file.
+         * @return true when this occurrence is at the given position.
+         */
+        boolean isAt(final int otherFile, final int otherPosition) {
+            return file == otherFile && position == otherPosition;
+        }
+    }
+}
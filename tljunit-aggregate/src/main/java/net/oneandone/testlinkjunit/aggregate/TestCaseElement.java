@@ -0,0 +1,105 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.aggregate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single <tt>testcase</tt> element as read from a Testlink XML file. All attributes and child elements are kept in
+ * their original order, so unknown elements survive merging.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class TestCaseElement {
+
+    /** Names and values of the attributes. */
+    private final List<String[]> attributes = new ArrayList<String[]>(1);
+
+    /** Names and texts of the child elements. */
+    private final List<String[]> children = new ArrayList<String[]>(4);
+
+    /**
+     * @param name
+     *            of the attribute.
+     * @param value
+     *            of the attribute.
+     */
+    void addAttribute(final String name, final String value) {
+        attributes.add(new String[] {name, value });
+    }
+
+    /**
+     * @param name
+     *            of the child element.
+     * @param text
+     *            of the child element.
+     */
+    void addChild(final String name, final String text) {
+        children.add(new String[] {name, text });
+    }
+
+    /**
+     * @return names and values of the attributes.
+     */
+    List<String[]> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return names and texts of the child elements.
+     */
+    List<String[]> getChildren() {
+        return children;
+    }
+
+    /**
+     * Returns the identity of the testcase, made from the attributes, e.g. <tt>external_id=T1</tt>.
+     *
+     * @return the key identifying duplicates.
+     */
+    String getKey() {
+        final StringBuilder key = new StringBuilder();
+        for (final String[] attribute : attributes) {
+            key.append(attribute[0]).append('=').append(attribute[1]).append(';');
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return true when the testcase has an <tt>id</tt> or <tt>external_id</tt> attribute.
+     */
+    boolean hasId() {
+        for (final String[] attribute : attributes) {
+            if ("id".equals(attribute[0]) || "external_id".equals(attribute[0])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the text of the <tt>result</tt> element or <tt>null</tt>.
+     */
+    String getResult() {
+        for (final String[] child : children) {
+            if ("result".equals(child[0])) {
+                return child[1];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,343 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.aggregate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import net.oneandone.testlinkjunit.aggregate.DuplicatePolicy.Occurrence;
+import net.oneandone.testlinkjunit.tljunit.Compression;
+
+/**
+ * Merges any number of Testlink XML files, e.g. written by several surefire forks or modules, into one
+ * <tt>results</tt> document.
+ *
+ * The files are read in parallel by a streaming parser. Only the position and result of every Testlink id are kept in
+ * memory to resolve duplicates according to the {@link DuplicatePolicy}, the testcases themselves are written as soon
+ * as they are read in a second pass. Testcases of one file keep their order, testcases of different files may be
+ * interleaved. Files ending with <tt>.gz</tt> are read and written with gzip compression, see {@link Compression}.
+ * Testcases without <tt>id</tt> or <tt>external_id</tt> attribute are skipped.
+ *
+ * <pre>
+ * java -jar tljunit-aggregate.jar [-policy all|last|worst] target/testlink-aggregate.xml \
+ *     module1/target/testlink.xml module2/target/testlink.xml.gz
+ * </pre>
+ *
+ * @author Mirko Friedenhagen
+ */
+public final class TestLinkResultsMerger {
+
+    /** Encoding of the resulting XML. */
+    private static final String UTF8 = "UTF-8";
+
+    /** Indentation used for the testcase elements. */
+    private static final String INDENT = "\n  ";
+
+    /** Indentation used for the children of the testcase elements. */
+    private static final String CHILD_INDENT = "\n    ";
+
+    /** Decides which testcase is kept for duplicate ids. */
+    private final DuplicatePolicy policy;
+
+    /** Number of threads reading in parallel. */
+    private final int threads;
+
+    /**
+     * @param policy
+     *            decides which testcase is kept for duplicate ids.
+     * @param threads
+     *            number of threads reading in parallel.
+     */
+    public TestLinkResultsMerger(final DuplicatePolicy policy, final int threads) {
+        this.policy = policy;
+        this.threads = threads;
+    }
+
+    /**
+     * Merges all sources into <tt>target</tt>.
+     *
+     * @param sources
+     *            Testlink XML files.
+     * @param target
+     *            the merged Testlink XML file.
+     * @return the number of testcases in <tt>target</tt>.
+     * @throws IOException
+     *             when reading or writing fails.
+     */
+    public int merge(final List<File> sources, final File target) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, sources.size())));
+        try {
+            final ConcurrentMap<String, Occurrence> winners = new ConcurrentHashMap<String, Occurrence>();
+            if (policy.detectsDuplicates()) {
+                runAll(executor, sources, new Handler() {
+                    @Override
+                    public void testCase(final TestCaseElement testCase, final int file, final int position) {
+                        offer(winners, testCase.getKey(), new Occurrence(file, position, testCase.getResult()));
+                    }
+                });
+            }
+            return write(executor, sources, target, winners);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Second pass, writes all testcases kept by the policy.
+     *
+     * @param executor
+     *            running the readers.
+     * @param sources
+     *            Testlink XML files.
+     * @param target
+     *            the merged Testlink XML file.
+     * @param winners
+     *            the occurrences to keep by key, ignored when duplicates are not detected.
+     * @return the number of written testcases.
+     * @throws IOException
+     *             when reading or writing fails.
+     */
+    private int write(final ExecutorService executor, final List<File> sources, final File target,
+            final ConcurrentMap<String, Occurrence> winners) throws IOException {
+        final AtomicInteger count = new AtomicInteger();
+        final OutputStream out = Compression.newOutputStream(target.getPath());
+        try {
+            final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, UTF8);
+            writer.writeStartDocument(UTF8, "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("results");
+            runAll(executor, sources, new Handler() {
+                @Override
+                public void testCase(final TestCaseElement testCase, final int file, final int position)
+                        throws XMLStreamException {
+                    if (!policy.detectsDuplicates() || winners.get(testCase.getKey()).isAt(file, position)) {
+                        synchronized (writer) {
+                            writeTestCase(writer, testCase);
+                        }
+                        count.incrementAndGet();
+                    }
+                }
+            });
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not write " + target, e);
+        } finally {
+            out.close();
+        }
+        return count.get();
+    }
+
+    /**
+     * Keeps <tt>candidate</tt> when it wins over the current occurrence of the same key.
+     *
+     * @param winners
+     *            the occurrences to keep by key.
+     * @param key
+     *            of the testcase.
+     * @param candidate
+     *            the new occurrence.
+     */
+    private void offer(final ConcurrentMap<String, Occurrence> winners, final String key,
+            final Occurrence candidate) {
+        Occurrence current = winners.putIfAbsent(key, candidate);
+        while (current != null && policy.replaces(current, candidate)) {
+            if (winners.replace(key, current, candidate)) {
+                return;
+            }
+            current = winners.get(key);
+        }
+    }
+
+    /**
+     * Reads all sources in parallel and waits until all are done.
+     *
+     * @param executor
+     *            running the readers.
+     * @param sources
+     *            Testlink XML files.
+     * @param handler
+     *            called for every testcase.
+     * @throws IOException
+     *             when reading fails.
+     */
+    private static void runAll(final ExecutorService executor, final List<File> sources, final Handler handler)
+            throws IOException {
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            final int file = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException, XMLStreamException {
+                    read(sources.get(file), file, handler);
+                    return null;
+                }
+            }));
+        }
+        for (final Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while merging", e);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Reads all testcases of a source.
+     *
+     * @param source
+     *            Testlink XML file.
+     * @param file
+     *            index of the file in the list of merged files.
+     * @param handler
+     *            called for every testcase.
+     * @throws IOException
+     *             when reading fails.
+     * @throws XMLStreamException
+     *             when the file is malformed.
+     */
+    static void read(final File source, final int file, final Handler handler)
+            throws IOException, XMLStreamException {
+        final InputStream in = Compression.newInputStream(source.getPath());
+        try {
+            final XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            final XMLStreamReader reader = factory.createXMLStreamReader(in);
+            int position = 0;
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && "testcase".equals(reader.getLocalName())) {
+                    final TestCaseElement testCase = new TestCaseElement();
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        testCase.addAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                    }
+                    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        testCase.addChild(reader.getLocalName(), reader.getElementText());
+                    }
+                    if (testCase.hasId()) {
+                        handler.testCase(testCase, file, position++);
+                    }
+                }
+            }
+            reader.close();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes one testcase element with all children.
+     *
+     * @param writer
+     *            to write to.
+     * @param testCase
+     *            to write.
+     * @throws XMLStreamException
+     *             when writing fails.
+     */
+    private static void writeTestCase(final XMLStreamWriter writer, final TestCaseElement testCase)
+            throws XMLStreamException {
+        writer.writeCharacters(INDENT);
+        writer.writeStartElement("testcase");
+        for (final String[] attribute : testCase.getAttributes()) {
+            writer.writeAttribute(attribute[0], attribute[1]);
+        }
+        for (final String[] child : testCase.getChildren()) {
+            writer.writeCharacters(CHILD_INDENT);
+            writer.writeStartElement(child[0]);
+            writer.writeCharacters(child[1]);
+            writer.writeEndElement();
+        }
+        writer.writeCharacters(INDENT);
+        writer.writeEndElement();
+    }
+
+    /**
+     * Merges the files given as arguments, see class documentation.
+     *
+     * @param args
+     *            optional policy, target and sources.
+     * @throws IOException
+     *             when reading or writing fails.
+     */
+    public static void main(final String[] args) throws IOException {
+        List<String> arguments = Arrays.asList(args);
+        DuplicatePolicy policy = DuplicatePolicy.last;
+        if (arguments.size() > 1 && "-policy".equals(arguments.get(0))) {
+            policy = DuplicatePolicy.valueOf(arguments.get(1));
+            arguments = arguments.subList(2, arguments.size());
+        }
+        if (arguments.size() < 2) {
+            System.err.println("Usage: TestLinkResultsMerger [-policy all|last|worst] TARGET SOURCE...");
+            return;
+        }
+        final List<File> sources = new ArrayList<File>();
+        for (final String source : arguments.subList(1, arguments.size())) {
+            sources.add(new File(source));
+        }
+        final TestLinkResultsMerger merger = new TestLinkResultsMerger(policy,
+                Runtime.getRuntime().availableProcessors());
+        final int count = merger.merge(sources, new File(arguments.get(0)));
+        System.out.println("Merged " + count + " testcases to " + arguments.get(0));
+    }
+
+    /**
+     * Called for every testcase read.
+     */
+    interface Handler {
+
+        /**
+         * @param testCase
+         *            the testcase.
+         * @param file
+         *            index of the file in the list of merged files.
+         * @param position
+         *            position of the testcase within its file.
+         * @throws XMLStreamException
+         *             when writing fails.
+         */
+        void testCase(TestCaseElement testCase, int file, int position) throws XMLStreamException;
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.aggregate;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class TestLinkResultsMergerTest {
+
+    private final File fork1 = new File("target/merger-fork1.xml");
+
+    private final File fork2 = new File("target/merger-fork2.xml.gz");
+
+    private final File target = new File("target/merger-aggregate.xml");
+
+    @Before
+    public void writeSources() throws IOException {
+        write(new FileOutputStream(fork1), testCase("external_id", "T1", "f") + testCase("id", "4", "p")
+                + testCase("external_id", "T2", "b") + testCase("name", "without id", "f"));
+        write(new GZIPOutputStream(new FileOutputStream(fork2)), testCase("external_id", "T1", "p")
+                + testCase("external_id", "T2", "p") + testCase("external_id", "T3", "p"));
+    }
+
+    @Test
+    public void testAll() throws Exception {
+        assertEquals(6, new TestLinkResultsMerger(DuplicatePolicy.all, 2).merge(Arrays.asList(fork1, fork2), target));
+        assertEquals(4, merge(DuplicatePolicy.all).size());
+    }
+
+    @Test
+    public void testLast() throws Exception {
+        final Map<String, String> results = merge(DuplicatePolicy.last);
+        assertEquals(4, results.size());
+        assertEquals("p", results.get("external_id=T1"));
+        assertEquals("p", results.get("external_id=T2"));
+        assertEquals("p", results.get("id=4"));
+    }
+
+    @Test
+    public void testWorst() throws Exception {
+        final Map<String, String> results = merge(DuplicatePolicy.worst);
+        assertEquals(4, results.size());
+        assertEquals("f", results.get("external_id=T1"));
+        assertEquals("b", results.get("external_id=T2"));
+        assertEquals("p", results.get("external_id=T3"));
+    }
+
+    private Map<String, String> merge(final DuplicatePolicy policy) throws Exception {
+        final int count = new TestLinkResultsMerger(policy, 2).merge(Arrays.asList(fork1, fork2), target);
+        final NodeList testCases = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(target)
+                .getElementsByTagName("testcase");
+        assertEquals(count, testCases.getLength());
+        final Map<String, String> results = new HashMap<String, String>();
+        for (int i = 0; i < testCases.getLength(); i++) {
+            final Element testCase = (Element) testCases.item(i);
+            final String type = testCase.hasAttribute("id") ? "id" : "external_id";
+            assertEquals("tester", ((Element) testCase.getElementsByTagName("tester").item(0)).getTextContent());
+            results.put(type + "=" + testCase.getAttribute(type),
+                    testCase.getElementsByTagName("result").item(0).getTextContent());
+        }
+        return results;
+    }
+
+    private static String testCase(final String type, final String id, final String result) {
+        return "<testcase " + type + "=\"" + id + "\"><tester>tester</tester>"
+                + "<timestamp>2012-02-27 10:00:00</timestamp><result>" + result + "</result>"
+                + "<notes>&apos;" + id + "&apos; &lt;äöüß&gt;</notes></testcase>\n";
+    }
+
+    private static void write(final OutputStream out, final String testCases) throws IOException {
+        try {
+            out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<results>\n" + testCases + "</results>")
+                    .getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.lang.annotation.Annotation;
+import java.net.URI;
+
+import org.junit.Ignore;
+import org.junit.runner.Description;
+import org.junit.runner.notification.RunListener;
+import org.slf4j.helpers.NOPLogger;
+
+/**
+ * The listeners under benchmark and the descriptions of the testcases fed to them.
+ *
+ * Completed testcases are discarded and nothing is logged, so only the cost of the listeners themselves is measured.
+ *
+ * @author Mirko Friedenhagen
+ */
+enum BenchmarkListeners {
+
+    /** {@link TestLinkXmlRunListener} handing the results to a sink discarding them. */
+    xml {
+        /** {@inheritDoc} */
+        @Override
+        RunListener create() {
+            return new TestLinkXmlRunListener("benchmark", new DiscardingTestCaseSink());
+        }
+    },
+
+    /** {@link TestLinkLoggingRunListener} logging to a no-op logger. */
+    logging {
+        /** {@inheritDoc} */
+        @Override
+        RunListener create() {
+            return new TestLinkLoggingRunListener(NOPLogger.NOP_LOGGER, URI.create("http://testlink.example.org/"));
+        }
+    };
+
+    /**
+     * @return a new listener.
+     */
+    abstract RunListener create();
+
+    /**
+     * Creates a new description of a testcase annotated with {@link TestLink}. Every call returns a new instance as
+     * JUnit does for every run of a test.
+     *
+     * @param methodName
+     *            name of the method in {@link Samples}.
+     * @return description carrying the annotations of the method.
+     */
+    static Description describe(final String methodName) {
+        return describe(methodName, methodName);
+    }
+
+    /**
+     * Creates a new description of a testcase with the annotations of a method in {@link Samples}.
+     *
+     * @param methodName
+     *            name of the method in {@link Samples}.
+     * @param displayName
+     *            name of the test in the description.
+     * @return description carrying the annotations of the method.
+     */
+    static Description describe(final String methodName, final String displayName) {
+        final Annotation[] annotations;
+        try {
+            annotations = Samples.class.getMethod(methodName).getAnnotations();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(methodName, e);
+        }
+        return Description.createTestDescription(Samples.class, displayName, annotations);
+    }
+
+    /**
+     * Carries the annotations of the described testcases.
+     */
+    public static class Samples {
+
+        /** Testcase with an external id. */
+        @TestLink(externalId = "BENCH-1")
+        public void externalId() {
+            // only the annotation is used.
+        }
+
+        /** Testcase with an internal id. */
+        @TestLink(internalId = 1)
+        public void internalId() {
+            // only the annotation is used.
+        }
+
+        /** Ignored testcase. */
+        @Ignore("benchmark")
+        @TestLink(externalId = "BENCH-2")
+        public void ignored() {
+            // only the annotation is used.
+        }
+
+        /** Testcase without {@link TestLink}. */
+        public void plain() {
+            // only the annotation is used.
+        }
+    }
+
+    /**
+     * Discards all testcases.
+     */
+    static final class DiscardingTestCaseSink implements TestCaseSink {
+
+        /** {@inheritDoc} */
+        @Override
+        public void add(final TestCaseResult testCase) {
+            // discarded.
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void flush() {
+            // nothing to write.
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() {
+            // nothing to write.
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.internal.AssumptionViolatedException;
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single testcase passing through a listener on one thread, one benchmark per outcome. Every testcase
+ * goes through {@link AbstractTestLinkRunListener}, {@link TestLinkId#fromDescription(Description)} and the
+ * listener of the implementation.
+ *
+ * @author Mirko Friedenhagen
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListenerEventBenchmark {
+
+    /** Name of the listener, see {@link BenchmarkListeners}. */
+    @Param({ "xml", "logging" })
+    public String listenerName;
+
+    /** The listener under benchmark. */
+    private RunListener listener;
+
+    /** Testcase with an external id. */
+    private Description externalId;
+
+    /** Testcase with an internal id. */
+    private Description internalId;
+
+    /** Ignored testcase. */
+    private Description ignored;
+
+    /** Testcase without {@link TestLink}. */
+    private Description plain;
+
+    /** Failure of {@link #externalId}. */
+    private Failure failure;
+
+    /** Assumption failure of {@link #externalId}. */
+    private Failure assumptionFailure;
+
+    /**
+     * Creates the listener and the descriptions.
+     *
+     * @throws Exception
+     *             when the run could not be started.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        listener = BenchmarkListeners.valueOf(listenerName).create();
+        listener.testRunStarted(Description.EMPTY);
+        externalId = BenchmarkListeners.describe("externalId");
+        internalId = BenchmarkListeners.describe("internalId");
+        ignored = BenchmarkListeners.describe("ignored");
+        plain = BenchmarkListeners.describe("plain");
+        failure = new Failure(externalId, new AssertionError("benchmark"));
+        assumptionFailure = new Failure(externalId, new AssumptionViolatedException("benchmark"));
+    }
+
+    /**
+     * Started and finished testcase identified by its external id.
+     *
+     * @throws Exception
+     *             not expected.
+     */
+    @Benchmark
+    public void passed() throws Exception {
+        listener.testStarted(externalId);
+        listener.testFinished(externalId);
+    }
+
+    /**
+     * Started and finished testcase identified by its internal id.
+     *
+     * @throws Exception
+     *             not expected.
+     */
+    @Benchmark
+    public void passedInternalId() throws Exception {
+        listener.testStarted(internalId);
+        listener.testFinished(internalId);
+    }
+
+    /**
+     * Started and finished testcase without {@link TestLink}, which is skipped by the listeners.
+     *
+     * @throws Exception
+     *             not expected.
+     */
+    @Benchmark
+    public void passedWithoutTestLink() throws Exception {
+        listener.testStarted(plain);
+        listener.testFinished(plain);
+    }
+
+    /**
+     * Failing testcase.
+     *
+     * @throws Exception
+     *             not expected.
+     */
+    @Benchmark
+    public void failed() throws Exception {
+        listener.testStarted(externalId);
+        listener.testFailure(failure);
+        listener.testFinished(externalId);
+    }
+
+    /**
+     * Ignored testcase.
+     *
+     * @throws Exception
+     *             not expected.
+     */
+    @Benchmark
+    public void ignored() throws Exception {
+        listener.testIgnored(ignored);
+    }
+
+    /**
+     * Testcase with failing assumption.
+     *
+     * @throws Exception
+     *             not expected.
+     */
+    @Benchmark
+    public void assumptionFailed() throws Exception {
+        listener.testStarted(externalId);
+        listener.testAssumptionFailure(assumptionFailure);
+        listener.testFinished(externalId);
+    }
+}
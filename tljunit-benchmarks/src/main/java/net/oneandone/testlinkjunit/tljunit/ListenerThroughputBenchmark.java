@@ -0,0 +1,124 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of one listener shared by all threads, as with parallel test execution. Change the number of threads
+ * with <tt>-t</tt>.
+ *
+ * @author Mirko Friedenhagen
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class ListenerThroughputBenchmark {
+
+    /** Name of the listener, see {@link BenchmarkListeners}. */
+    @Param({ "xml", "logging" })
+    public String listenerName;
+
+    /** The listener shared by all threads. */
+    private RunListener listener;
+
+    /**
+     * Creates the listener.
+     *
+     * @throws Exception
+     *             when the run could not be started.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        listener = BenchmarkListeners.valueOf(listenerName).create();
+        listener.testRunStarted(Description.EMPTY);
+    }
+
+    /**
+     * The testcases of a single thread.
+     */
+    @State(Scope.Thread)
+    public static class TestCases {
+
+        /** Passing testcase of this thread. */
+        private Description passed;
+
+        /** Failing testcase of this thread. */
+        private Description failed;
+
+        /** Failure of {@link #failed}. */
+        private Failure failure;
+
+        /**
+         * Creates the descriptions of this thread.
+         */
+        @Setup
+        public void setUp() {
+            passed = BenchmarkListeners.describe("externalId");
+            failed = BenchmarkListeners.describe("internalId");
+            failure = new Failure(failed, new AssertionError("benchmark"));
+        }
+    }
+
+    /**
+     * Started and finished testcase.
+     *
+     * @param testCases
+     *            of the current thread.
+     * @throws Exception
+     *             not expected.
+     */
+    @Benchmark
+    public void passed(final TestCases testCases) throws Exception {
+        listener.testStarted(testCases.passed);
+        listener.testFinished(testCases.passed);
+    }
+
+    /**
+     * Failing testcase.
+     *
+     * @param testCases
+     *            of the current thread.
+     * @throws Exception
+     *             not expected.
+     */
+    @Benchmark
+    public void failed(final TestCases testCases) throws Exception {
+        listener.testStarted(testCases.failed);
+        listener.testFailure(testCases.failure);
+        listener.testFinished(testCases.failed);
+    }
+}
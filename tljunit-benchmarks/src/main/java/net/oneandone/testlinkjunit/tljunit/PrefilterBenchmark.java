@@ -0,0 +1,102 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.RunListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Overhead of the listeners for testcases without {@link TestLink} found in the tree handed to
+ * {@link RunListener#testRunStarted(Description)}, see {@link AbstractInTestLinkRunListener#prefilter(Description)},
+ * which should be close to {@link #baseline()}.
+ *
+ * @author Mirko Friedenhagen
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrefilterBenchmark {
+
+    /** Name of the listener, see {@link BenchmarkListeners}. */
+    @Param({ "xml", "logging" })
+    public String listenerName;
+
+    /** Does nothing at all. */
+    private RunListener noop;
+
+    /** Listener started with the tree of the run. */
+    private RunListener prefiltered;
+
+    /** Testcase without {@link TestLink}. */
+    private Description plain;
+
+    /**
+     * Creates the listeners and the description.
+     *
+     * @throws Exception
+     *             when the run could not be started.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        plain = BenchmarkListeners.describe("plain");
+        final Description run = Description.createSuiteDescription(BenchmarkListeners.Samples.class);
+        run.addChild(plain);
+        run.addChild(BenchmarkListeners.describe("externalId"));
+        noop = new RunListener();
+        prefiltered = BenchmarkListeners.valueOf(listenerName).create();
+        prefiltered.testRunStarted(run);
+    }
+
+    /**
+     * Testcase without {@link TestLink} passing a listener doing nothing.
+     *
+     * @throws Exception
+     *             not expected.
+     */
+    @Benchmark
+    public void baseline() throws Exception {
+        noop.testStarted(plain);
+        noop.testFinished(plain);
+    }
+
+    /**
+     * Testcase without {@link TestLink} known from the tree of the run.
+     *
+     * @throws Exception
+     *             not expected.
+     */
+    @Benchmark
+    public void prefiltered() throws Exception {
+        prefiltered.testStarted(plain);
+        prefiltered.testFinished(plain);
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link TestLinkXmlRunListener#testRunFinished(Result)} writing all results of a run.
+ *
+ * @author Mirko Friedenhagen
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    /** Number of testcases in the run. */
+    @Param({ "1000", "100000", "1000000" })
+    public int cases;
+
+    /** Whether the results are streamed while the tests run instead of being written at the end. */
+    @Param({ "false", "true" })
+    public boolean streaming;
+
+    /** Listener which saw all testcases of the run. */
+    private TestLinkXmlRunListener listener;
+
+    /**
+     * Runs all testcases through a new listener.
+     *
+     * @throws Exception
+     *             not expected.
+     */
+    @Setup(Level.Invocation)
+    public void setUp() throws Exception {
+        listener = new TestLinkXmlRunListener(new DiscardingOutputStream(), "benchmark", streaming);
+        listener.testRunStarted(Description.EMPTY);
+        for (int i = 0; i < cases; i++) {
+            final Description description = BenchmarkListeners.describe("externalId", "case" + i);
+            listener.testStarted(description);
+            listener.testFinished(description);
+        }
+    }
+
+    /**
+     * Writes the results.
+     *
+     * @throws Exception
+     *             not expected.
+     */
+    @Benchmark
+    public void testRunFinished() throws Exception {
+        listener.testRunFinished(new Result());
+    }
+
+    /**
+     * Discards all bytes, so only the serialization is measured.
+     */
+    static final class DiscardingOutputStream extends OutputStream {
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final int b) {
+            // discarded.
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            // discarded.
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Contention of {@link DomTestCaseSink#add(TestCaseResult)} shared by all threads, compared to a store guarded by one
+ * monitor. Every thread adds a batch of testcases to a new sink per iteration, so the store does not grow without
+ * bounds. Change the number of threads with <tt>-t</tt>.
+ *
+ * @author Mirko Friedenhagen
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = SinkContentionBenchmark.BATCH_SIZE)
+@Measurement(iterations = 10, batchSize = SinkContentionBenchmark.BATCH_SIZE)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class SinkContentionBenchmark {
+
+    /** Testcases added by every thread per iteration. */
+    static final int BATCH_SIZE = 100000;
+
+    /** <tt>lockFree</tt> for {@link DomTestCaseSink}, <tt>synchronized</tt> for {@link SynchronizedSink}. */
+    @Param({ "lockFree", "synchronized" })
+    public String sinkName;
+
+    /** The testcase added by all threads. */
+    private final TestCaseResult testCase = new TestCaseResult(new TestLinkId.ExternalTestLinkId("T-1"), "benchmark",
+            0L, TestState.passed, "'test(Foo)' PASSED.");
+
+    /** The sink shared by all threads. */
+    private TestCaseSink sink;
+
+    /**
+     * Creates a new sink for every iteration.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        sink = "lockFree".equals(sinkName) ? new DomTestCaseSink(new SerializationBenchmark.DiscardingOutputStream())
+                : new SynchronizedSink();
+    }
+
+    /**
+     * Adds one testcase.
+     */
+    @Benchmark
+    public void add() {
+        sink.add(testCase);
+    }
+
+    /**
+     * The former approach, one monitor guarding the store.
+     */
+    static final class SynchronizedSink implements TestCaseSink {
+
+        /** Guarded by itself. */
+        private final TestCaseStore store = new TestCaseStore();
+
+        /** {@inheritDoc} */
+        @Override
+        public void add(final TestCaseResult testCase) {
+            synchronized (store) {
+                store.add(testCase);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void flush() {
+            // nothing to write.
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() {
+            // nothing to write.
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so the allocation rate per operation is always reported. Accepts all
+ * options of JMH, e.g. to run the serialization only:
+ *
+ * <pre>
+ * java -jar tljunit-benchmarks/target/benchmarks.jar SerializationBenchmark -p cases=1000000
+ * </pre>
+ *
+ * @author Mirko Friedenhagen
+ */
+public final class TljunitBenchmarks {
+
+    /** Main class only. */
+    private TljunitBenchmarks() {
+        // no instances.
+    }
+
+    /**
+     * @param args
+     *            options of JMH.
+     * @throws CommandLineOptionException
+     *             when the options are invalid.
+     * @throws RunnerException
+     *             when the benchmarks fail.
+     */
+    public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+        final CommandLineOptions options = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+    }
+}
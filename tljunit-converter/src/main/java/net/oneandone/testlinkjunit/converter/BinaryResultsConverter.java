@@ -0,0 +1,136 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.converter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.oneandone.testlinkjunit.tljunit.TestLinkBinaryResults;
+
+/**
+ * Converts binary results written with <tt>testlink.binary=true</tt> into Testlink XML files after the test run.
+ * Several input files are converted in parallel, every input file <tt>NAME.bin</tt>, <tt>NAME.xml</tt> or
+ * <tt>NAME</tt>, optionally followed by <tt>.gz</tt>, results in <tt>NAME.xml</tt> next to it, see
+ * {@link TestLinkBinaryResults#xmlFileOf(File)}. Binary results written to <tt>NAME.xml</tt> are replaced by the
+ * converted XML file.
+ *
+ * <pre>
+ * java -jar tljunit-converter.jar target/testlink.bin
+ * java -jar tljunit-converter.jar target/testlink-fork1.bin target/testlink-fork2.bin
+ * </pre>
+ *
+ * @author Mirko Friedenhagen
+ */
+public final class BinaryResultsConverter {
+
+    /** Number of threads converting in parallel. */
+    private final int threads;
+
+    /**
+     * @param threads
+     *            number of threads converting in parallel.
+     */
+    public BinaryResultsConverter(final int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Converts all sources in parallel.
+     *
+     * @param sources
+     *            binary results.
+     * @return the number of converted testcases for every resulting XML file in the order of the sources.
+     * @throws IOException
+     *             when any of the sources could not be converted.
+     */
+    public Map<File, Integer> convert(final List<File> sources) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, sources.size())));
+        try {
+            final Map<File, Future<Integer>> futures = new LinkedHashMap<File, Future<Integer>>();
+            for (final File source : sources) {
+                futures.put(TestLinkBinaryResults.xmlFileOf(source), executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        return TestLinkBinaryResults.toXml(source);
+                    }
+                }));
+            }
+            final Map<File, Integer> counts = new LinkedHashMap<File, Integer>();
+            for (final Map.Entry<File, Future<Integer>> entry : futures.entrySet()) {
+                counts.put(entry.getKey(), get(entry.getValue()));
+            }
+            return counts;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a single conversion.
+     *
+     * @param future
+     *            of the conversion.
+     * @return the number of converted testcases.
+     * @throws IOException
+     *             when the conversion failed.
+     */
+    private static Integer get(final Future<Integer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while converting", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Converts all files given as arguments using one thread per available processor.
+     *
+     * @param args
+     *            binary results.
+     * @throws IOException
+     *             when any of the sources could not be converted.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: BinaryResultsConverter FILE...");
+            return;
+        }
+        final List<File> sources = new ArrayList<File>();
+        for (final String arg : args) {
+            sources.add(new File(arg));
+        }
+        final BinaryResultsConverter converter = new BinaryResultsConverter(Runtime.getRuntime().availableProcessors());
+        for (final Map.Entry<File, Integer> entry : converter.convert(sources).entrySet()) {
+            System.out.println("Converted " + entry.getValue() + " testcases to " + entry.getKey());
+        }
+    }
+}
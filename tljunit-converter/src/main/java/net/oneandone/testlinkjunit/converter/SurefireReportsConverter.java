@@ -0,0 +1,138 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.converter;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import net.oneandone.testlinkjunit.tljunit.TestLinkSurefireReports;
+
+/**
+ * Converts surefire's <tt>TEST-*.xml</tt> reports into one Testlink XML file after the test run, so no listener has
+ * to be registered in the test JVM. The {@link net.oneandone.testlinkjunit.tljunit.TestLink} annotations are read
+ * from the compiled test classes, reports are parsed in parallel.
+ *
+ * <pre>
+ * java -Dtestlink.tester=memyselfandi -Dtestlink.classpath=$(cat target/test-classpath.txt) \
+ *     -cp tljunit-converter.jar:tljunit-surefire.jar \
+ *     net.oneandone.testlinkjunit.converter.SurefireReportsConverter \
+ *     target/test-classes target/testlink.xml target/surefire-reports
+ * </pre>
+ *
+ * The system property <tt>testlink.classpath</tt> holds the dependencies of the tests, separated by
+ * {@link File#pathSeparator}, e.g. as written by <tt>mvn dependency:build-classpath</tt>. Test classes which could
+ * not be loaded, e.g. because a dependency is missing, are reported and their testcases are missing from the results.
+ *
+ * @author Mirko Friedenhagen
+ */
+public final class SurefireReportsConverter {
+
+    /** Accepts surefire's XML reports. */
+    private static final FileFilter REPORTS = new FileFilter() {
+        @Override
+        public boolean accept(final File file) {
+            final String name = file.getName();
+            return file.isFile() && name.startsWith("TEST-") && name.endsWith(".xml");
+        }
+    };
+
+    /** Utility class. */
+    private SurefireReportsConverter() {
+        // no instances.
+    }
+
+    /**
+     * Expands directories into the reports they contain.
+     *
+     * @param files
+     *            reports or directories of reports.
+     * @return all reports.
+     * @throws IOException
+     *             when a directory could not be listed.
+     */
+    static List<File> reportsOf(final List<File> files) throws IOException {
+        final List<File> reports = new ArrayList<File>();
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                final File[] children = file.listFiles(REPORTS);
+                if (children == null) {
+                    throw new IOException("Could not list " + file);
+                }
+                Arrays.sort(children);
+                reports.addAll(Arrays.asList(children));
+            } else {
+                reports.add(file);
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * Splits a classpath.
+     *
+     * @param classpath
+     *            entries separated by {@link File#pathSeparator}, may be null.
+     * @return the entries.
+     */
+    static List<File> classpathOf(final String classpath) {
+        final List<File> entries = new ArrayList<File>();
+        if (classpath != null) {
+            for (final String entry : classpath.split(File.pathSeparator)) {
+                if (entry.length() > 0) {
+                    entries.add(new File(entry));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Converts the reports using one thread per available processor. The name of the tester is taken from the system
+     * property <tt>testlink.tester</tt>, falling back to <tt>user.name</tt>, the dependencies of the tests from
+     * <tt>testlink.classpath</tt>.
+     *
+     * @param args
+     *            directory of the test classes, the Testlink XML file to write, reports or directories of reports.
+     * @throws IOException
+     *             when any of the reports could not be converted.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: SurefireReportsConverter TEST_CLASSES TARGET (REPORT|REPORTS_DIRECTORY)...");
+            return;
+        }
+        final List<File> files = new ArrayList<File>();
+        for (int i = 2; i < args.length; i++) {
+            files.add(new File(args[i]));
+        }
+        final TestLinkSurefireReports reports = new TestLinkSurefireReports(new File(args[0]),
+                classpathOf(System.getProperty("testlink.classpath")),
+                System.getProperty("testlink.tester", System.getProperty("user.name")),
+                Runtime.getRuntime().availableProcessors());
+        final Map<String, String> skipped = reports.getSkippedClasses();
+        for (final Map.Entry<String, String> entry : skipped.entrySet()) {
+            System.err.println("Skipped " + entry.getKey() + ": " + entry.getValue());
+        }
+        final File target = new File(args[1]);
+        System.out.println("Converted " + reports.toXml(reportsOf(files), target) + " testcases to " + target
+                + ", skipped " + skipped.size() + " classes which could not be loaded");
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import net.oneandone.testlinkjunit.tljunit.SUTTestLinkRunListener;
+import net.oneandone.testlinkjunit.tljunit.TestLinkBinaryResults;
+import net.oneandone.testlinkjunit.tljunit.TestLinkXmlRunListener;
+
+import org.apache.maven.shared.utils.xml.Xpp3DomBuilder;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+
+public class BinaryResultsConverterTest {
+
+    private final File first = new File("target/converter-first.bin");
+
+    private final File second = new File("target/converter-second.bin");
+
+    @After
+    public void clearProperties() {
+        System.clearProperty("testlink.binary");
+        System.clearProperty("testlink.results");
+    }
+
+    @Test
+    public void testConvert() throws IOException {
+        run(first);
+        run(second);
+        final Map<File, Integer> counts = new BinaryResultsConverter(2).convert(Arrays.asList(first, second));
+        assertEquals(Integer.valueOf(7), counts.get(new File("target/converter-first.xml")));
+        assertEquals(Integer.valueOf(7), counts.get(new File("target/converter-second.xml")));
+    }
+
+    @Test
+    public void testConvertReplacesBinaryResultsNamedXml() throws IOException {
+        final File inPlace = new File("target/converter-in-place.xml");
+        run(inPlace);
+        final Map<File, Integer> counts = new BinaryResultsConverter(1).convert(Arrays.asList(inPlace));
+        assertEquals(Integer.valueOf(7), counts.get(inPlace));
+        assertEquals(7, Xpp3DomBuilder.build(new FileInputStream(inPlace), "UTF-8").getChildCount());
+    }
+
+    @Test
+    public void testConvertDefaultBinaryResults() throws IOException {
+        System.setProperty("testlink.binary", "true");
+        final JUnitCore core = new JUnitCore();
+        core.addListener(new TestLinkXmlRunListener());
+        core.run(SUTTestLinkRunListener.class);
+        final File results = new File(TestLinkBinaryResults.DEFAULT_RESULTS);
+        assertTrue(results.isFile());
+        final Map<File, Integer> counts = new BinaryResultsConverter(1).convert(Arrays.asList(results));
+        assertEquals(Integer.valueOf(7), counts.get(new File("target/testlink.xml")));
+    }
+
+    @Test
+    public void testXmlFileOf() {
+        assertEquals(new File("target/testlink.xml"),
+                TestLinkBinaryResults.xmlFileOf(new File("target/testlink.bin")));
+        assertEquals(new File("target/testlink.xml"),
+                TestLinkBinaryResults.xmlFileOf(new File("target/testlink.xml")));
+        assertEquals(new File("target/testlink.xml"), TestLinkBinaryResults.xmlFileOf(new File("target/testlink")));
+        assertEquals(new File("target/testlink.xml"),
+                TestLinkBinaryResults.xmlFileOf(new File("target/testlink.bin.gz")));
+        assertEquals(new File("target/testlink.xml"),
+                TestLinkBinaryResults.xmlFileOf(new File("target/testlink.xml.gz")));
+        assertEquals(new File("target/testlink.v2.xml"),
+                TestLinkBinaryResults.xmlFileOf(new File("target/testlink.v2.bin")));
+    }
+
+    private void run(final File results) throws IOException {
+        System.setProperty("testlink.binary", "true");
+        System.setProperty("testlink.results", results.getPath());
+        final JUnitCore core = new JUnitCore();
+        core.addListener(new TestLinkXmlRunListener());
+        core.run(SUTTestLinkRunListener.class);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.converter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import net.oneandone.testlinkjunit.tljunit.TestLink;
+
+import org.apache.maven.shared.utils.xml.Xpp3Dom;
+import org.apache.maven.shared.utils.xml.Xpp3DomBuilder;
+import org.junit.Test;
+
+public class SurefireReportsConverterTest {
+
+    private final File reports = new File("target/converter-reports");
+
+    @Test
+    @TestLink(externalId = "CONVERTER-1")
+    public void testMain() throws IOException {
+        reports.mkdirs();
+        final String className = SurefireReportsConverterTest.class.getName();
+        write(new File(reports, "TEST-" + className + ".xml"), "<testsuite name=\"" + className + "\">"
+                + "<testcase name=\"testMain\" classname=\"" + className + "\" time=\"0.1\"/>"
+                + "<testcase name=\"testReportsOf\" classname=\"" + className + "\" time=\"0.1\"/></testsuite>");
+        write(new File(reports, "ignored.xml"), "<testsuite/>");
+        final File target = new File("target/converter-reports.xml");
+        final String classes = new File(SurefireReportsConverterTest.class.getProtectionDomain().getCodeSource()
+                .getLocation().getPath()).getPath();
+        SurefireReportsConverter.main(new String[] { classes, target.getPath(), reports.getPath() });
+        final InputStream in = new FileInputStream(target);
+        try {
+            final Xpp3Dom results = Xpp3DomBuilder.build(in, "UTF-8");
+            assertEquals(1, results.getChildCount());
+            assertEquals("CONVERTER-1", results.getChild(0).getAttribute("external_id"));
+            assertEquals("'testMain(" + className + ")' PASSED.", results.getChild(0).getChild("notes").getValue());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testReportsOf() throws IOException {
+        reports.mkdirs();
+        write(new File(reports, "TEST-b.xml"), "<testsuite/>");
+        write(new File(reports, "TEST-a.xml"), "<testsuite/>");
+        final File single = new File("target/single.xml");
+        final List<File> files = SurefireReportsConverter.reportsOf(Arrays.asList(reports, single));
+        assertEquals(new File(reports, "TEST-a.xml"), files.get(0));
+        assertEquals(single, files.get(files.size() - 1));
+    }
+
+    @Test
+    public void testClasspathOf() {
+        assertEquals(Arrays.asList(new File("a.jar"), new File("b")),
+                SurefireReportsConverter.classpathOf("a.jar" + File.pathSeparator + File.pathSeparator + "b"));
+        assertEquals(0, SurefireReportsConverter.classpathOf(null).size());
+    }
+
+        private void write(final File file, final String content) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
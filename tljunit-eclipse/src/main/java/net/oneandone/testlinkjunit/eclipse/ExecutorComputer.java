@@ -0,0 +1,157 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.eclipse;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import org.junit.runner.Computer;
+import org.junit.runner.Runner;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.RunnerScheduler;
+
+/**
+ * {@link Computer} running test classes and test methods on bounded thread pools, unlike
+ * {@link org.junit.experimental.ParallelComputer} which starts a new thread for every class or method.
+ *
+ * A runner waiting for its children runs those not started yet itself, so nested suites can not exhaust the pools.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class ExecutorComputer extends Computer {
+
+    /** Runs the test classes, null to run them one after the other. */
+    private final ExecutorService classes;
+
+    /** Runs the test methods, null to run them one after the other. */
+    private final ExecutorService methods;
+
+    /**
+     * @param classThreads
+     *            number of test classes running in parallel, one or less to run them one after the other.
+     * @param methodThreads
+     *            number of test methods running in parallel, one or less to run them one after the other.
+     */
+    ExecutorComputer(final int classThreads, final int methodThreads) {
+        this.classes = newExecutor(classThreads);
+        this.methods = newExecutor(methodThreads);
+    }
+
+    /**
+     * @param threads
+     *            size of the pool.
+     * @return a new pool or null for one thread or less.
+     */
+    private static ExecutorService newExecutor(final int threads) {
+        return threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Runner getSuite(final RunnerBuilder builder, final Class<?>[] testClasses) throws InitializationError {
+        return schedule(super.getSuite(builder, testClasses), classes);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Runner getRunner(final RunnerBuilder builder, final Class<?> testClass) throws Throwable {
+        return schedule(super.getRunner(builder, testClass), methods);
+    }
+
+    /**
+     * Stops the threads of the pools.
+     */
+    void shutdown() {
+        if (classes != null) {
+            classes.shutdown();
+        }
+        if (methods != null) {
+            methods.shutdown();
+        }
+    }
+
+    /**
+     * Lets the children of the runner run on the pool.
+     *
+     * @param runner
+     *            to schedule.
+     * @param executor
+     *            pool, null to keep running the children one after the other.
+     * @return the runner.
+     */
+    private static Runner schedule(final Runner runner, final ExecutorService executor) {
+        if (executor != null && runner instanceof ParentRunner) {
+            ((ParentRunner<?>) runner).setScheduler(new ExecutorScheduler(executor));
+        }
+        return runner;
+    }
+
+    /**
+     * Submits the children of one runner to the pool.
+     */
+    static final class ExecutorScheduler implements RunnerScheduler {
+
+        /** Runs the children. */
+        private final ExecutorService executor;
+
+        /** Children scheduled so far. */
+        private final Queue<FutureTask<Void>> children = new ConcurrentLinkedQueue<FutureTask<Void>>();
+
+        /**
+         * @param executor
+         *            runs the children.
+         */
+        ExecutorScheduler(final ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void schedule(final Runnable childStatement) {
+            final FutureTask<Void> child = new FutureTask<Void>(childStatement, null);
+            children.add(child);
+            executor.execute(child);
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * Runs all children not started yet and waits for the others.
+         */
+        @Override
+        public void finished() {
+            FutureTask<Void> child = children.poll();
+            while (child != null) {
+                child.run();
+                try {
+                    child.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+                child = children.poll();
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.eclipse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.oneandone.testlinkjunit.tljunit.TestLinkLoggingRunListener;
+import net.oneandone.testlinkjunit.tljunit.TestLinkXmlRunListener;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Runs test classes in parallel outside of surefire, e.g. from the IDE, with the given listeners attached once, so
+ * all test classes end up in one result file.
+ *
+ * <pre>
+ * java -cp ... net.oneandone.testlinkjunit.eclipse.TestLinkLauncher com.example.FirstTest com.example.SecondTest
+ * </pre>
+ *
+ * {@link #main(String[])} attaches {@link TestLinkXmlRunListener} and {@link TestLinkLoggingRunListener}, configured
+ * by their system properties. The number of test classes running in parallel is set with the system property
+ * <tt>testlink.launcher.classThreads</tt>, the number of test methods running in parallel with
+ * <tt>testlink.launcher.methodThreads</tt>. Both default to the number of available processors, one runs the classes
+ * or methods one after the other.
+ *
+ * @author Mirko Friedenhagen
+ */
+public final class TestLinkLauncher {
+
+    /** Number of test classes running in parallel. */
+    private final int classThreads;
+
+    /** Number of test methods running in parallel. */
+    private final int methodThreads;
+
+    /** Attached to every run. */
+    private final List<RunListener> listeners;
+
+    /**
+     * @param classThreads
+     *            number of test classes running in parallel, one or less to run them one after the other.
+     * @param methodThreads
+     *            number of test methods running in parallel, one or less to run them one after the other.
+     * @param listeners
+     *            attached to every run.
+     */
+    public TestLinkLauncher(final int classThreads, final int methodThreads, final RunListener... listeners) {
+        this.classThreads = classThreads;
+        this.methodThreads = methodThreads;
+        this.listeners = new ArrayList<RunListener>(Arrays.asList(listeners));
+    }
+
+    /**
+     * Runs all test classes in one run.
+     *
+     * @param classes
+     *            test classes.
+     * @return result of the run.
+     */
+    public Result run(final Class<?>... classes) {
+        final JUnitCore core = new JUnitCore();
+        for (final RunListener listener : listeners) {
+            core.addListener(listener);
+        }
+        final ExecutorComputer computer = new ExecutorComputer(classThreads, methodThreads);
+        try {
+            return core.run(computer, classes);
+        } finally {
+            computer.shutdown();
+        }
+    }
+
+    /**
+     * Runs the test classes given by name with the default listeners.
+     *
+     * @param classNames
+     *            names of the test classes.
+     * @return result of the run.
+     * @throws IOException
+     *             when the result file could not be opened.
+     * @throws ClassNotFoundException
+     *             when a test class does not exist.
+     */
+    static Result launch(final String... classNames) throws IOException, ClassNotFoundException {
+        final Class<?>[] classes = new Class<?>[classNames.length];
+        for (int i = 0; i < classNames.length; i++) {
+            classes[i] = Class.forName(classNames[i]);
+        }
+        final int processors = Runtime.getRuntime().availableProcessors();
+        final TestLinkLauncher launcher = new TestLinkLauncher(
+                Integer.getInteger("testlink.launcher.classThreads", processors),
+                Integer.getInteger("testlink.launcher.methodThreads", processors),
+                new TestLinkXmlRunListener(), new TestLinkLoggingRunListener());
+        return launcher.run(classes);
+    }
+
+    /**
+     * Runs the test classes given as arguments and exits with 1 when any of them failed.
+     *
+     * @param args
+     *            names of the test classes.
+     * @throws IOException
+     *             when the result file could not be opened.
+     * @throws ClassNotFoundException
+     *             when a test class does not exist.
+     */
+    public static void main(final String[] args) throws IOException, ClassNotFoundException {
+        if (args.length == 0) {
+            System.err.println("Usage: TestLinkLauncher CLASS...");
+            return;
+        }
+        final Result result = launch(args);
+        for (final Failure failure : result.getFailures()) {
+            System.err.println(failure);
+        }
+        System.out.println("Ran " + result.getRunCount() + " tests, " + result.getFailureCount() + " failed, "
+                + result.getIgnoreCount() + " ignored.");
+        if (!result.wasSuccessful()) {
+            System.exit(1);
+        }
+    }
+}
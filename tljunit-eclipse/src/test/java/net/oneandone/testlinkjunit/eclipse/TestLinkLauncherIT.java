@@ -0,0 +1,99 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.eclipse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.oneandone.testlinkjunit.tljunit.SUTTestLinkRunListener;
+import net.oneandone.testlinkjunit.tljunit.TestLinkLoggingRunListener;
+import net.oneandone.testlinkjunit.tljunit.TestLinkXmlRunListener;
+
+import org.apache.maven.shared.utils.xml.Xpp3Dom;
+import org.apache.maven.shared.utils.xml.Xpp3DomBuilder;
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.slf4j.LoggerFactory;
+
+public class TestLinkLauncherIT {
+
+    @Test
+    public void testOneResultFileForAllClasses() throws Exception {
+        final Xpp3Dom serial = runAndParse(1, 1);
+        final Xpp3Dom parallel = runAndParse(2, 4);
+        assertTrue(serial.getChildCount() > 0);
+        assertEquals(serial.getChildCount(), parallel.getChildCount());
+    }
+
+    @Test
+    public void testLaunch() throws Exception {
+        final Result result = TestLinkLauncher.launch(SUTTestLinkRunListener.class.getName());
+        assertTrue(result.getRunCount() > 0);
+        assertTrue("Did not find logfile", new File("target/testlink.xml").exists());
+    }
+
+    @Test
+    public void testFinishedRunsChildrenNotStartedYet() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+            final CountDownLatch started = new CountDownLatch(1);
+            final ExecutorComputer.ExecutorScheduler outer = new ExecutorComputer.ExecutorScheduler(executor);
+            outer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    final ExecutorComputer.ExecutorScheduler inner = new ExecutorComputer.ExecutorScheduler(executor);
+                    for (int i = 0; i < 10; i++) {
+                        inner.schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                threads.add(Thread.currentThread().getName());
+                            }
+                        });
+                    }
+                    inner.finished();
+                }
+            });
+            // the only thread of the executor is busy with the outer child, so it must run the inner ones itself.
+            started.await();
+            outer.finished();
+            assertEquals(1, threads.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Xpp3Dom runAndParse(final int classThreads, final int methodThreads) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TestLinkLauncher launcher = new TestLinkLauncher(classThreads, methodThreads,
+                new TestLinkXmlRunListener(out, "launcher"), new TestLinkLoggingRunListener(
+                        LoggerFactory.getLogger("MYTESTLINK"), URI.create("http://testlink.sourceforge.net/demo/")));
+        launcher.run(SUTTestLinkRunListener.class, SUTTestLinkRunListener.class);
+        return Xpp3DomBuilder.build(new StringReader(out.toString("UTF-8")));
+    }
+}
@@ -0,0 +1,266 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.platform;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.junit.Ignore;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * {@link TestExecutionListener} handing the events of the JUnit Platform over to one of the
+ * {@link RunListener}s of <tt>tljunit-surefire</tt>, so Jupiter tests produce the same XML and log output.
+ *
+ * Every test with a {@link MethodSource} is described by a {@link Description} of its class and method, carrying the
+ * annotations of the method, so {@link net.oneandone.testlinkjunit.tljunit.TestLink} is found as before. Skipped
+ * tests are reported as ignored with the reason of the JUnit Platform, aborted tests as failed assumptions.
+ *
+ * Descriptions are kept by the unique id of the test until it finished, so containers and methods may run
+ * concurrently, e.g. with <tt>junit.jupiter.execution.parallel.enabled</tt>.
+ *
+ * Subclasses registered as service are opt-in: their {@link RunListener} is only created in
+ * {@link #testPlanExecutionStarted(TestPlan)} when the configuration parameter given to
+ * {@link #TestLinkExecutionListener(String, Callable)} is <tt>true</tt>, otherwise all events are ignored. The
+ * JUnit Platform reads configuration parameters from the launcher request, system properties and
+ * <tt>junit-platform.properties</tt>.
+ *
+ * @author Mirko Friedenhagen
+ */
+public class TestLinkExecutionListener implements TestExecutionListener {
+
+    /** Configuration parameter enabling a lazily created listener, null when created eagerly. */
+    private final String enabledParameter;
+
+    /** Creates the listener receiving the events, null when created eagerly. */
+    private final Callable<? extends RunListener> factory;
+
+    /** Receives the events, null until created or when not enabled. */
+    private volatile RunListener runListener;
+
+    /** Descriptions of the running tests by unique id. */
+    private final ConcurrentMap<String, Description> running = new ConcurrentHashMap<String, Description>();
+
+    /**
+     * Registered explicitly, always enabled.
+     *
+     * @param runListener
+     *            receives the events.
+     */
+    public TestLinkExecutionListener(final RunListener runListener) {
+        this.enabledParameter = null;
+        this.factory = null;
+        this.runListener = runListener;
+    }
+
+    /**
+     * Registered as service, creates the listener when the test plan starts and <tt>enabledParameter</tt> is
+     * <tt>true</tt>.
+     *
+     * @param enabledParameter
+     *            configuration parameter enabling the listener.
+     * @param factory
+     *            creates the listener receiving the events.
+     */
+    protected TestLinkExecutionListener(final String enabledParameter, final Callable<? extends RunListener> factory) {
+        this.enabledParameter = enabledParameter;
+        this.factory = factory;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Creates the listener first, when registered as service and enabled.
+     */
+    @Override
+    public void testPlanExecutionStarted(final TestPlan testPlan) {
+        if (runListener == null && factory != null
+                && testPlan.getConfigurationParameters().getBoolean(enabledParameter).orElse(false)) {
+            try {
+                runListener = factory.call();
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not create listener enabled by " + enabledParameter, e);
+            }
+        }
+        if (runListener == null) {
+            return;
+        }
+        try {
+            runListener.testRunStarted(Description.EMPTY);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not start run", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void testPlanExecutionFinished(final TestPlan testPlan) {
+        if (runListener == null) {
+            return;
+        }
+        try {
+            runListener.testRunFinished(new Result());
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not finish run", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void executionStarted(final TestIdentifier testIdentifier) {
+        if (runListener == null) {
+            return;
+        }
+        final Description description = describe(testIdentifier);
+        if (description == null) {
+            return;
+        }
+        running.put(testIdentifier.getUniqueId(), description);
+        try {
+            runListener.testStarted(description);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not start " + description, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Only tests are reported, skipped containers are not, as with JUnit 4.
+     */
+    @Override
+    public void executionSkipped(final TestIdentifier testIdentifier, final String reason) {
+        if (runListener == null) {
+            return;
+        }
+        final Description description = describe(testIdentifier, new SkipReason(reason));
+        if (description == null) {
+            return;
+        }
+        try {
+            runListener.testIgnored(description);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not skip " + description, e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void executionFinished(final TestIdentifier testIdentifier, final TestExecutionResult testExecutionResult) {
+        final Description description = running.remove(testIdentifier.getUniqueId());
+        if (description == null) {
+            return;
+        }
+        try {
+            final Throwable throwable = testExecutionResult.getThrowable().orElse(null);
+            switch (testExecutionResult.getStatus()) {
+            case ABORTED:
+                runListener.testAssumptionFailure(new Failure(description, throwable));
+                break;
+            case FAILED:
+                runListener.testFailure(new Failure(description, throwable));
+                break;
+            default:
+                break;
+            }
+            runListener.testFinished(description);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not finish " + description, e);
+        }
+    }
+
+    /**
+     * @return the listener receiving the events, null when registered as service and not enabled.
+     */
+    public RunListener getRunListener() {
+        return runListener;
+    }
+
+    /**
+     * @return the number of tests started but not finished.
+     */
+    int getRunningTestCount() {
+        return running.size();
+    }
+
+    /**
+     * Creates a new description of a test with the annotations of its method.
+     *
+     * @param testIdentifier
+     *            of the test.
+     * @param additionalAnnotations
+     *            added to those of the method.
+     * @return the description, null for containers and tests not backed by a method.
+     */
+    static Description describe(final TestIdentifier testIdentifier, final Annotation... additionalAnnotations) {
+        if (!testIdentifier.isTest()) {
+            return null;
+        }
+        final TestSource source = testIdentifier.getSource().orElse(null);
+        if (!(source instanceof MethodSource)) {
+            return null;
+        }
+        final MethodSource methodSource = (MethodSource) source;
+        final Method method = methodSource.getJavaMethod();
+        final Annotation[] methodAnnotations = method.getAnnotations();
+        final Annotation[] annotations = new Annotation[methodAnnotations.length + additionalAnnotations.length];
+        System.arraycopy(methodAnnotations, 0, annotations, 0, methodAnnotations.length);
+        System.arraycopy(additionalAnnotations, 0, annotations, methodAnnotations.length,
+                additionalAnnotations.length);
+        return Description.createTestDescription(methodSource.getJavaClass(), method.getName(), annotations);
+    }
+
+    /**
+     * Carries the reason of a skipped test as {@link Ignore} of JUnit 4.
+     */
+    static final class SkipReason implements Ignore {
+
+        /** Reason given by the JUnit Platform. */
+        private final String reason;
+
+        /**
+         * @param reason
+         *            given by the JUnit Platform, may be null.
+         */
+        SkipReason(final String reason) {
+            this.reason = reason == null ? "" : reason;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String value() {
+            return reason;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return Ignore.class;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.platform;
+
+import java.util.concurrent.Callable;
+
+import net.oneandone.testlinkjunit.tljunit.TestLinkLoggingRunListener;
+
+/**
+ * Logs the start and end of tests on the JUnit Platform, configured by the same system properties as
+ * {@link TestLinkLoggingRunListener#TestLinkLoggingRunListener()}.
+ *
+ * Registered as service, but only enabled when the configuration parameter
+ * <tt>testlink.platform.logging.enabled</tt> is <tt>true</tt>, e.g. as system property. Alternatively register
+ * {@link #TestLinkLoggingExecutionListener(TestLinkLoggingRunListener)} explicitly with the launcher.
+ *
+ * @author Mirko Friedenhagen
+ */
+public class TestLinkLoggingExecutionListener extends TestLinkExecutionListener {
+
+    /** Configuration parameter enabling the listener registered as service. */
+    public static final String ENABLED = "testlink.platform.logging.enabled";
+
+    /**
+     * Logs to the logger given by the system property <tt>testlink.loggername</tt>, when enabled by {@link #ENABLED}.
+     */
+    public TestLinkLoggingExecutionListener() {
+        super(ENABLED, new Callable<TestLinkLoggingRunListener>() {
+            @Override
+            public TestLinkLoggingRunListener call() {
+                return new TestLinkLoggingRunListener();
+            }
+        });
+    }
+
+    /**
+     * @param runListener
+     *            logs the events.
+     */
+    public TestLinkLoggingExecutionListener(final TestLinkLoggingRunListener runListener) {
+        super(runListener);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.platform;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.Callable;
+
+import net.oneandone.testlinkjunit.tljunit.TestLinkXmlRunListener;
+
+/**
+ * Writes a Testlink compatible XML file for tests on the JUnit Platform, configured by the same system properties as
+ * {@link TestLinkXmlRunListener#TestLinkXmlRunListener()}.
+ *
+ * Registered as service, but only enabled when the configuration parameter <tt>testlink.platform.xml.enabled</tt> is
+ * <tt>true</tt>, e.g. as system property. Alternatively register {@link
+ * #TestLinkXmlExecutionListener(TestLinkXmlRunListener)} explicitly with the launcher.
+ *
+ * @author Mirko Friedenhagen
+ */
+public class TestLinkXmlExecutionListener extends TestLinkExecutionListener {
+
+    /** Configuration parameter enabling the listener registered as service. */
+    public static final String ENABLED = "testlink.platform.xml.enabled";
+
+    /**
+     * Writes to the file given by the system property <tt>testlink.results</tt>, when enabled by {@link #ENABLED}.
+     * The file is only opened when the test plan starts.
+     */
+    public TestLinkXmlExecutionListener() {
+        super(ENABLED, new Callable<TestLinkXmlRunListener>() {
+            @Override
+            public TestLinkXmlRunListener call() throws FileNotFoundException {
+                return new TestLinkXmlRunListener();
+            }
+        });
+    }
+
+    /**
+     * @param runListener
+     *            writes the results.
+     */
+    public TestLinkXmlExecutionListener(final TestLinkXmlRunListener runListener) {
+        super(runListener);
+    }
+}
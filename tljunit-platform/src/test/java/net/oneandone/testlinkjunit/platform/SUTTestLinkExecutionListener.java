@@ -0,0 +1,62 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.platform;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+import net.oneandone.testlinkjunit.tljunit.TestLink;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Jupiter tests run by {@link TestLinkExecutionListenerTest}.
+ *
+ * @author Mirko Friedenhagen
+ */
+public class SUTTestLinkExecutionListener {
+
+    @Test
+    @TestLink(externalId = "PLATFORM-1")
+    public void passed() {
+        // passes.
+    }
+
+    @Test
+    @TestLink(internalId = 2)
+    public void failed() {
+        fail("failed on purpose");
+    }
+
+    @Test
+    @Disabled("not implemented")
+    @TestLink(externalId = "PLATFORM-3")
+    public void disabled() {
+        fail("disabled");
+    }
+
+    @Test
+    @TestLink(externalId = "PLATFORM-4")
+    public void aborted() {
+        Assumptions.assumeTrue(false, "no environment");
+    }
+
+    @Test
+    public void withoutTestLink() {
+        // not reported.
+    }
+}
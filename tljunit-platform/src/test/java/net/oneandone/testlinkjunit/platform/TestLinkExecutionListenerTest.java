@@ -0,0 +1,117 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.platform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.oneandone.testlinkjunit.tljunit.TestLinkLoggingRunListener;
+import net.oneandone.testlinkjunit.tljunit.TestLinkXmlRunListener;
+
+import org.apache.maven.shared.utils.xml.Xpp3Dom;
+import org.apache.maven.shared.utils.xml.Xpp3DomBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.core.LauncherConfig;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class TestLinkExecutionListenerTest {
+
+    private static final String SUT = SUTTestLinkExecutionListener.class.getName();
+
+    @Test
+    public void testSameResultsAsRunListener() throws Exception {
+        assertEquals("[external_id=PLATFORM-1 p 'passed(" + SUT + ")' PASSED., "
+                + "id=2 f 'failed(" + SUT + ")' FAILED because 'failed on purpose'., "
+                + "external_id=PLATFORM-3 b 'disabled(" + SUT + ")' BLOCKED because 'not implemented'., "
+                + "external_id=PLATFORM-4 b 'aborted(" + SUT + ")' BLOCKED because "
+                + "'Assumption failed: no environment'.]", run(false).toString());
+    }
+
+    @Test
+    public void testConcurrentExecution() throws Exception {
+        assertEquals(run(false), run(true));
+    }
+
+    @Test
+    public void testServiceListenerIsOptIn() {
+        assertNull(new TestLinkXmlExecutionListener().getRunListener());
+        final TestLinkExecutionListener disabled = new TestLinkLoggingExecutionListener();
+        execute(LauncherDiscoveryRequestBuilder.request().selectors(selectClass(SUTTestLinkExecutionListener.class))
+                .build(), disabled);
+        assertNull(disabled.getRunListener());
+        final TestLinkExecutionListener enabled = new TestLinkLoggingExecutionListener();
+        execute(LauncherDiscoveryRequestBuilder.request().selectors(selectClass(SUTTestLinkExecutionListener.class))
+                .configurationParameter(TestLinkLoggingExecutionListener.ENABLED, "true").build(), enabled);
+        assertTrue(enabled.getRunListener() instanceof TestLinkLoggingRunListener);
+        assertEquals(0, enabled.getRunningTestCount());
+    }
+
+    private List<String> run(final boolean parallel) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TestLinkExecutionListener xmlListener = new TestLinkXmlExecutionListener(
+                new TestLinkXmlRunListener(out, "platform"));
+        final TestLinkExecutionListener loggingListener = new TestLinkLoggingExecutionListener(
+                new TestLinkLoggingRunListener(LoggerFactory.getLogger("PLATFORM"),
+                        URI.create("http://testlink.sourceforge.net/demo/")));
+        final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
+                .selectors(selectClass(SUTTestLinkExecutionListener.class))
+                .configurationParameter("junit.jupiter.execution.parallel.enabled", String.valueOf(parallel))
+                .configurationParameter("junit.jupiter.execution.parallel.mode.default", "concurrent")
+                .configurationParameter("junit.jupiter.execution.parallel.mode.classes.default", "concurrent")
+                .build();
+        execute(request, xmlListener, loggingListener);
+        assertEquals(0, xmlListener.getRunningTestCount());
+        assertEquals(0, loggingListener.getRunningTestCount());
+        final Xpp3Dom dom = Xpp3DomBuilder.build(new StringReader(out.toString("UTF-8")));
+        final Map<String, String> results = new LinkedHashMap<String, String>();
+        for (final Xpp3Dom testCase : dom.getChildren("testcase")) {
+            final String type = testCase.getAttributeNames()[0];
+            final String id = type + "=" + testCase.getAttribute(type);
+            results.put(id, id + " " + testCase.getChild("result").getValue() + " "
+                    + testCase.getChild("notes").getValue());
+        }
+        final List<String> sorted = new ArrayList<String>();
+        for (final String id : new String[] {"external_id=PLATFORM-1", "id=2", "external_id=PLATFORM-3",
+            "external_id=PLATFORM-4", }) {
+            sorted.add(results.remove(id));
+        }
+        assertEquals("{}", results.toString());
+        return sorted;
+    }
+
+    private void execute(final LauncherDiscoveryRequest request, final TestExecutionListener... listeners) {
+        // the listeners registered as service would overwrite the results of this module's own test run when enabled.
+        LauncherFactory.create(LauncherConfig.builder().enableTestExecutionListenerAutoRegistration(false).build())
+                .execute(request, listeners);
+    }
+}
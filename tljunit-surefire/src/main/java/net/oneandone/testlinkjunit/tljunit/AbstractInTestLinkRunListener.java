@@ -15,31 +15,230 @@
  */
 package net.oneandone.testlinkjunit.tljunit;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.junit.runner.Description;
 import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
 
 /**
  * Provides some basic methods mainly to set and get the current failure in a thread safe fashion.
- * {@link AbstractInTestLinkRunListener#getCurrentFailure()} may be used in
+ * {@link AbstractInTestLinkRunListener#hasPassed(Description)} may be used in
  * {@link RunListener#testFinished(Description)} as there is no other way to determine whether a test
  * failed at this point.
  *
+ * Failures are kept by {@link Description} of the running test and removed in
+ * {@link AbstractInTestLinkRunListener#removeFailure(Description)}, so results are attributed correctly when events
+ * of one test are reported by different threads and nothing is left behind in long living or virtual threads. The
+ * former methods keeping the failure of the current {@link Thread} are deprecated.
+ *
+ * The {@link TestLinkId} of a running test is resolved once when it starts, see
+ * {@link AbstractInTestLinkRunListener#getTestLinkId(Description)}, by a lookup in the {@link TestLinkIndex} or, for
+ * tests missing in the index, from the annotations of the {@link Description}. Tests without annotation are
+ * remembered by display name, either from the trees of the run and the suites, see
+ * {@link AbstractInTestLinkRunListener#prefilter(Description)}, or when first resolved, so all their events skip this
+ * altogether. At most {@link AbstractInTestLinkRunListener#MAX_UNANNOTATED} names are remembered, afterwards all are
+ * forgotten and resolved again, so long running JVMs do not accumulate the names of all tests ever run.
+ *
  * @author Mirko Friedenhagen
  */
 public abstract class AbstractInTestLinkRunListener extends RunListener {
 
+    /** Maximum number of remembered display names of tests without {@link TestLink} annotation. */
+    static final int MAX_UNANNOTATED = 65536;
+
     /** Null-Object to check against. */
     private static final Failure NO_FAILURE = new Failure(Description.EMPTY, null);
 
     /** Holds the current failure. */
     private final ThreadLocal<Failure> currentFailure = new ThreadLocal<Failure>();
 
+    /** Holds the failures of the running tests. */
+    private final RunningTests<Failure> failures = new RunningTests<Failure>();
+
+    /** Holds the resolved ids of the running tests with {@link TestLink} annotation. */
+    private final RunningTests<TestLinkId<?>> ids = new RunningTests<TestLinkId<?>>();
+
+    /** Display names of tests known to have no {@link TestLink} annotation. */
+    private final Set<String> unannotated = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Walks the tree of a run or suite once and remembers all tests without {@link TestLink} annotation, all events
+     * of these tests take a constant time path afterwards. Tests missing in the trees, e.g. when only the classes are
+     * announced as done by surefire, are resolved when they start.
+     *
+     * @param tree
+     *            of the run or suite.
+     */
+    final void prefilter(final Description tree) {
+        if (!tree.isTest()) {
+            for (final Description child : tree.getChildren()) {
+                prefilter(child);
+            }
+        } else if (tree.getMethodName() != null && TestLinkIndex.get(tree) == null
+                && tree.getAnnotation(TestLink.class) == null) {
+            addUnannotated(tree);
+        }
+    }
+
+    /**
+     * Resolves the id of a starting test once for all following events.
+     *
+     * @param description
+     *            of the test.
+     * @return the id, null when the test has no {@link TestLink} annotation.
+     * @throws IllegalArgumentException
+     *             when neither the {@link TestLink#externalId()} nor the {@link TestLink#internalId()} is set.
+     */
+    final TestLinkId<?> testStarting(final Description description) {
+        if (unannotated.contains(description.getDisplayName())) {
+            return null;
+        }
+        final TestLinkId<?> id = resolve(description);
+        if (id != null) {
+            ids.put(description, id);
+        }
+        return id;
+    }
+
+    /**
+     * Forgets the resolved id of a finished test with {@link TestLink} annotation.
+     *
+     * @param description
+     *            of the test.
+     */
+    final void testDone(final Description description) {
+        ids.remove(description);
+    }
+
+    /**
+     * Returns the id of a test, resolved only once while the test is running.
+     *
+     * @param description
+     *            of the test.
+     * @return the id, null when the test has no {@link TestLink} annotation.
+     * @throws IllegalArgumentException
+     *             when neither the {@link TestLink#externalId()} nor the {@link TestLink#internalId()} is set.
+     */
+    protected final TestLinkId<?> getTestLinkId(final Description description) {
+        if (unannotated.contains(description.getDisplayName())) {
+            return null;
+        }
+        final TestLinkId<?> id = ids.get(description);
+        return id != null ? id : resolve(description);
+    }
+
+    /**
+     * Looks up the id in the {@link TestLinkIndex} and takes it from the annotation at runtime only for tests missing
+     * in the index. Tests without annotation are remembered.
+     *
+     * @param description
+     *            of the test.
+     * @return the id, null when the test has no {@link TestLink} annotation.
+     */
+    private TestLinkId<?> resolve(final Description description) {
+        final TestLinkId<?> indexed = TestLinkIndex.get(description);
+        if (indexed != null) {
+            return indexed;
+        }
+        final TestLink testLink = description.getAnnotation(TestLink.class);
+        if (testLink != null) {
+            return TestLinkId.fromAnnotation(testLink, description);
+        }
+        addUnannotated(description);
+        return null;
+    }
+
+    /**
+     * Remembers a test without {@link TestLink} annotation, forgetting all others when
+     * {@link AbstractInTestLinkRunListener#MAX_UNANNOTATED} are remembered already.
+     *
+     * @param description
+     *            of the test.
+     */
+    private void addUnannotated(final Description description) {
+        if (unannotated.size() >= MAX_UNANNOTATED) {
+            unannotated.clear();
+        }
+        unannotated.add(description.getDisplayName());
+    }
+
+    /**
+     * @return the number of remembered tests without {@link TestLink} annotation.
+     */
+    final int getUnannotatedCount() {
+        return unannotated.size();
+    }
+
+    /**
+     * Marks a test as started without failure.
+     *
+     * @param description
+     *            of the test.
+     */
+    protected final void resetFailure(final Description description) {
+        failures.put(description, NO_FAILURE);
+    }
+
+    /**
+     * Sets the failure of a running test, failures of tests which were not started are ignored.
+     *
+     * @param failure
+     *            of the test.
+     */
+    protected final void setFailure(final Failure failure) {
+        failures.replace(failure.getDescription(), failure);
+    }
+
+    /**
+     * Returns the failure of a running test.
+     *
+     * @param description
+     *            of the test.
+     * @return the failure, null when the test is not running or has not failed.
+     */
+    protected final Failure getFailure(final Description description) {
+        final Failure failure = failures.get(description);
+        return failure == NO_FAILURE ? null : failure;
+    }
+
+    /**
+     * Has the running test passed or failed (was an assumption)?
+     *
+     * @param description
+     *            of the test.
+     * @return true when the test is running and passed.
+     */
+    protected final boolean hasPassed(final Description description) {
+        return failures.get(description) == NO_FAILURE;
+    }
+
+    /**
+     * Forgets a finished test.
+     *
+     * @param description
+     *            of the test.
+     */
+    protected final void removeFailure(final Description description) {
+        failures.remove(description);
+    }
+
+    /**
+     * @return the number of running tests.
+     */
+    final int getRunningTestCount() {
+        return failures.size();
+    }
+
     /**
      * Returns the failure of the current {@link Thread}.
      *
      * @return the currentFailure
+     * @deprecated use {@link AbstractInTestLinkRunListener#getFailure(Description)}.
      */
+    @Deprecated
     protected final Failure getCurrentFailure() {
         return currentFailure.get();
     }
@@ -49,22 +248,30 @@ public abstract class AbstractInTestLinkRunListener extends RunListener {
      *
      * @param currentFailure
      *            the currentFailure to set
+     * @deprecated use {@link AbstractInTestLinkRunListener#setFailure(Failure)}.
      */
+    @Deprecated
     protected final void setCurrentFailure(Failure currentFailure) {
         this.currentFailure.set(currentFailure);
     }
 
     /**
      * Resets the current failure, eg there is none.
+     *
+     * @deprecated use {@link AbstractInTestLinkRunListener#resetFailure(Description)}.
      */
+    @Deprecated
     protected final void resetCurrentFailure() {
         this.currentFailure.set(NO_FAILURE);
     }
+
     /**
      * Has the the current test passed or failed (was an assumption)?
      * 
      * @return true when the current test passed.
+     * @deprecated use {@link AbstractInTestLinkRunListener#hasPassed(Description)}.
      */
+    @Deprecated
     protected boolean hasPassed() {
         return getCurrentFailure().equals(NO_FAILURE);
     }
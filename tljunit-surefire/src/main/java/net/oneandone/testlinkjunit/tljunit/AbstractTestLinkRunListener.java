@@ -25,7 +25,7 @@ import org.junit.runner.notification.RunListener;
  * Overriding of behaviour must be accomplished by injecting a specific {@link AbstractInTestLinkRunListener} as
  * all methods defined here are final. Note that {@link RunListener#testRunStarted(org.junit.runner.Description)}
  * and {@link RunListener#testRunFinished(org.junit.runner.Result)} are not <tt>final</tt> as these probably
- * must be extended for flushing and closing a stream etc.
+ * must be extended for flushing and closing a stream etc., calling the implementation of this class.
  * 
  * @param <T>
  *            type of the listener to be called when a {@link TestLink} annotation exists.
@@ -55,18 +55,52 @@ public abstract class AbstractTestLinkRunListener<T extends AbstractInTestLinkRu
         this.inTestLinkListener = testLinkRunListener;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Remembers the tests without {@link TestLink} annotation, see
+     * {@link AbstractInTestLinkRunListener#prefilter(Description)}.
+     */
+    @Override
+    public void testRunStarted(Description description) throws Exception {
+        super.testRunStarted(description);
+        inTestLinkListener.prefilter(description);
+    }
+
+    /**
+     * Called by JUnit 4.13 and later when a suite, e.g. a test class, starts. Remembers the tests without
+     * {@link TestLink} annotation, as the description handed to
+     * {@link AbstractTestLinkRunListener#testRunStarted(Description)} may not contain the tests of the classes.
+     *
+     * This does not override anything with JUnit 4.12, which is what this module is built against, and is inert
+     * there: tests missing in the tree of the run are then resolved when they start.
+     *
+     * @param description
+     *            of the suite.
+     * @throws Exception
+     *             not thrown here.
+     */
+    public final void testSuiteStarted(Description description) throws Exception {
+        inTestLinkListener.prefilter(description);
+    }
+
     /** {@inheritDoc} */
     @Override
     public final void testStarted(Description description) throws Exception {
         super.testStarted(description);
-        selectListener(description).testStarted(description);
+        select(inTestLinkListener.testStarting(description)).testStarted(description);
     }
 
     /** {@inheritDoc} */
     @Override
     public final void testIgnored(Description description) throws Exception {
         super.testIgnored(description);
-        selectListener(description).testIgnored(description);
+        final RunListener listener = select(inTestLinkListener.testStarting(description));
+        try {
+            listener.testIgnored(description);
+        } finally {
+            done(listener, description);
+        }
     }
 
     /** {@inheritDoc} */
@@ -87,7 +121,12 @@ public abstract class AbstractTestLinkRunListener<T extends AbstractInTestLinkRu
     @Override
     public final void testFinished(Description description) throws Exception {
         super.testFinished(description);
-        selectListener(description).testFinished(description);
+        final RunListener listener = selectListener(description);
+        try {
+            listener.testFinished(description);
+        } finally {
+            done(listener, description);
+        }
     }
 
     /**
@@ -98,19 +137,44 @@ public abstract class AbstractTestLinkRunListener<T extends AbstractInTestLinkRu
     }
 
     /**
-     * Selects strategy for test cases with or without {@link TestLink} annotation.
+     * Selects strategy for test cases with or without {@link TestLink} annotation, using the id resolved when the
+     * test started.
      * 
      * @param description
      *            of the test case.
      * @return the currently valid strategy
      */
     private RunListener selectListener(Description description) {
-        final TestLink testLink = description.getAnnotation(TestLink.class);
-        if (testLink != null) {
+        return select(inTestLinkListener.getTestLinkId(description));
+    }
+
+    /**
+     * Selects strategy for test cases with or without {@link TestLink} annotation.
+     *
+     * @param id
+     *            of the test case, null when it has no {@link TestLink} annotation.
+     * @return the currently valid strategy
+     */
+    private RunListener select(final TestLinkId<?> id) {
+        if (id != null) {
             return inTestLinkListener;
         } else {
             return noTestLinkListener;
         }
     }
 
+    /**
+     * Forgets the id of a finished test case, ids are only kept for test cases with {@link TestLink} annotation.
+     *
+     * @param listener
+     *            selected for the test case.
+     * @param description
+     *            of the test case.
+     */
+    private void done(final RunListener listener, final Description description) {
+        if (listener == inTestLinkListener) {
+            inTestLinkListener.testDone(description);
+        }
+    }
+
 }
@@ -0,0 +1,103 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link TestCaseSink} which keeps one testcase per {@link TestLinkId}, merging repeated invocations with a
+ * {@link MergeRule}, and hands the merged testcases to another sink in order of their first invocation when being
+ * closed.
+ *
+ * @author Mirko Friedenhagen
+ */
+class AggregatingTestCaseSink implements TestCaseSink {
+
+    /** Default for the maximum length of merged notes. */
+    static final int DEFAULT_MAX_NOTES_LENGTH = 4096;
+
+    /** Merged testcases by id. */
+    private final ConcurrentMap<TestLinkId<?>, TestCaseResult> testCases =
+            new ConcurrentHashMap<TestLinkId<?>, TestCaseResult>();
+
+    /** Ids in order of their first invocation. */
+    private final Queue<TestLinkId<?>> ids = new ConcurrentLinkedQueue<TestLinkId<?>>();
+
+    /** Rule for merging repeated invocations. */
+    private final MergeRule rule;
+
+    /** Maximum length of merged notes. */
+    private final int maxNotesLength;
+
+    /** Receives the merged testcases. */
+    private final TestCaseSink delegate;
+
+    /**
+     * @param rule
+     *            for merging repeated invocations.
+     * @param maxNotesLength
+     *            maximum length of merged notes.
+     * @param delegate
+     *            receives the merged testcases when being closed.
+     */
+    AggregatingTestCaseSink(final MergeRule rule, final int maxNotesLength, final TestCaseSink delegate) {
+        this.rule = rule;
+        this.maxNotesLength = maxNotesLength;
+        this.delegate = delegate;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void add(final TestCaseResult testCase) {
+        final TestLinkId<?> id = testCase.getId();
+        TestCaseResult previous = testCases.putIfAbsent(id, testCase);
+        if (previous == null) {
+            ids.add(id);
+            return;
+        }
+        while (!testCases.replace(id, previous, rule.merge(previous, testCase, maxNotesLength))) {
+            previous = testCases.get(id);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only flushes the delegate, as merged testcases may still change.
+     */
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Hands all merged testcases to the delegate and closes it.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (final TestLinkId<?> id : ids) {
+                delegate.add(testCases.get(id));
+            }
+        } finally {
+            delegate.close();
+        }
+    }
+}
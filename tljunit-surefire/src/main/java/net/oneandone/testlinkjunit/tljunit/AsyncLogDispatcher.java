@@ -0,0 +1,168 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+/**
+ * Hands {@link LogEvent}s over to one thread calling the logger, so tests do not wait for slow appenders or their
+ * locks.
+ *
+ * Events are kept in a bounded ring buffer, the {@link OverflowPolicy} decides what happens when it is full.
+ * {@link AsyncLogDispatcher#drain()} waits until all events dispatched before are logged.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class AsyncLogDispatcher {
+
+    /** Default capacity of the queue. */
+    static final int DEFAULT_CAPACITY = 8192;
+
+    /** Milliseconds {@link AsyncLogDispatcher#drain()} waits before checking whether the drainer thread is alive. */
+    private static final long POLL_MILLIS = 100;
+
+    /** Logger to log to, only used from the drainer thread. */
+    private final Logger logger;
+
+    /** Events not logged yet. */
+    private final BlockingQueue<LogEvent> queue;
+
+    /** What happens when the queue is full. */
+    private final OverflowPolicy overflowPolicy;
+
+    /** Number of events dropped since the last drain. */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Number of events the logger failed on since the last drain. */
+    private final AtomicLong failed = new AtomicLong();
+
+    /** Thread calling the logger. */
+    private final Thread drainer;
+
+    /**
+     * Starts the drainer thread.
+     *
+     * @param logger
+     *            to log to.
+     * @param capacity
+     *            maximum number of events waiting to be logged.
+     * @param overflowPolicy
+     *            what happens when the queue is full.
+     */
+    AsyncLogDispatcher(final Logger logger, final int capacity, final OverflowPolicy overflowPolicy) {
+        this.logger = logger;
+        this.queue = new ArrayBlockingQueue<LogEvent>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                logAll();
+            }
+        }, "testlink-log-dispatcher");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Queues the event according to the {@link OverflowPolicy}.
+     *
+     * @param event
+     *            to log.
+     */
+    void dispatch(final LogEvent event) {
+        try {
+            if (!overflowPolicy.enqueue(queue, event)) {
+                dropped.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the log dispatcher", e);
+        }
+    }
+
+    /**
+     * Waits until all events dispatched before are logged, afterwards warns about dropped events and events the
+     * logger failed on. Gives up with a warning when the drainer thread is not alive anymore.
+     *
+     * @throws InterruptedException
+     *             when interrupted while waiting.
+     */
+    void drain() throws InterruptedException {
+        final CountDownLatch reached = new CountDownLatch(1);
+        final LogEvent marker = LogEvent.marker(reached);
+        while (!queue.offer(marker, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!isDrainerAlive()) {
+                return;
+            }
+        }
+        while (!reached.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!isDrainerAlive()) {
+                return;
+            }
+        }
+        final long droppedEvents = dropped.getAndSet(0);
+        if (droppedEvents > 0) {
+            logger.warn("Dropped {} events as more than {} were waiting (policy {}).",
+                    new Object[] {droppedEvents, queue.size() + queue.remainingCapacity(), overflowPolicy, });
+        }
+        final long failedEvents = failed.getAndSet(0);
+        if (failedEvents > 0) {
+            logger.warn("Logging failed for {} events.", failedEvents);
+        }
+    }
+
+    /**
+     * @return the number of events dropped since the last drain.
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return true when the drainer thread is alive, otherwise warns about the events which will not be logged.
+     */
+    private boolean isDrainerAlive() {
+        if (drainer.isAlive()) {
+            return true;
+        }
+        logger.warn("Log dispatcher stopped, {} events were not logged.", queue.size());
+        return false;
+    }
+
+    /**
+     * Loop of the drainer thread, runs as long as the JVM. Whatever the logger throws is counted as failed.
+     */
+    private void logAll() {
+        try {
+            while (true) {
+                final LogEvent event = queue.take();
+                try {
+                    event.log(logger);
+                } catch (Throwable e) {
+                    failed.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link TestCaseSink} which writes every completed testcase as a compact binary record instead of building XML while
+ * tests are running. The records are converted into a Testlink XML file after the test run, see
+ * {@link TestLinkBinaryResults}.
+ *
+ * @author Mirko Friedenhagen
+ */
+class BinaryTestCaseSink implements TestCaseSink {
+
+    /** Stream to which the records will be written. */
+    private final OutputStream out;
+
+    /** First problem writing a record, guarded by this and rethrown in {@link BinaryTestCaseSink#close()}. */
+    private IOException failure;
+
+    /**
+     * @param out
+     *            the records are written to, should be buffered, see {@link Compression#newOutputStream(String)}.
+     */
+    BinaryTestCaseSink(final OutputStream out) {
+        this.out = out;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void add(final TestCaseResult testCase) {
+        final ByteBuffer frame = TestCaseRecordCodec.encodeFrame(testCase);
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                out.write(frame.array(), frame.arrayOffset(), frame.remaining());
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            out.flush();
+        } finally {
+            out.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
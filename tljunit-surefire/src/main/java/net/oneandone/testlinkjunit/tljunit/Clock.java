@@ -0,0 +1,50 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+/**
+ * Source of the wall clock time stamping testcases and of the monotonic time measuring their duration, injectable
+ * for tests.
+ *
+ * @author Mirko Friedenhagen
+ */
+abstract class Clock {
+
+    /** Uses {@link System#currentTimeMillis()} and {@link System#nanoTime()}. */
+    static final Clock SYSTEM = new Clock() {
+        /** {@inheritDoc} */
+        @Override
+        long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * @return the wall clock time in milliseconds since the epoch.
+     */
+    abstract long currentTimeMillis();
+
+    /**
+     * @return the monotonic time in nanoseconds, only meaningful as difference of two calls.
+     */
+    abstract long nanoTime();
+}
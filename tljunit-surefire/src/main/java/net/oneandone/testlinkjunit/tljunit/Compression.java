@@ -0,0 +1,163 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of result files, chosen by the extension of the file name.
+ *
+ * Files are read and written through buffered streams. The size of the buffers may be set by means of the system
+ * property <tt>testlink.results.bufferSize</tt> which defaults to 64 KiB. The streams are shared with tools reading
+ * and writing result files.
+ *
+ * @author Mirko Friedenhagen
+ */
+public enum Compression {
+
+    /** Plain file. */
+    none("") {
+        /** {@inheritDoc} */
+        @Override
+        OutputStream compress(final OutputStream out, final int bufferSize) {
+            return out;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        InputStream decompress(final InputStream in, final int bufferSize) {
+            return in;
+        }
+    },
+
+    /** gzip compressed file. */
+    gzip(".gz") {
+        /** {@inheritDoc} */
+        @Override
+        OutputStream compress(final OutputStream out, final int bufferSize) throws IOException {
+            return new GZIPOutputStream(out, bufferSize);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        InputStream decompress(final InputStream in, final int bufferSize) throws IOException {
+            return new GZIPInputStream(in, bufferSize);
+        }
+    };
+
+    /** Default size of the buffer. */
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /** Extension of files using this compression. */
+    private final String extension;
+
+    /**
+     * Constructor.
+     *
+     * @param extension of files using this compression.
+     */
+    Compression(final String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Wraps the stream with the compression.
+     *
+     * @param out
+     *            the buffered stream of the file.
+     * @param bufferSize
+     *            size of the buffer.
+     * @return the compressing stream.
+     * @throws IOException
+     *             when the header could not be written.
+     */
+    abstract OutputStream compress(OutputStream out, int bufferSize) throws IOException;
+
+    /**
+     * Wraps the stream with the decompression.
+     *
+     * @param in
+     *            the buffered stream of the file.
+     * @param bufferSize
+     *            size of the buffer.
+     * @return the decompressing stream.
+     * @throws IOException
+     *             when the header could not be read.
+     */
+    abstract InputStream decompress(InputStream in, int bufferSize) throws IOException;
+
+    /**
+     * Returns the compression for a file by looking at its extension.
+     *
+     * @param fileName
+     *            of the results.
+     * @return the compression.
+     */
+    static Compression forFileName(final String fileName) {
+        if (fileName.endsWith(gzip.extension)) {
+            return gzip;
+        }
+        return none;
+    }
+
+    /**
+     * Opens a buffered stream to the file, compressed according to its extension.
+     *
+     * @param fileName
+     *            of the results.
+     * @return stream to write to.
+     * @throws IOException
+     *             when the file could not be written, e.g. the parent directory does not exist.
+     */
+    public static OutputStream newOutputStream(final String fileName) throws IOException {
+        final int bufferSize = Integer.getInteger("testlink.results.bufferSize", DEFAULT_BUFFER_SIZE);
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(fileName), bufferSize);
+        try {
+            return forFileName(fileName).compress(out, bufferSize);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a buffered stream from the file, decompressed according to its extension.
+     *
+     * @param fileName
+     *            of the results.
+     * @return stream to read from.
+     * @throws IOException
+     *             when the file could not be read.
+     */
+    public static InputStream newInputStream(final String fileName) throws IOException {
+        final int bufferSize = Integer.getInteger("testlink.results.bufferSize", DEFAULT_BUFFER_SIZE);
+        final InputStream in = new BufferedInputStream(new FileInputStream(fileName), bufferSize);
+        try {
+            return forFileName(fileName).decompress(in, bufferSize);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * {@link TestCaseSink} which hands only testcases whose state changed since a baseline, or which are not part of
+ * the baseline, to the delta sink, while all testcases are handed to the full sink, which becomes the next baseline.
+ * This way the import into Testlink scales with the changes instead of the size of the suite.
+ *
+ * @author Mirko Friedenhagen
+ */
+class DeltaTestCaseSink implements TestCaseSink {
+
+    /** States of the baseline by id, only read after construction. */
+    private final Map<TestLinkId<?>, TestState> baseline;
+
+    /** Receives changed and new testcases. */
+    private final TestCaseSink delta;
+
+    /** Receives all testcases. */
+    private final TestCaseSink full;
+
+    /**
+     * @param baseline
+     *            states of the previous results by id.
+     * @param delta
+     *            receives changed and new testcases.
+     * @param full
+     *            receives all testcases.
+     */
+    DeltaTestCaseSink(final Map<TestLinkId<?>, TestState> baseline, final TestCaseSink delta,
+            final TestCaseSink full) {
+        this.baseline = baseline;
+        this.delta = delta;
+        this.full = full;
+    }
+
+    /**
+     * Reads the states of previous results written in Testlink's XML format.
+     *
+     * @param in
+     *            the previous results.
+     * @return states by id, when an id occurs more than once, the last occurrence wins.
+     * @throws IOException
+     *             when the results could not be read or parsed.
+     */
+    static Map<TestLinkId<?>, TestState> readBaseline(final InputStream in) throws IOException {
+        final Map<TestLinkId<?>, TestState> states = new HashMap<TestLinkId<?>, TestState>();
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        try {
+            final XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                TestLinkId<?> id = null;
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    final String name = reader.getLocalName();
+                    if ("testcase".equals(name)) {
+                        id = readId(reader);
+                    } else if ("result".equals(name) && id != null) {
+                        states.put(id, TestState.forState(reader.getElementText().trim()));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+        return states;
+    }
+
+    /**
+     * @param reader
+     *            positioned on a testcase element.
+     * @return the id of the testcase.
+     * @throws IOException
+     *             when the testcase has no id.
+     */
+    private static TestLinkId<?> readId(final XMLStreamReader reader) throws IOException {
+        final String externalId = reader.getAttributeValue(null, "external_id");
+        if (externalId != null) {
+            return new TestLinkId.ExternalTestLinkId(externalId);
+        }
+        final String internalId = reader.getAttributeValue(null, "id");
+        if (internalId != null) {
+            return new TestLinkId.InternalTestLinkId(Long.valueOf(internalId));
+        }
+        throw new IOException("Testcase without id at line " + reader.getLocation().getLineNumber());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void add(final TestCaseResult testCase) {
+        if (baseline.get(testCase.getId()) != testCase.getState()) {
+            delta.add(testCase);
+        }
+        full.add(testCase);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void flush() throws IOException {
+        delta.flush();
+        full.flush();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() throws IOException {
+        try {
+            delta.close();
+        } finally {
+            full.close();
+        }
+    }
+}
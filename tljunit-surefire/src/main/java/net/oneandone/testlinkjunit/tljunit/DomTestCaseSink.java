@@ -0,0 +1,285 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.maven.shared.utils.xml.PrettyPrintXMLWriter;
+import org.apache.maven.shared.utils.xml.XMLWriter;
+import org.apache.maven.shared.utils.xml.Xpp3Dom;
+
+/**
+ * {@link TestCaseSink} which holds all results in memory and writes them in one go when being closed.
+ *
+ * Results are kept in a compact {@link TestCaseStore}, a DOM is only materialized on demand by
+ * {@link DomTestCaseSink#getResults()}, while {@link DomTestCaseSink#close()} writes the store directly. The file is
+ * the same as {@link Xpp3Dom#toString()} of the results: an XML declaration with encoding <tt>UTF-8</tt>, elements
+ * indented by two spaces and separated by the line separator of the platform.
+ *
+ * Adding never blocks: testcases are appended to a lock-free queue, which is drained into the store in batches by
+ * whichever thread acquires the drain lock without waiting, and completely before the results are serialized.
+ *
+ * @author Mirko Friedenhagen
+ */
+class DomTestCaseSink implements TestCaseSink {
+
+    /** Needed for conversion of final result to bytes. */
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    /** Number of pending testcases from which on adding threads try to drain the queue. */
+    static final int DRAIN_THRESHOLD = 1024;
+
+    /** Holds all drained results, guarded by {@link DomTestCaseSink#drainLock}. */
+    private final TestCaseStore results = new TestCaseStore();
+
+    /** Testcases not yet drained into {@link DomTestCaseSink#results}. */
+    private final Queue<TestCaseResult> pending = new ConcurrentLinkedQueue<TestCaseResult>();
+
+    /** Approximate size of {@link DomTestCaseSink#pending}. */
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /** Guards {@link DomTestCaseSink#results}. */
+    private final Lock drainLock = new ReentrantLock();
+
+    /** Stream to which the results will be printed. */
+    private final OutputStream out;
+
+    /** Formats the timestamps of all testcases. */
+    private final TimestampFormat timestamps = new TimestampFormat();
+
+    /**
+     * @param out
+     *            the xml data is written to when closing.
+     */
+    DomTestCaseSink(final OutputStream out) {
+        this.out = out;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void add(final TestCaseResult testCase) {
+        pending.add(testCase);
+        if (pendingCount.incrementAndGet() >= DRAIN_THRESHOLD && drainLock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Moves all pending testcases into the store in the order they were added, callers must hold
+     * {@link DomTestCaseSink#drainLock}.
+     */
+    private void drain() {
+        TestCaseResult testCase = pending.poll();
+        while (testCase != null) {
+            pendingCount.decrementAndGet();
+            results.add(testCase);
+            testCase = pending.poll();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Does nothing, as the document is only complete when all results are known.
+     */
+    @Override
+    public void flush() {
+        // nothing to do.
+    }
+
+    /**
+     * {@inheritDoc}
+     * Will write the results to the outputstream and close the stream afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        final Writer writer = new OutputStreamWriter(out, UTF8);
+        try {
+            final XMLWriter xmlWriter = new PrettyPrintXMLWriter(writer, "UTF-8", null);
+            xmlWriter.startElement("results");
+            drainLock.lock();
+            try {
+                drain();
+                for (int i = 0; i < results.size(); i++) {
+                    writeTestCase(xmlWriter, results.get(i));
+                }
+            } finally {
+                drainLock.unlock();
+            }
+            xmlWriter.endElement();
+            writer.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Materializes a new DOM of all results added so far.
+     *
+     * @return the results
+     */
+    Xpp3Dom getResults() {
+        final Xpp3Dom dom = new Xpp3Dom("results");
+        drainLock.lock();
+        try {
+            drain();
+            for (int i = 0; i < results.size(); i++) {
+                dom.addChild(createTestCase(results.get(i)));
+            }
+        } finally {
+            drainLock.unlock();
+        }
+        return dom;
+    }
+
+    /**
+     * Writes a testcase element with all children, formatted like {@link Xpp3Dom#toString()}.
+     *
+     * @param writer
+     *            to write to.
+     * @param testCase
+     *            the completed testcase.
+     * @throws IOException
+     *             when writing fails.
+     */
+    private void writeTestCase(final XMLWriter writer, final TestCaseResult testCase) throws IOException {
+        writer.startElement("testcase");
+        final TestLinkId<?> id = testCase.getId();
+        writer.addAttribute(id.getType(), id.getValue());
+        writeElementWithText(writer, "tester", testCase.getTester());
+        writeElementWithText(writer, "timestamp", timestamps.format(testCase.getTimestamp()));
+        writeElementWithText(writer, "result", testCase.getState().getState());
+        writeElementWithText(writer, "notes", testCase.getNotes());
+        final String executionDuration = testCase.getExecutionDuration();
+        if (executionDuration != null) {
+            writeElementWithText(writer, "execution_duration", executionDuration);
+        }
+        writer.endElement();
+    }
+
+    /**
+     * Writes an element.
+     *
+     * @param writer
+     *            to write to.
+     * @param elementName
+     *            elementName of XML
+     * @param text
+     *            value of XML, may be null.
+     * @throws IOException
+     *             when writing fails.
+     */
+    private void writeElementWithText(final XMLWriter writer, final String elementName, final String text)
+            throws IOException {
+        writer.startElement(elementName);
+        if (text != null) {
+            writer.writeText(text);
+        }
+        writer.endElement();
+    }
+
+    /**
+     * Creates a new testcase element with all children.
+     *
+     * @param testCase
+     *            the completed testcase.
+     * @return &lt;testcase&gt; element.
+     */
+    private Xpp3Dom createTestCase(final TestCaseResult testCase) {
+        final Xpp3Dom element = new Xpp3Dom("testcase");
+        final TestLinkId<?> id = testCase.getId();
+        element.setAttribute(id.getType(), id.getValue());
+        element.addChild(createTester(testCase.getTester()));
+        element.addChild(createElementWithText("timestamp", timestamps.format(testCase.getTimestamp())));
+        element.addChild(createResult(testCase.getState()));
+        element.addChild(createNotes(testCase.getNotes()));
+        final String executionDuration = testCase.getExecutionDuration();
+        if (executionDuration != null) {
+            element.addChild(createElementWithText("execution_duration", executionDuration));
+        }
+        return element;
+    }
+
+    /**
+     * Creates a new element.
+     *
+     * @param elementName elementName of XML
+     * @param text value of XML
+     * @return dom
+     */
+    private Xpp3Dom createElementWithText(String elementName, String text) {
+        final Xpp3Dom element = new Xpp3Dom(elementName);
+        element.setValue(text);
+        return element;
+    }
+
+    /**
+     * Creates a new tester element filled with the tester.
+     *
+     * @param userName
+     *            name of the user got from system property {@code testlink.userName} or {@code user.name}.
+     * @return &lt;tester&gt; element.
+     */
+    Xpp3Dom createTester(final String userName) {
+        return createElementWithText("tester", userName);
+    }
+
+    /**
+     * Creates a new timestamp element.
+     *
+     * @param date
+     *            of the test run.
+     * @return &lt;timestamp&gt; element.
+     */
+    Xpp3Dom createTimeStamp(final Date date) {
+        return createElementWithText("timestamp", timestamps.format(date.getTime()));
+    }
+
+    /**
+     * Creates a new notes element.
+     *
+     * @param notesValue
+     *            additional notes.
+     * @return &lt;notes&gt; element.
+     */
+    Xpp3Dom createNotes(final String notesValue) {
+        return createElementWithText("notes", notesValue);
+    }
+
+    /**
+     * Creates a new result element.
+     *
+     * @param testState
+     *            to report
+     * @return &lt;result&gt; element.
+     */
+    Xpp3Dom createResult(final TestState testState) {
+        return createElementWithText("result", testState.getState());
+    }
+}
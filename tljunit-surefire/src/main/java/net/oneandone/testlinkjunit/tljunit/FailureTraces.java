@@ -0,0 +1,249 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders bounded stacktraces for the notes of failed testcases and interns them by signature.
+ *
+ * At most <tt>maxFrames</tt> frames of the test's own code are rendered for every throwable of the cause chain,
+ * consecutive frames of JUnit, reflection and surefire are collapsed into one line. The signature of a failure is the
+ * class of its root cause together with the first rendered frame of the root cause. Only the first failure of a
+ * signature carries the trace, all others reference it, so thousands of tests failing for the same reason do not
+ * repeat the same trace. The number of failures per signature is kept for a summary.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class FailureTraces {
+
+    /** Default for the maximum number of rendered frames per throwable. */
+    static final int DEFAULT_MAX_FRAMES = 20;
+
+    /** Prefixes of classes whose frames are collapsed. */
+    private static final String[] FRAMEWORK_PREFIXES = {
+        "org.junit.", "junit.framework.", "sun.reflect.", "java.lang.reflect.", "jdk.internal.reflect.",
+        "org.apache.maven.surefire." };
+
+    /** Maximum number of causes rendered. */
+    private static final int MAX_CAUSES = 8;
+
+    /** Maximum number of rendered frames per throwable. */
+    private final int maxFrames;
+
+    /** Failures by signature. */
+    private final ConcurrentMap<String, Signature> signatures = new ConcurrentHashMap<String, Signature>();
+
+    /**
+     * @param maxFrames
+     *            maximum number of rendered frames per throwable.
+     */
+    FailureTraces(final int maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * Registers a failure and returns the reason to put into the notes: the bounded trace for the first failure of a
+     * signature, otherwise a reference to that first failure.
+     *
+     * @param testHeader
+     *            of the failed test.
+     * @param thrown
+     *            of the failed test.
+     * @return the reason.
+     */
+    String describe(final String testHeader, final Throwable thrown) {
+        final String key = signatureOf(thrown);
+        Signature signature = signatures.get(key);
+        if (signature == null) {
+            final Signature created = new Signature(key, testHeader, render(thrown), String.valueOf(thrown));
+            signature = signatures.putIfAbsent(key, created);
+            if (signature == null) {
+                created.count.incrementAndGet();
+                return created.trace;
+            }
+        }
+        signature.count.incrementAndGet();
+        return String.format("%s, same trace as '%s'", signature.firstLine, signature.firstTestHeader);
+    }
+
+    /**
+     * @return one line per signature, most frequent first.
+     */
+    List<String> summary() {
+        final List<Signature> sorted = new ArrayList<Signature>(signatures.values());
+        Collections.sort(sorted);
+        final List<String> lines = new ArrayList<String>(sorted.size());
+        for (final Signature signature : sorted) {
+            lines.add(String.format("%d x %s, first in '%s'", signature.count.get(), signature.key,
+                    signature.firstTestHeader));
+        }
+        return lines;
+    }
+
+    /**
+     * Renders the bounded trace of <tt>thrown</tt> and its causes.
+     *
+     * @param thrown
+     *            to render.
+     * @return the trace.
+     */
+    String render(final Throwable thrown) {
+        final StringBuilder builder = new StringBuilder();
+        final Map<Throwable, Boolean> seen = new IdentityHashMap<Throwable, Boolean>();
+        Throwable current = thrown;
+        for (int causes = 0; current != null && seen.put(current, Boolean.TRUE) == null; causes++) {
+            if (causes == MAX_CAUSES) {
+                builder.append("\n... more causes");
+                break;
+            }
+            if (causes > 0) {
+                builder.append("\nCaused by: ");
+            }
+            builder.append(current);
+            renderFrames(builder, current.getStackTrace());
+            current = current.getCause();
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param builder
+     *            to render to.
+     * @param frames
+     *            of one throwable.
+     */
+    private void renderFrames(final StringBuilder builder, final StackTraceElement[] frames) {
+        int rendered = 0;
+        int collapsed = 0;
+        for (int i = 0; i < frames.length; i++) {
+            if (isFramework(frames[i])) {
+                collapsed++;
+                continue;
+            }
+            appendCollapsed(builder, collapsed);
+            collapsed = 0;
+            if (rendered == maxFrames) {
+                builder.append("\n\t... ").append(frames.length - i).append(" more");
+                return;
+            }
+            builder.append("\n\tat ").append(frames[i]);
+            rendered++;
+        }
+        appendCollapsed(builder, collapsed);
+    }
+
+    /**
+     * @param builder
+     *            to render to.
+     * @param collapsed
+     *            number of consecutive framework frames.
+     */
+    private static void appendCollapsed(final StringBuilder builder, final int collapsed) {
+        if (collapsed > 0) {
+            builder.append("\n\t... ").append(collapsed).append(" framework frames");
+        }
+    }
+
+    /**
+     * @param thrown
+     *            of a failed test.
+     * @return class of the root cause and its first frame outside of the frameworks.
+     */
+    static String signatureOf(final Throwable thrown) {
+        final Map<Throwable, Boolean> seen = new IdentityHashMap<Throwable, Boolean>();
+        Throwable root = thrown;
+        while (root.getCause() != null && seen.put(root, Boolean.TRUE) == null) {
+            root = root.getCause();
+        }
+        final StringBuilder signature = new StringBuilder(root.getClass().getName());
+        for (final StackTraceElement frame : root.getStackTrace()) {
+            if (!isFramework(frame)) {
+                signature.append(" at ").append(frame);
+                break;
+            }
+        }
+        return signature.toString();
+    }
+
+    /**
+     * @param frame
+     *            of a trace.
+     * @return true when the frame belongs to JUnit, reflection or surefire.
+     */
+    private static boolean isFramework(final StackTraceElement frame) {
+        final String className = frame.getClassName();
+        for (final String prefix : FRAMEWORK_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Failures sharing the same root cause.
+     */
+    static final class Signature implements Comparable<Signature> {
+
+        /** Class and first frame of the root cause. */
+        private final String key;
+
+        /** Header of the first failed test. */
+        private final String firstTestHeader;
+
+        /** Bounded trace of the first failure. */
+        private final String trace;
+
+        /** First line of the trace of the first failure. */
+        private final String firstLine;
+
+        /** Number of failures. */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * @param key
+         *            class and first frame of the root cause.
+         * @param firstTestHeader
+         *            header of the first failed test.
+         * @param trace
+         *            bounded trace of the first failure.
+         * @param firstLine
+         *            first line of the trace of the first failure.
+         */
+        private Signature(final String key, final String firstTestHeader, final String trace,
+                final String firstLine) {
+            this.key = key;
+            this.firstTestHeader = firstTestHeader;
+            this.trace = trace;
+            this.firstLine = firstLine;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int compareTo(final Signature other) {
+            final int byCount = other.count.get() - count.get();
+            return byCount != 0 ? byCount : key.compareTo(other.key);
+        }
+    }
+}
@@ -17,13 +17,17 @@ package net.oneandone.testlinkjunit.tljunit;
 
 import java.net.URI;
 
+import net.oneandone.testlinkjunit.tljunit.LogEvent.Level;
+
 import org.junit.Ignore;
 import org.junit.runner.Description;
 import org.junit.runner.notification.Failure;
 import org.slf4j.Logger;
 
 /**
- * {@link org.junit.runner.notification.RunListener} which logs events to the injected logger.
+ * {@link org.junit.runner.notification.RunListener} which logs events to the injected logger, either directly on the
+ * thread running the test or by means of an {@link AsyncLogDispatcher}. The end of every testcase which ran is logged
+ * with the elapsed time in milliseconds, measured by the monotonic {@link Clock#nanoTime()}.
  *
  * @author Mirko Friedenhagen
  */
@@ -32,15 +36,24 @@ final class InTestLinkLogRunListener extends AbstractInTestLinkRunListener {
     /** Default when no URI is given during instantiation. */
     static final URI NULL_URI = URI.create("");
 
-    /** URI of the TestLink instance. */
-    private final URI uri;
+    /** Nanoseconds per millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000L;
 
     /** Logger to logger to. */
     private final Logger logger;
 
-    /** Additional resolver which creates links to the testcase in Testlink. */
+    /** Additional resolver which creates links to the testcase in Testlink, null when no link is logged. */
     private final TestLinkUriResolver testLinkUriResolver;
 
+    /** Logs asynchronously, null when logging on the thread running the test. */
+    private final AsyncLogDispatcher dispatcher;
+
+    /** Measures the elapsed time of the testcases. */
+    private final Clock clock;
+
+    /** Start of the running testcases in {@link Clock#nanoTime()}. */
+    private final RunningTests<Long> started = new RunningTests<Long>();
+
     /**
      * @param logger
      *            to logger to.
@@ -48,30 +61,78 @@ final class InTestLinkLogRunListener extends AbstractInTestLinkRunListener {
      *            for linking to the testcases in the testlink instance.
      */
     InTestLinkLogRunListener(final Logger logger, final URI testlinkUri) {
+        this(logger, testlinkUri, null);
+    }
+
+    /**
+     * @param logger
+     *            to logger to.
+     * @param testlinkUri
+     *            for linking to the testcases in the testlink instance.
+     * @param dispatcher
+     *            logs asynchronously to the same logger, null to log on the thread running the test.
+     */
+    InTestLinkLogRunListener(final Logger logger, final URI testlinkUri, final AsyncLogDispatcher dispatcher) {
+        this(logger, testlinkUri, dispatcher, Clock.SYSTEM);
+    }
+
+    /**
+     * @param logger
+     *            to logger to.
+     * @param testlinkUri
+     *            for linking to the testcases in the testlink instance.
+     * @param dispatcher
+     *            logs asynchronously to the same logger, null to log on the thread running the test.
+     * @param clock
+     *            measures the elapsed time of the testcases.
+     */
+    InTestLinkLogRunListener(final Logger logger, final URI testlinkUri, final AsyncLogDispatcher dispatcher,
+            final Clock clock) {
+        this(logger, TestLinkUriResolver.create(testlinkUri, TestLinkVersion.v1_8, null, null), dispatcher, clock);
+    }
+
+    /**
+     * @param logger
+     *            to logger to.
+     * @param testLinkUriResolver
+     *            creates links to the testcases in the testlink instance, null to log no links.
+     * @param dispatcher
+     *            logs asynchronously to the same logger, null to log on the thread running the test.
+     * @param clock
+     *            measures the elapsed time of the testcases.
+     */
+    InTestLinkLogRunListener(final Logger logger, final TestLinkUriResolver testLinkUriResolver,
+            final AsyncLogDispatcher dispatcher, final Clock clock) {
         this.logger = logger;
-        this.uri = testlinkUri;
-        this.testLinkUriResolver = new TestLinkUriResolver(testlinkUri);
+        this.testLinkUriResolver = testLinkUriResolver;
+        this.dispatcher = dispatcher;
+        this.clock = clock;
     }
 
     /** {@inheritDoc} */
     @Override
     public void testFinished(Description description) {
-        if (hasPassed()) {
-            logger.info("END Testcase '{}' {} PASSED", getId(description), description.getDisplayName());
+        if (hasPassed(description)) {
+            log(Level.info, "END Testcase '{}' {} PASSED after {} ms", getId(description),
+                    description.getDisplayName(), elapsed(description));
         }
+        removeFailure(description);
+        started.remove(description);
     }
 
     /** {@inheritDoc} */
     @Override
     public void testFailure(Failure failure) {
-        setCurrentFailure(failure);
+        setFailure(failure);
         final String message = failure.getMessage();
         if (message != null) {
-            logger.error("END Testcase '{}' '{}' FAILED because '{}'.", new Object[] {getId(failure.getDescription()),
-                    failure.getTestHeader(), message, });
+            log(Level.error, "END Testcase '{}' '{}' FAILED after {} ms because '{}'.",
+                    getId(failure.getDescription()), failure.getTestHeader(), elapsed(failure.getDescription()),
+                    message);
         } else {
-            logger.error("END Testcase '{}' '{}' FAILED because '{}'.", new Object[] {getId(failure.getDescription()),
-                    failure.getTestHeader(), failure.getException(), });
+            log(Level.error, "END Testcase '{}' '{}' FAILED after {} ms because '{}'.",
+                    getId(failure.getDescription()), failure.getTestHeader(), elapsed(failure.getDescription()),
+                    failure.getException());
         }
     }
 
@@ -80,31 +141,81 @@ final class InTestLinkLogRunListener extends AbstractInTestLinkRunListener {
     public void testIgnored(Description description) {
         testStarted(description);
         final String message = description.getAnnotation(Ignore.class).value();
-        logger.warn("END Testcase '{}' '{}' BLOCKED because '{}'.",
-                new Object[] {getId(description), description.getDisplayName(), message, });
+        log(Level.warn, "END Testcase '{}' '{}' BLOCKED because '{}'.", getId(description),
+                description.getDisplayName(), message);
+        removeFailure(description);
+        started.remove(description);
     }
 
     /** {@inheritDoc} */
     @Override
     public void testAssumptionFailure(Failure failure) {
-        setCurrentFailure(failure);
-        logger.warn("END Testcase '{}' '{}' BLOCKED because '{}'.", new Object[] {getId(failure.getDescription()),
-                failure.getTestHeader(), failure.getMessage(), });
+        setFailure(failure);
+        log(Level.warn, "END Testcase '{}' '{}' BLOCKED after {} ms because '{}'.", getId(failure.getDescription()),
+                failure.getTestHeader(), elapsed(failure.getDescription()), failure.getMessage());
 
     }
 
     /** {@inheritDoc} */
     @Override
     public void testStarted(Description description) {
-        resetCurrentFailure();
+        started.put(description, clock.nanoTime());
+        resetFailure(description);
         final String id = getId(description);
-        logger.info("START Testcase '{}' '{}'.", id, description.getDisplayName());
-        if (!uri.equals(NULL_URI)) {
-            logger.info("START Testcase '{}' '{}'.", id,
-                    testLinkUriResolver.fromTestLinkId(TestLinkId.fromDescription(description)));
+        log(Level.info, "START Testcase '{}' '{}'.", id, description.getDisplayName());
+        if (testLinkUriResolver != null) {
+            log(Level.info, "START Testcase '{}' '{}'.", id,
+                    testLinkUriResolver.fromTestLinkId(getTestLinkId(description)));
+        }
+    }
+
+    /**
+     * @param description
+     *            of the testcase.
+     * @return milliseconds since the testcase started, 0 when it is not running.
+     */
+    private long elapsed(final Description description) {
+        final Long start = started.get(description);
+        return start == null ? 0L : (clock.nanoTime() - start) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Logs directly or hands an immutable event over to the {@link AsyncLogDispatcher}.
+     *
+     * @param level
+     *            of the message.
+     * @param format
+     *            of the message.
+     * @param arguments
+     *            of the message.
+     */
+    private void log(final Level level, final String format, final Object... arguments) {
+        if (dispatcher == null) {
+            level.log(logger, format, arguments);
+        } else {
+            dispatcher.dispatch(LogEvent.of(level, format, arguments));
+        }
+    }
+
+    /**
+     * Waits until all events are logged when logging asynchronously.
+     *
+     * @throws InterruptedException
+     *             when interrupted while waiting.
+     */
+    void drain() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.drain();
         }
     }
 
+    /**
+     * @return the dispatcher, null when logging on the thread running the test.
+     */
+    AsyncLogDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
     /**
      * Returns the {@link TestLinkId} from the {@link TestLink} annotation of the description.
      *
@@ -113,7 +224,7 @@ final class InTestLinkLogRunListener extends AbstractInTestLinkRunListener {
      * @return the {@link TestLinkId} from the {@link TestLink} annotation of the description.
      */
     String getId(Description description) {
-        return String.valueOf(TestLinkId.fromDescription(description));
+        return String.valueOf(getTestLinkId(description));
     }
     // http://testlink.sourceforge.net/demo/lib/testcases/tcPrint.php?testcase_id=2750
 }
@@ -15,37 +15,64 @@
  */
 package net.oneandone.testlinkjunit.tljunit;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-
-import org.apache.maven.shared.utils.xml.Xpp3Dom;
 import org.junit.Ignore;
 import org.junit.runner.Description;
 import org.junit.runner.notification.Failure;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * {@link org.junit.runner.notification.RunListener} which logs everything to Testlink compatible XML file.
+ * {@link org.junit.runner.notification.RunListener} which collects the results of all testcases and hands them
+ * over to a {@link TestCaseSink} for writing a Testlink compatible XML file or one of the other formats.
  *
  * @author Mirko Friedenhagen
  */
 class InTestLinkXmlRunListener extends AbstractInTestLinkRunListener {
 
-    /** Dom-creator for the total results. */
-    private final Xpp3Dom results;
+    /** Receives all completed testcases. */
+    private final TestCaseSink sink;
 
     /** Name of the tester, default to the System property user.name. */
     private final String testerName;
 
-    /** Dom-creator for the results of the current testcase. */
-    private final ThreadLocal<Xpp3Dom> currentTestCase = new ThreadLocal<Xpp3Dom>();
+    /** Renders and interns the traces of failures. */
+    private final FailureTraces traces;
+
+    /** Stamps the testcases and measures their duration. */
+    private final Clock clock;
+
+    /** The running testcases, completed as soon as the result is known. */
+    private final RunningTests<TestCaseResult> testCases = new RunningTests<TestCaseResult>();
+
+    /**
+     * @param testerName Name of the tester, default to the System property user.name.
+     * @param sink receives all completed testcases.
+     */
+    public InTestLinkXmlRunListener(final String testerName, final TestCaseSink sink) {
+        this(testerName, sink, new FailureTraces(FailureTraces.DEFAULT_MAX_FRAMES));
+    }
+
+    /**
+     * @param testerName Name of the tester, default to the System property user.name.
+     * @param sink receives all completed testcases.
+     * @param traces renders and interns the traces of failures without message.
+     */
+    InTestLinkXmlRunListener(final String testerName, final TestCaseSink sink, final FailureTraces traces) {
+        this(testerName, sink, traces, Clock.SYSTEM);
+    }
 
     /**
      * @param testerName Name of the tester, default to the System property user.name.
+     * @param sink receives all completed testcases.
+     * @param traces renders and interns the traces of failures without message.
+     * @param clock stamps the testcases and measures their duration.
      */
-    public InTestLinkXmlRunListener(final String testerName) {
-        results = new Xpp3Dom("results");
+    InTestLinkXmlRunListener(final String testerName, final TestCaseSink sink, final FailureTraces traces,
+            final Clock clock) {
         this.testerName = testerName;
+        this.sink = sink;
+        this.traces = traces;
+        this.clock = clock;
     }
 
     /**
@@ -55,27 +82,21 @@ class InTestLinkXmlRunListener extends AbstractInTestLinkRunListener {
      */
     @Override
     public void testStarted(Description description) {
-        resetCurrentFailure();
-        final Xpp3Dom testCase = new Xpp3Dom("testcase");
-        setCurrentTestCase(testCase);
-        testCase.addChild(createTester(testerName));
-        testCase.addChild(createTimeStamp(new Date()));
-        // This is the only place where we access results, so we should be fine to just synchronize here.
-        synchronized (results) {
-            results.addChild(testCase);
-        }
-        final TestLinkId<?> id = TestLinkId.fromDescription(description);
-        testCase.setAttribute(id.getType(), String.valueOf(id.getId()));
+        final TestLinkId<?> id = getTestLinkId(description);
+        resetFailure(description);
+        testCases.put(description, new TestCaseResult(id, testerName, clock.currentTimeMillis(), clock.nanoTime()));
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     *
+     * The completed testcase is handed over to the sink right away, as no other events follow.
+     */
     @Override
     public void testIgnored(Description description) {
-        testStarted(description);
-        final Xpp3Dom testCase = getCurrentTestCase();
-        testCase.addChild(createResult(TestState.blocked));
         final String message = description.getAnnotation(Ignore.class).value();
-        testCase.addChild(createNotes(String.format("'%s' BLOCKED because '%s'.", description.getDisplayName(), message)));
+        sink.add(new TestCaseResult(getTestLinkId(description), testerName, clock.currentTimeMillis(),
+                TestState.blocked, TestState.blocked.notes(description.getDisplayName(), message), 0L));
     }
 
     /** {@inheritDoc} */
@@ -92,120 +113,76 @@ class InTestLinkXmlRunListener extends AbstractInTestLinkRunListener {
     }
 
     /**
-     * Attaches the notes of the Failure to the result set depending on the TestState.
+     * Attaches the notes of the Failure to the current testcase depending on the TestState.
      *
      * Ignored Testcases (or those where an Assumption failed) are marked as BLOCKED,
-     * otherwise report as FAILED.
+     * otherwise report as FAILED. Without a message, the bounded trace is attached for the first failure of its
+     * signature only, see {@link FailureTraces}. Failures with a message are not registered with the traces at all.
      *
      * @param failure   either a real Failure or a blocked testcase.
      * @param testState FAILED or BLOCKED.
      */
     private void setFailedOrIgnoredForFailureOrAssumptionFailure(Failure failure, TestState testState) {
-        setCurrentFailure(failure);
-        final Xpp3Dom testCase = getCurrentTestCase();
-        testCase.addChild(createResult(testState));
+        final TestCaseResult testCase = testCases.get(failure.getDescription());
+        if (testCase == null) {
+            return;
+        }
+        setFailure(failure);
         final String message = failure.getMessage();
-        final Xpp3Dom notes;
+        final String notes;
         if (message != null) {
-            notes = createNotes(String.format("'%s' " + testState.getDescription() + " because '%s'.",
-                    failure.getTestHeader(), message));
+            notes = testState.notes(failure.getTestHeader(), message);
         } else {
-            notes = createNotes(String.format("'%s' " + testState.getDescription() + " because '%s'.",
-                    failure.getTestHeader(), failure.getTrace()));
+            notes = testState.notes(failure.getTestHeader(),
+                    traces.describe(failure.getTestHeader(), failure.getException()));
         }
-        testCase.addChild(notes);
+        testCases.replace(failure.getDescription(), testCase.complete(testState, notes));
     }
 
     /**
      * {@inheritDoc}
      * 
-     * This will set the test to PASSED only when we have no {@link InTestLinkXmlRunListener#currentFailure}.
+     * This will set the test to PASSED only when it has no failure.
+     * The completed testcase is handed over to the sink with its duration since {@link #testStarted(Description)}.
      */
     @Override
     public void testFinished(Description description) {
-        if (hasPassed()) {
-            final Xpp3Dom testCase = getCurrentTestCase();
-            testCase.addChild(createResult(TestState.passed));
-            testCase.addChild(createNotes(String.format("'%s' PASSED.", description.getDisplayName())));
+        final boolean passed = hasPassed(description);
+        removeFailure(description);
+        final TestCaseResult testCase = testCases.remove(description);
+        if (testCase == null) {
+            return;
+        }
+        final long finished = clock.nanoTime();
+        if (passed) {
+            sink.add(testCase.completeWithoutReason(TestState.passed, description.getDisplayName(), finished));
+        } else {
+            sink.add(testCase.finish(finished));
         }
     }
 
     /**
-     * Creates a new element.
-     *
-     * @param elementName elementName of XML
-     * @param text value of XML
-     * @return dom
-     */
-    private Xpp3Dom createElementWithText(String elementName, String text) {
-        final Xpp3Dom element = new Xpp3Dom(elementName);
-        element.setValue(text);
-        return element;
-    }
-    /**
-     * Creates a new tester element filled with the tester.
-     * 
-     * @param userName
-     *            name of the user got from system property {@code testlink.userName} or {@code user.name}.
-     * @return &lt;tester&gt; element.
-     */
-    Xpp3Dom createTester(final String userName) {
-        return createElementWithText("tester", userName);
-    }
-
-    /**
-     * Creates a new timestamp element.
-     * 
-     * @param date
-     *            of the test run.
-     * @return &lt;timestamp&gt; element.
-     */
-    Xpp3Dom createTimeStamp(final Date date) {
-        final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
-        return createElementWithText("timestamp", dateFormat.format(date));
-    }
-
-    /**
-     * Creates a new notes element.
-     * 
-     * @param notesValue
-     *            additional notes.
-     * @return &lt;notes&gt; element.
-     */
-    Xpp3Dom createNotes(final String notesValue) {
-        return createElementWithText("notes", notesValue);
-    }
-
-    /**
-     * Creates a new result element.
-     * 
-     * @param testState
-     *            to report
-     * @return &lt;result&gt; element.
-     */
-    Xpp3Dom createResult(final TestState testState) {
-        return createElementWithText("result", testState.getState());
-    }
-
-    /**
-     * @return the results
+     * Logs the number of failures per signature to the logger given by the system property
+     * <tt>testlink.loggername</tt>, see {@link TestLinkLoggingRunListener}.
      */
-    Xpp3Dom getResults() {
-        return results;
+    void logFailureSummary() {
+        final Logger logger = LoggerFactory.getLogger(System.getProperty("testlink.loggername", "TESTLINK"));
+        for (final String line : traces.summary()) {
+            logger.info("Failures: {}", line);
+        }
     }
 
     /**
-     * @return the currentTestCase
+     * @return the sink receiving all completed testcases.
      */
-    private Xpp3Dom getCurrentTestCase() {
-        return currentTestCase.get();
+    TestCaseSink getSink() {
+        return sink;
     }
 
     /**
-     * @param currentTestCase
-     *            the currentTestCase to set
+     * @return the number of running testcases.
      */
-    private void setCurrentTestCase(Xpp3Dom currentTestCase) {
-        this.currentTestCase.set(currentTestCase);
+    int getRunningTestCaseCount() {
+        return testCases.size();
     }
 }
@@ -0,0 +1,156 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link TestCaseSink} which appends every completed testcase to a journal file before handing it over to the
+ * delegate, so results survive a JVM which dies before {@link TestCaseSink#close()} is called.
+ *
+ * Every record in the journal consists of the length of the payload, the payload encoded by
+ * {@link TestCaseRecordCodec} and its CRC32 checksum, the same format as written by {@link BinaryTestCaseSink}. The
+ * journal is forced to disk at most once per sync interval, so only the records of the last interval may get lost.
+ * When the delegate was closed successfully, the journal is deleted. An existing journal is recovered to a Testlink
+ * XML file when a new journal is created, see {@link TestLinkJournalRecovery}.
+ *
+ * @author Mirko Friedenhagen
+ */
+class JournalTestCaseSink implements TestCaseSink {
+
+    /** Default for the interval between two syncs of the journal in milliseconds. */
+    static final long DEFAULT_SYNC_INTERVAL = 1000L;
+
+    /** The journal file. */
+    private final File journal;
+
+    /** Channel appending to the journal. */
+    private final FileChannel channel;
+
+    /** Interval between two syncs of the journal in milliseconds. */
+    private final long syncInterval;
+
+    /** Receives all testcases after they were journaled. */
+    private final TestCaseSink delegate;
+
+    /** Time of the last sync, guarded by this. */
+    private long lastSync;
+
+    /** First problem writing the journal, guarded by this and rethrown in {@link JournalTestCaseSink#close()}. */
+    private IOException failure;
+
+    /**
+     * Recovers an existing journal to <tt>recovered</tt> and starts a new one.
+     *
+     * @param journal
+     *            the journal file.
+     * @param recovered
+     *            the Testlink XML file an existing journal is recovered to.
+     * @param syncInterval
+     *            interval between two syncs of the journal in milliseconds, <tt>0</tt> syncs every record.
+     * @param delegate
+     *            receives all testcases after they were journaled.
+     * @throws IOException
+     *             when an existing journal could not be recovered or the new journal could not be created.
+     */
+    JournalTestCaseSink(final File journal, final File recovered, final long syncInterval,
+            final TestCaseSink delegate) throws IOException {
+        if (journal.length() > 0) {
+            TestLinkJournalRecovery.recover(journal, recovered);
+        }
+        this.journal = journal;
+        this.channel = new FileOutputStream(journal).getChannel();
+        this.syncInterval = syncInterval;
+        this.delegate = delegate;
+        this.lastSync = System.currentTimeMillis();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void add(final TestCaseResult testCase) {
+        append(TestCaseRecordCodec.encodeFrame(testCase));
+        delegate.add(testCase);
+    }
+
+    /**
+     * Appends the record to the journal and forces it to disk when the sync interval elapsed. After the first
+     * failure the journal is no longer written.
+     *
+     * @param record
+     *            to append.
+     */
+    private synchronized void append(final ByteBuffer record) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            final long now = System.currentTimeMillis();
+            if (now - lastSync >= syncInterval) {
+                channel.force(false);
+                lastSync = now;
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Forces the journal to disk as well.
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (this) {
+            if (failure == null) {
+                channel.force(false);
+                lastSync = System.currentTimeMillis();
+            }
+        }
+        delegate.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The journal is only deleted when the delegate was closed successfully.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            synchronized (this) {
+                channel.close();
+            }
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        if (!journal.delete()) {
+            throw new IOException("Could not delete " + journal);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import net.oneandone.testlinkjunit.tljunit.TestLinkId.InternalTestLinkId;
+
+/**
+ * {@link TestCaseSink} which writes every completed testcase as one line holding a JSON object. Every line is flushed
+ * immediately, so the file may be tailed while tests are running.
+ *
+ * <pre>
+ * {"type":"external_id","id":"T1","state":"PASSED","result":"p","timestamp":1318500000000,"tester":"me","notes":"..."}
+ * </pre>
+ *
+ * @author Mirko Friedenhagen
+ */
+class JsonLinesTestCaseSink implements TestCaseSink {
+
+    /** Encoding of the lines. */
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    /** Initial size of a line. */
+    private static final int INITIAL_SIZE = 256;
+
+    /** Hexadecimal digits for escaping control characters. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Stream to which the lines will be written. */
+    private final OutputStream out;
+
+    /** First problem writing a line, guarded by this and rethrown in {@link JsonLinesTestCaseSink#close()}. */
+    private IOException failure;
+
+    /**
+     * @param out
+     *            the lines are written to.
+     */
+    JsonLinesTestCaseSink(final OutputStream out) {
+        this.out = out;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void add(final TestCaseResult testCase) {
+        final byte[] line = toJson(testCase).append('\n').toString().getBytes(UTF8);
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                out.write(line);
+                out.flush();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Renders a completed testcase as JSON object.
+     *
+     * @param testCase
+     *            the completed testcase.
+     * @return the JSON object without a line separator.
+     */
+    static StringBuilder toJson(final TestCaseResult testCase) {
+        final StringBuilder json = new StringBuilder(INITIAL_SIZE);
+        final TestLinkId<?> id = testCase.getId();
+        json.append("{\"type\":");
+        appendString(json, id.getType());
+        json.append(",\"id\":");
+        if (id instanceof InternalTestLinkId) {
+            json.append(id.getId());
+        } else {
+            appendString(json, id.getValue());
+        }
+        json.append(",\"state\":");
+        appendString(json, testCase.getState().getDescription());
+        json.append(",\"result\":");
+        appendString(json, testCase.getState().getState());
+        json.append(",\"timestamp\":").append(testCase.getTimestamp());
+        json.append(",\"tester\":");
+        appendString(json, testCase.getTester());
+        json.append(",\"notes\":");
+        appendString(json, testCase.getNotes());
+        return json.append('}');
+    }
+
+    /**
+     * Appends a quoted and escaped JSON string.
+     *
+     * @param json
+     *            to append to.
+     * @param value
+     *            to append, <tt>null</tt> is rendered as JSON <tt>null</tt>.
+     */
+    static void appendString(final StringBuilder json, final String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            case '\n':
+                json.append("\\n");
+                break;
+            case '\r':
+                json.append("\\r");
+                break;
+            case '\t':
+                json.append("\\t");
+                break;
+            default:
+                if (c < ' ') {
+                    json.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+                } else {
+                    json.append(c);
+                }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.Logger;
+
+/**
+ * Immutable event captured on the thread running the test, logged later by {@link AsyncLogDispatcher}.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class LogEvent {
+
+    /**
+     * Level of the event.
+     */
+    enum Level {
+
+        /** START and PASSED. */
+        info {
+            /** {@inheritDoc} */
+            @Override
+            void log(final Logger logger, final String format, final Object[] arguments) {
+                logger.info(format, arguments);
+            }
+        },
+
+        /** BLOCKED. */
+        warn {
+            /** {@inheritDoc} */
+            @Override
+            void log(final Logger logger, final String format, final Object[] arguments) {
+                logger.warn(format, arguments);
+            }
+        },
+
+        /** FAILED. */
+        error {
+            /** {@inheritDoc} */
+            @Override
+            void log(final Logger logger, final String format, final Object[] arguments) {
+                logger.error(format, arguments);
+            }
+        };
+
+        /**
+         * Logs with this level.
+         *
+         * @param logger
+         *            to log to.
+         * @param format
+         *            of the message.
+         * @param arguments
+         *            of the message.
+         */
+        abstract void log(Logger logger, String format, Object[] arguments);
+    }
+
+    /** Level of the event, null for markers. */
+    private final Level level;
+
+    /** Format of the message. */
+    private final String format;
+
+    /** Arguments of the message. */
+    private final Object[] arguments;
+
+    /** Counted down when a marker is reached, null for events. */
+    private final CountDownLatch reached;
+
+    /**
+     * @param level
+     *            of the event, null for markers.
+     * @param format
+     *            of the message.
+     * @param arguments
+     *            of the message.
+     * @param reached
+     *            counted down when a marker is reached, null for events.
+     */
+    private LogEvent(final Level level, final String format, final Object[] arguments, final CountDownLatch reached) {
+        this.level = level;
+        this.format = format;
+        this.arguments = arguments;
+        this.reached = reached;
+    }
+
+    /**
+     * @param level
+     *            of the event.
+     * @param format
+     *            of the message.
+     * @param arguments
+     *            of the message, not modified afterwards.
+     * @return a new event.
+     */
+    static LogEvent of(final Level level, final String format, final Object... arguments) {
+        return new LogEvent(level, format, arguments, null);
+    }
+
+    /**
+     * @param reached
+     *            counted down when all events queued before the marker are logged.
+     * @return a new marker.
+     */
+    static LogEvent marker(final CountDownLatch reached) {
+        return new LogEvent(null, null, null, reached);
+    }
+
+    /**
+     * @return true for START and PASSED events, which may be dropped with {@link OverflowPolicy#dropPassed}.
+     */
+    boolean isPassed() {
+        return level == Level.info;
+    }
+
+    /**
+     * Logs the event or counts down the marker.
+     *
+     * @param logger
+     *            to log to.
+     */
+    void log(final Logger logger) {
+        if (reached != null) {
+            reached.countDown();
+        } else {
+            level.log(logger, format, arguments);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+/**
+ * Rule for merging the results of several invocations of a testcase with the same {@link TestLinkId}, e.g. from
+ * parameterized tests or surefire's <tt>rerunFailingTestsCount</tt>. The ranking of the states, see
+ * {@link MergeRule#rankOf(String)}, is shared with tools merging result files.
+ *
+ * @author Mirko Friedenhagen
+ */
+public enum MergeRule {
+
+    /** The worst state of all invocations wins, failed before blocked before passed. */
+    worst {
+        /** {@inheritDoc} */
+        @Override
+        TestState merge(final TestState previous, final TestState next) {
+            return previous.compareTo(next) >= 0 ? previous : next;
+        }
+    },
+
+    /** The state of the last invocation wins. */
+    last {
+        /** {@inheritDoc} */
+        @Override
+        TestState merge(final TestState previous, final TestState next) {
+            return next;
+        }
+    },
+
+    /** Passed when any invocation passed, e.g. a flaky test passing on rerun, otherwise the worst state wins. */
+    rerun {
+        /** {@inheritDoc} */
+        @Override
+        TestState merge(final TestState previous, final TestState next) {
+            if (previous == TestState.passed || next == TestState.passed) {
+                return TestState.passed;
+            }
+            return worst.merge(previous, next);
+        }
+    };
+
+    /** Appended to notes which were cut. */
+    static final String TRUNCATED = " [...]";
+
+    /**
+     * Merges two states.
+     *
+     * @param previous
+     *            state of the earlier invocations.
+     * @param next
+     *            state of the current invocation.
+     * @return the merged state.
+     */
+    abstract TestState merge(TestState previous, TestState next);
+
+    /**
+     * Ranks the one letter results of Testlink in the order used by {@link MergeRule#worst}.
+     *
+     * @param result
+     *            one letter result, e.g. <tt>f</tt>.
+     * @return <tt>2</tt> for failed, <tt>1</tt> for blocked, <tt>0</tt> for passed, <tt>-1</tt> for unknown results.
+     */
+    public static int rankOf(final String result) {
+        try {
+            return TestState.forState(result).ordinal();
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Merges two invocations of the same testcase. The merged testcase carries the tester and timestamp of
+     * <tt>next</tt>, the notes of both, separated by a newline and cut to <tt>maxNotesLength</tt> characters, and
+     * the total duration of both.
+     *
+     * @param previous
+     *            earlier invocations.
+     * @param next
+     *            current invocation.
+     * @param maxNotesLength
+     *            maximum length of the merged notes.
+     * @return the merged testcase.
+     */
+    TestCaseResult merge(final TestCaseResult previous, final TestCaseResult next, final int maxNotesLength) {
+        final String notes = mergeNotes(previous.getNotes(), next.getNotes(), maxNotesLength);
+        return new TestCaseResult(next.getId(), next.getTester(), next.getTimestamp(),
+                merge(previous.getState(), next.getState()), notes, mergeDuration(previous.getDuration(),
+                        next.getDuration()));
+    }
+
+    /**
+     * @param previous
+     *            duration of earlier invocations, may be unknown.
+     * @param next
+     *            duration of the current invocation, may be unknown.
+     * @return the total of the known durations, unknown when both are unknown.
+     */
+    private static long mergeDuration(final long previous, final long next) {
+        if (previous < 0) {
+            return next;
+        }
+        return next < 0 ? previous : previous + next;
+    }
+
+    /**
+     * @param previous
+     *            notes of earlier invocations, may be null.
+     * @param next
+     *            notes of the current invocation, may be null.
+     * @param maxNotesLength
+     *            maximum length of the merged notes.
+     * @return notes of both, cut to <tt>maxNotesLength</tt> characters.
+     */
+    static String mergeNotes(final String previous, final String next, final int maxNotesLength) {
+        if (previous == null) {
+            return next;
+        }
+        if (next == null || previous.endsWith(TRUNCATED)) {
+            return previous;
+        }
+        final String notes = previous + "\n" + next;
+        if (notes.length() <= maxNotesLength) {
+            return notes;
+        }
+        return notes.substring(0, Math.max(0, maxNotesLength - TRUNCATED.length())) + TRUNCATED;
+    }
+}
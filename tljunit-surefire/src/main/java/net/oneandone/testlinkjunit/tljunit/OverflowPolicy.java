@@ -0,0 +1,70 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * What {@link AsyncLogDispatcher} does when its queue is full.
+ *
+ * @author Mirko Friedenhagen
+ */
+enum OverflowPolicy {
+
+    /** Threads running tests wait until the queue has room again, nothing is lost. */
+    block {
+        /** {@inheritDoc} */
+        @Override
+        boolean enqueue(final BlockingQueue<LogEvent> queue, final LogEvent event) throws InterruptedException {
+            queue.put(event);
+            return true;
+        }
+    },
+
+    /** START and PASSED events are dropped, threads wait for room for FAILED and BLOCKED events. */
+    dropPassed {
+        /** {@inheritDoc} */
+        @Override
+        boolean enqueue(final BlockingQueue<LogEvent> queue, final LogEvent event) throws InterruptedException {
+            if (event.isPassed()) {
+                return queue.offer(event);
+            }
+            return block.enqueue(queue, event);
+        }
+    },
+
+    /** All events are dropped, threads running tests never wait. */
+    dropAll {
+        /** {@inheritDoc} */
+        @Override
+        boolean enqueue(final BlockingQueue<LogEvent> queue, final LogEvent event) {
+            return queue.offer(event);
+        }
+    };
+
+    /**
+     * Adds the event to the queue.
+     *
+     * @param queue
+     *            of the dispatcher.
+     * @param event
+     *            to add.
+     * @return false when the event was dropped.
+     * @throws InterruptedException
+     *             when interrupted while waiting.
+     */
+    abstract boolean enqueue(BlockingQueue<LogEvent> queue, LogEvent event) throws InterruptedException;
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.junit.runner.Description;
+
+/**
+ * State of running tests keyed by the identity of their {@link Description}.
+ *
+ * Runners hand the same {@link Description} instance to all events of one test, while equal descriptions are used
+ * when the same class runs concurrently in several {@link org.junit.runner.JUnitCore}s. Keying by identity therefore
+ * attributes events correctly regardless of the thread reporting them, e.g. failures reported by the timeout thread
+ * of a {@link org.junit.rules.Timeout}. Entries must be removed when the test finishes.
+ *
+ * @param <V>
+ *            type of the state.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class RunningTests<V> {
+
+    /** State by test. */
+    private final ConcurrentMap<Key, V> states = new ConcurrentHashMap<Key, V>();
+
+    /**
+     * @param description
+     *            of the test.
+     * @param state
+     *            of the test.
+     */
+    void put(final Description description, final V state) {
+        states.put(new Key(description), state);
+    }
+
+    /**
+     * Replaces the state only when the test is running.
+     *
+     * @param description
+     *            of the test.
+     * @param state
+     *            of the test.
+     * @return the previous state or null, when the test is not running.
+     */
+    V replace(final Description description, final V state) {
+        return states.replace(new Key(description), state);
+    }
+
+    /**
+     * @param description
+     *            of the test.
+     * @return the state or null, when the test is not running.
+     */
+    V get(final Description description) {
+        return states.get(new Key(description));
+    }
+
+    /**
+     * @param description
+     *            of the test.
+     * @return the removed state or null, when the test is not running.
+     */
+    V remove(final Description description) {
+        return states.remove(new Key(description));
+    }
+
+    /**
+     * @return the number of running tests.
+     */
+    int size() {
+        return states.size();
+    }
+
+    /**
+     * Compares descriptions by identity.
+     */
+    private static final class Key {
+
+        /** Of the test. */
+        private final Description description;
+
+        /**
+         * @param description
+         *            of the test.
+         */
+        Key(final Description description) {
+            this.description = description;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(description);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Key && ((Key) obj).description == description;
+        }
+    }
+}
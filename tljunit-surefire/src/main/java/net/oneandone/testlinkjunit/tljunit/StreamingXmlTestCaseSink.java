@@ -0,0 +1,247 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * {@link TestCaseSink} which writes every completed testcase immediately as a fragment of the resulting XML file.
+ *
+ * Testcases are handed over to one writer thread by means of a bounded queue, so memory consumption does not grow with
+ * the number of executed tests. When the queue is full, threads running tests will wait for the writer thread.
+ * {@link StreamingXmlTestCaseSink#close()} just closes the root element.
+ *
+ * @author Mirko Friedenhagen
+ */
+class StreamingXmlTestCaseSink implements TestCaseSink {
+
+    /** Default capacity of the queue. */
+    static final int DEFAULT_CAPACITY = 1024;
+
+    /** Marks the end of the queue. */
+    private static final TestCaseResult END = new TestCaseResult(null, null, 0);
+
+    /** Asks the writer thread to flush. */
+    private static final TestCaseResult FLUSH = new TestCaseResult(null, null, 0);
+
+    /** Encoding of the resulting XML. */
+    private static final String UTF8 = "UTF-8";
+
+    /** Indentation used for the testcase elements. */
+    private static final String INDENT = "\n  ";
+
+    /** Indentation used for the children of the testcase elements. */
+    private static final String CHILD_INDENT = "\n    ";
+
+    /** Completed testcases not written yet. */
+    private final BlockingQueue<TestCaseResult> queue;
+
+    /** Stream to which the results will be printed. */
+    private final OutputStream out;
+
+    /** Writes the XML to {@link StreamingXmlTestCaseSink#out}, only used from the writer thread. */
+    private XMLStreamWriter writer;
+
+    /** Drains the queue. */
+    private final Thread writerThread;
+
+    /** Formats the timestamps of all testcases. */
+    private final TimestampFormat timestamps = new TimestampFormat();
+
+    /** First problem of the writer thread, rethrown in {@link StreamingXmlTestCaseSink#close()}. */
+    private volatile IOException failure;
+
+    /**
+     * Starts the writer thread with a queue of {@link StreamingXmlTestCaseSink#DEFAULT_CAPACITY}.
+     *
+     * @param out
+     *            the xml data is written to.
+     */
+    StreamingXmlTestCaseSink(final OutputStream out) {
+        this(out, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Starts the writer thread.
+     *
+     * @param out
+     *            the xml data is written to.
+     * @param capacity
+     *            maximum number of testcases waiting to be written.
+     */
+    StreamingXmlTestCaseSink(final OutputStream out, final int capacity) {
+        this.out = out;
+        this.queue = new ArrayBlockingQueue<TestCaseResult>(capacity);
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeAll();
+            }
+        }, "testlink-xml-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Blocks while the queue is full.
+     */
+    @Override
+    public void add(final TestCaseResult testCase) {
+        try {
+            queue.put(testCase);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the writer thread", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Does not wait, the writer thread flushes after writing all testcases queued so far.
+     */
+    @Override
+    public void flush() {
+        add(FLUSH);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Waits until all queued testcases are written, closes the root element and the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the writer thread");
+        } finally {
+            out.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Loop of the writer thread, writes the document until {@link StreamingXmlTestCaseSink#END} is taken from the
+     * queue. After any failure, including runtime exceptions, errors and interrupts, all remaining testcases are
+     * discarded so threads running tests and {@link StreamingXmlTestCaseSink#close()} are never blocked.
+     */
+    private void writeAll() {
+        try {
+            writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, UTF8);
+            writer.writeStartDocument(UTF8, "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("results");
+            TestCaseResult testCase = queue.take();
+            while (testCase != END) {
+                if (testCase == FLUSH) {
+                    writer.flush();
+                    out.flush();
+                } else {
+                    writeTestCase(testCase);
+                }
+                testCase = queue.take();
+            }
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            failure = new IOException(e);
+            discardUntilEnd();
+        } catch (IOException e) {
+            failure = e;
+            discardUntilEnd();
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Writer thread was interrupted");
+            discardUntilEnd();
+        } catch (Throwable e) {
+            failure = new IOException("Writer thread failed", e);
+            discardUntilEnd();
+        }
+    }
+
+    /**
+     * Writes one testcase element with all children.
+     *
+     * @param testCase
+     *            the completed testcase.
+     * @throws XMLStreamException
+     *             when writing fails.
+     */
+    private void writeTestCase(final TestCaseResult testCase) throws XMLStreamException {
+        final TestLinkId<?> id = testCase.getId();
+        writer.writeCharacters(INDENT);
+        writer.writeStartElement("testcase");
+        writer.writeAttribute(id.getType(), id.getValue());
+        writeElementWithText("tester", testCase.getTester());
+        writeElementWithText("timestamp", timestamps.format(testCase.getTimestamp()));
+        writeElementWithText("result", testCase.getState().getState());
+        writeElementWithText("notes", testCase.getNotes());
+        final String executionDuration = testCase.getExecutionDuration();
+        if (executionDuration != null) {
+            writeElementWithText("execution_duration", executionDuration);
+        }
+        writer.writeCharacters(INDENT);
+        writer.writeEndElement();
+    }
+
+    /**
+     * Writes a new child element of a testcase.
+     *
+     * @param elementName
+     *            elementName of XML
+     * @param text
+     *            value of XML
+     * @throws XMLStreamException
+     *             when writing fails.
+     */
+    private void writeElementWithText(final String elementName, final String text) throws XMLStreamException {
+        writer.writeCharacters(CHILD_INDENT);
+        writer.writeStartElement(elementName);
+        writer.writeCharacters(text);
+        writer.writeEndElement();
+    }
+
+    /**
+     * Takes testcases from the queue without writing them until {@link StreamingXmlTestCaseSink#END} arrives.
+     */
+    private void discardUntilEnd() {
+        try {
+            while (queue.take() != END) {
+                continue;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+import net.oneandone.testlinkjunit.tljunit.TestLinkId.ExternalTestLinkId;
+import net.oneandone.testlinkjunit.tljunit.TestLinkId.InternalTestLinkId;
+
+/**
+ * Converts {@link TestCaseResult}s from and to a compact binary representation.
+ *
+ * A record consists of the {@link TestState} ordinal, the kind of the {@link TestLinkId} followed by its value, the
+ * timestamp in milliseconds since the epoch, the tester, the notes and the duration in nanoseconds. Strings are
+ * written as UTF-8 bytes prefixed by their length.
+ *
+ * In files every record is framed by the length of the payload and its CRC32 checksum, see
+ * {@link TestCaseRecordCodec#encodeFrame(TestCaseResult)}.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class TestCaseRecordCodec {
+
+    /** Marks an {@link InternalTestLinkId}. */
+    static final byte INTERNAL_ID = 0;
+
+    /** Marks an {@link ExternalTestLinkId}. */
+    static final byte EXTERNAL_ID = 1;
+
+    /** Encoding of all strings. */
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    /** Initial size of the buffer used for encoding. */
+    private static final int INITIAL_SIZE = 256;
+
+    /** Size of the length and the checksum surrounding a payload. */
+    private static final int FRAME_SIZE = 8;
+
+    /** Records larger than this are considered corrupt. */
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    /** All states, indexed by ordinal. */
+    private static final TestState[] STATES = TestState.values();
+
+    /** Utility class. */
+    private TestCaseRecordCodec() {
+        // no instances.
+    }
+
+    /**
+     * Encodes a completed testcase.
+     *
+     * @param testCase
+     *            to encode.
+     * @return the binary representation.
+     */
+    static byte[] encode(final TestCaseResult testCase) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_SIZE);
+        try {
+            write(testCase, new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode " + testCase.getId(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encodes a completed testcase framed by the length of the payload and its CRC32 checksum.
+     *
+     * @param testCase
+     *            to encode.
+     * @return the framed record, ready for writing.
+     */
+    static ByteBuffer encodeFrame(final TestCaseResult testCase) {
+        final byte[] payload = encode(testCase);
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        final ByteBuffer frame = ByteBuffer.allocate(payload.length + FRAME_SIZE);
+        frame.putInt(payload.length).put(payload).putInt((int) crc.getValue());
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Reads all intact framed records. Reading stops at the first truncated or corrupt record, as this is where
+     * a writing JVM died.
+     *
+     * @param input
+     *            to read, is closed afterwards.
+     * @param sink
+     *            receives all intact records, is not closed.
+     * @return the number of records read.
+     * @throws IOException
+     *             when reading fails.
+     */
+    static int readFrames(final InputStream input, final TestCaseSink sink) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        int count = 0;
+        try {
+            while (true) {
+                final int length = in.readInt();
+                if (length < 0 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                final byte[] payload = new byte[length];
+                in.readFully(payload);
+                final int checksum = in.readInt();
+                final CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (checksum != (int) crc.getValue()) {
+                    break;
+                }
+                sink.add(decode(payload));
+                count++;
+            }
+        } catch (EOFException e) {
+            // truncated record or regular end of the input.
+            return count;
+        } finally {
+            in.close();
+        }
+        return count;
+    }
+
+    /**
+     * Decodes a testcase encoded by {@link TestCaseRecordCodec#encode(TestCaseResult)}.
+     *
+     * @param record
+     *            the binary representation.
+     * @return the testcase.
+     * @throws IOException
+     *             when the record is malformed.
+     */
+    static TestCaseResult decode(final byte[] record) throws IOException {
+        return read(new DataInputStream(new ByteArrayInputStream(record)));
+    }
+
+    /**
+     * Writes a completed testcase.
+     *
+     * @param testCase
+     *            to write.
+     * @param out
+     *            to write to.
+     * @throws IOException
+     *             when writing fails.
+     */
+    static void write(final TestCaseResult testCase, final DataOutput out) throws IOException {
+        out.writeByte(testCase.getState().ordinal());
+        final TestLinkId<?> id = testCase.getId();
+        if (id instanceof InternalTestLinkId) {
+            out.writeByte(INTERNAL_ID);
+            out.writeLong(((InternalTestLinkId) id).getId());
+        } else {
+            out.writeByte(EXTERNAL_ID);
+            writeString(((ExternalTestLinkId) id).getId(), out);
+        }
+        out.writeLong(testCase.getTimestamp());
+        writeString(testCase.getTester(), out);
+        writeString(testCase.getNotes(), out);
+        out.writeLong(testCase.getDuration());
+    }
+
+    /**
+     * Reads a testcase written by {@link TestCaseRecordCodec#write(TestCaseResult, DataOutput)}.
+     *
+     * @param in
+     *            to read from.
+     * @return the testcase.
+     * @throws IOException
+     *             when the record is malformed or truncated.
+     */
+    static TestCaseResult read(final DataInput in) throws IOException {
+        final int ordinal = in.readUnsignedByte();
+        if (ordinal >= STATES.length) {
+            throw new IOException("Unknown state " + ordinal);
+        }
+        final TestLinkId<?> id;
+        final byte kind = in.readByte();
+        if (kind == INTERNAL_ID) {
+            id = new InternalTestLinkId(in.readLong());
+        } else if (kind == EXTERNAL_ID) {
+            id = new ExternalTestLinkId(readString(in));
+        } else {
+            throw new IOException("Unknown kind of id " + kind);
+        }
+        final long timestamp = in.readLong();
+        final String tester = readString(in);
+        final String notes = readString(in);
+        final long duration = in.readLong();
+        return new TestCaseResult(id, tester, timestamp, STATES[ordinal], notes, duration);
+    }
+
+    /**
+     * Writes a string as UTF-8 bytes prefixed by their length.
+     *
+     * @param value
+     *            to write.
+     * @param out
+     *            to write to.
+     * @throws IOException
+     *             when writing fails.
+     */
+    private static void writeString(final String value, final DataOutput out) throws IOException {
+        final byte[] bytes = value.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link TestCaseRecordCodec#writeString(String, DataOutput)}.
+     *
+     * @param in
+     *            to read from.
+     * @return the string.
+     * @throws IOException
+     *             when the string is malformed or truncated.
+     */
+    private static String readString(final DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
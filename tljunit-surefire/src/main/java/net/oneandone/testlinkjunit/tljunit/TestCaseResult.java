@@ -0,0 +1,254 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+/**
+ * Immutable result of a single testcase as reported to Testlink. Instances are created by
+ * {@link InTestLinkXmlRunListener} and handed over to a {@link TestCaseSink} once the result is known.
+ *
+ * The duration is measured by the monotonic {@link Clock#nanoTime()} from the start of the testcase to its end, see
+ * {@link TestCaseResult#finish(long)}, and is written as <tt>execution_duration</tt> in minutes, see
+ * {@link TestCaseResult#getExecutionDuration()}.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class TestCaseResult {
+
+    /** Duration of testcases which were not measured. */
+    static final long UNKNOWN_DURATION = -1L;
+
+    /** Nanoseconds per hundredth of a minute, the resolution of the <tt>execution_duration</tt> in TestLink. */
+    private static final long NANOS_PER_HUNDREDTH_MINUTE = 600000000L;
+
+    /** id of the testcase. */
+    private final TestLinkId<?> id;
+
+    /** Name of the tester. */
+    private final String tester;
+
+    /** Start of the testcase in milliseconds since the epoch. */
+    private final long timestamp;
+
+    /** Result of the testcase, <tt>null</tt> while the testcase is still running. */
+    private final TestState state;
+
+    /** Additional notes, <tt>null</tt> while the testcase is still running or rendered from the test header. */
+    private final String notes;
+
+    /** Display name of a testcase the notes of which are rendered on demand, see {@link TestCaseResult#getNotes()}. */
+    private final String testHeader;
+
+    /** Start of the testcase in {@link Clock#nanoTime()}. */
+    private final long started;
+
+    /** Duration of the testcase in nanoseconds, {@link TestCaseResult#UNKNOWN_DURATION} when not measured. */
+    private final long duration;
+
+    /**
+     * Creates a result for a testcase which just started.
+     *
+     * @param id
+     *            of the testcase.
+     * @param tester
+     *            name of the tester.
+     * @param timestamp
+     *            start of the testcase in milliseconds since the epoch.
+     */
+    TestCaseResult(final TestLinkId<?> id, final String tester, final long timestamp) {
+        this(id, tester, timestamp, 0L);
+    }
+
+    /**
+     * Creates a result for a testcase which just started.
+     *
+     * @param id
+     *            of the testcase.
+     * @param tester
+     *            name of the tester.
+     * @param timestamp
+     *            start of the testcase in milliseconds since the epoch.
+     * @param started
+     *            start of the testcase in {@link Clock#nanoTime()}.
+     */
+    TestCaseResult(final TestLinkId<?> id, final String tester, final long timestamp, final long started) {
+        this(id, tester, timestamp, null, null, null, started, UNKNOWN_DURATION);
+    }
+
+    /**
+     * @param id
+     *            of the testcase.
+     * @param tester
+     *            name of the tester.
+     * @param timestamp
+     *            start of the testcase in milliseconds since the epoch.
+     * @param state
+     *            result of the testcase.
+     * @param notes
+     *            additional notes.
+     */
+    TestCaseResult(final TestLinkId<?> id, final String tester, final long timestamp, final TestState state,
+            final String notes) {
+        this(id, tester, timestamp, state, notes, UNKNOWN_DURATION);
+    }
+
+    /**
+     * @param id
+     *            of the testcase.
+     * @param tester
+     *            name of the tester.
+     * @param timestamp
+     *            start of the testcase in milliseconds since the epoch.
+     * @param state
+     *            result of the testcase.
+     * @param notes
+     *            additional notes.
+     * @param duration
+     *            of the testcase in nanoseconds, {@link TestCaseResult#UNKNOWN_DURATION} when not measured.
+     */
+    TestCaseResult(final TestLinkId<?> id, final String tester, final long timestamp, final TestState state,
+            final String notes, final long duration) {
+        this(id, tester, timestamp, state, notes, null, 0L, duration);
+    }
+
+    /**
+     * @param id
+     *            of the testcase.
+     * @param tester
+     *            name of the tester.
+     * @param timestamp
+     *            start of the testcase in milliseconds since the epoch.
+     * @param state
+     *            result of the testcase.
+     * @param notes
+     *            additional notes.
+     * @param testHeader
+     *            display name of the testcase, when the notes are rendered on demand.
+     * @param started
+     *            start of the testcase in {@link Clock#nanoTime()}.
+     * @param duration
+     *            of the testcase in nanoseconds, {@link TestCaseResult#UNKNOWN_DURATION} when not measured.
+     */
+    private TestCaseResult(final TestLinkId<?> id, final String tester, final long timestamp, final TestState state,
+            final String notes, final String testHeader, final long started, final long duration) {
+        this.id = id;
+        this.tester = tester;
+        this.timestamp = timestamp;
+        this.state = state;
+        this.notes = notes;
+        this.testHeader = testHeader;
+        this.started = started;
+        this.duration = duration;
+    }
+
+    /**
+     * Returns a copy of this testcase with the given result.
+     *
+     * @param newState
+     *            result of the testcase.
+     * @param newNotes
+     *            additional notes.
+     * @return a new, completed testcase.
+     */
+    TestCaseResult complete(final TestState newState, final String newNotes) {
+        return new TestCaseResult(id, tester, timestamp, newState, newNotes, null, started, duration);
+    }
+
+    /**
+     * Returns a copy of this testcase with a result needing no reason, the notes are rendered on demand from the
+     * template of the state, see {@link TestState#notes(String)}. As most testcases pass, this saves building the
+     * notes in the thread running the test, when the sink does not need them, or needs them later.
+     *
+     * @param newState
+     *            result of the testcase.
+     * @param newTestHeader
+     *            display name of the testcase.
+     * @param finished
+     *            end of the testcase in {@link Clock#nanoTime()}.
+     * @return a new, completed and finished testcase.
+     */
+    TestCaseResult completeWithoutReason(final TestState newState, final String newTestHeader, final long finished) {
+        return new TestCaseResult(id, tester, timestamp, newState, null, newTestHeader, started, finished - started);
+    }
+
+    /**
+     * Returns a copy of this testcase with the duration up to <tt>finished</tt>.
+     *
+     * @param finished
+     *            end of the testcase in {@link Clock#nanoTime()}.
+     * @return a new, finished testcase.
+     */
+    TestCaseResult finish(final long finished) {
+        return new TestCaseResult(id, tester, timestamp, state, notes, testHeader, started, finished - started);
+    }
+
+    /**
+     * @return the id.
+     */
+    TestLinkId<?> getId() {
+        return id;
+    }
+
+    /**
+     * @return the tester.
+     */
+    String getTester() {
+        return tester;
+    }
+
+    /**
+     * @return the timestamp in milliseconds since the epoch.
+     */
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the state.
+     */
+    TestState getState() {
+        return state;
+    }
+
+    /**
+     * @return the duration in nanoseconds, {@link TestCaseResult#UNKNOWN_DURATION} when not measured.
+     */
+    long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return the duration in minutes with two decimals as expected by TestLink, e.g. <tt>0.25</tt>, null when not
+     *         measured.
+     */
+    String getExecutionDuration() {
+        if (duration < 0) {
+            return null;
+        }
+        final long hundredths = (duration + NANOS_PER_HUNDREDTH_MINUTE / 2) / NANOS_PER_HUNDREDTH_MINUTE;
+        final long fraction = hundredths % 100;
+        return (hundredths / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    /**
+     * @return the notes.
+     */
+    String getNotes() {
+        if (testHeader != null) {
+            return state.notes(testHeader);
+        }
+        return notes;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.IOException;
+
+/**
+ * Counts the test runs sharing one {@link TestCaseSink}, e.g. when one listener is added to several
+ * {@link org.junit.runner.JUnitCore} instances running concurrently.
+ *
+ * The sink is closed exactly once, when the last active run finishes. Runs finishing while others are still active
+ * just flush the sink, at most once per checkpoint interval. A run starting after the sink was closed is rejected.
+ * Callers sharing a listener may keep the sink open by calling
+ * {@link org.junit.runner.notification.RunListener#testRunStarted(org.junit.runner.Description)} before and
+ * {@link org.junit.runner.notification.RunListener#testRunFinished(org.junit.runner.Result)} after all runs themselves.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class TestCaseSession {
+
+    /** Default for the interval between two checkpoints in milliseconds. */
+    static final long DEFAULT_CHECKPOINT_INTERVAL = 10000L;
+
+    /** Receives all completed testcases. */
+    private final TestCaseSink sink;
+
+    /** Interval between two checkpoints in milliseconds. */
+    private final long checkpointInterval;
+
+    /** Number of active runs, guarded by this. */
+    private int activeRuns;
+
+    /** Whether the sink is closed, guarded by this. */
+    private boolean closed;
+
+    /** Time of the last checkpoint, guarded by this. */
+    private long lastCheckpoint;
+
+    /**
+     * @param sink
+     *            receives all completed testcases.
+     * @param checkpointInterval
+     *            interval between two checkpoints in milliseconds.
+     */
+    TestCaseSession(final TestCaseSink sink, final long checkpointInterval) {
+        this.sink = sink;
+        this.checkpointInterval = checkpointInterval;
+        this.lastCheckpoint = System.currentTimeMillis();
+    }
+
+    /**
+     * Registers a new run.
+     *
+     * @throws IllegalStateException
+     *             when the sink was already closed by the last run.
+     */
+    synchronized void runStarted() {
+        if (closed) {
+            throw new IllegalStateException("All results were already written, could not start another run.");
+        }
+        activeRuns++;
+    }
+
+    /**
+     * Unregisters a run, closes the sink when this was the last active run, otherwise flushes it when the checkpoint
+     * interval elapsed. Runs finishing without having been started are treated as the last run.
+     *
+     * @return true when the sink was closed.
+     * @throws IOException
+     *             when the sink could not be flushed or closed.
+     */
+    boolean runFinished() throws IOException {
+        final boolean close;
+        final boolean checkpoint;
+        synchronized (this) {
+            activeRuns--;
+            close = activeRuns <= 0 && !closed;
+            closed = closed || close;
+            final long now = System.currentTimeMillis();
+            checkpoint = activeRuns > 0 && now - lastCheckpoint >= checkpointInterval;
+            if (checkpoint) {
+                lastCheckpoint = now;
+            }
+        }
+        if (close) {
+            sink.close();
+        } else if (checkpoint) {
+            sink.flush();
+        }
+        return close;
+    }
+
+    /**
+     * @return the sink receiving all completed testcases.
+     */
+    TestCaseSink getSink() {
+        return sink;
+    }
+}
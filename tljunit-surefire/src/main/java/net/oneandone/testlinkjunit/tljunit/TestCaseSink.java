@@ -0,0 +1,56 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Receives every testcase once its result is known. Implementations must be threadsafe as
+ * {@link TestCaseSink#add(TestCaseResult)} may be called from all threads running tests.
+ *
+ * @author Mirko Friedenhagen
+ */
+interface TestCaseSink extends Closeable, Flushable {
+
+    /**
+     * Adds a completed testcase.
+     *
+     * @param testCase
+     *            the completed testcase.
+     */
+    void add(TestCaseResult testCase);
+
+    /**
+     * Writes the results added so far as far as the format allows, used as a checkpoint while other test runs are
+     * still active.
+     *
+     * @throws IOException
+     *             when the results could not be written.
+     */
+    @Override
+    void flush() throws IOException;
+
+    /**
+     * Writes all outstanding results and closes the underlying stream.
+     *
+     * @throws IOException
+     *             when the results could not be written.
+     */
+    @Override
+    void close() throws IOException;
+}
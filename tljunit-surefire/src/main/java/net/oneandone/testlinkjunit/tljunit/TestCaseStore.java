@@ -0,0 +1,213 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.oneandone.testlinkjunit.tljunit.TestLinkId.ExternalTestLinkId;
+import net.oneandone.testlinkjunit.tljunit.TestLinkId.InternalTestLinkId;
+
+/**
+ * Compact in-memory store of completed testcases.
+ *
+ * Instead of one object graph per testcase, every attribute is held in a growable primitive column, external ids and
+ * notes are appended as UTF-8 to one byte arena and referenced by offset and length packed into a <tt>long</tt>.
+ * Testers are stored once and referenced by index. {@link TestCaseResult}s are materialized again on demand by
+ * {@link TestCaseStore#get(int)}.
+ *
+ * Instances are not threadsafe, callers have to synchronize.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class TestCaseStore {
+
+    /** Needed for conversion of strings to bytes. */
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    /** Initial number of rows. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Initial size of the arena in bytes. */
+    private static final int INITIAL_ARENA_SIZE = 4096;
+
+    /** Reference of a missing string. */
+    private static final long NO_STRING = -1L;
+
+    /** All states by ordinal. */
+    private static final TestState[] STATES = TestState.values();
+
+    /** Whether the id of a row is internal. */
+    private boolean[] internal = new boolean[INITIAL_CAPACITY];
+
+    /** Internal id or reference of the external id in {@link TestCaseStore#arena} by row. */
+    private long[] ids = new long[INITIAL_CAPACITY];
+
+    /** Ordinal of the {@link TestState} by row. */
+    private byte[] states = new byte[INITIAL_CAPACITY];
+
+    /** Timestamp in milliseconds since the epoch by row. */
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+
+    /** Duration in nanoseconds by row. */
+    private long[] durations = new long[INITIAL_CAPACITY];
+
+    /** Index into {@link TestCaseStore#testerNames} by row. */
+    private int[] testers = new int[INITIAL_CAPACITY];
+
+    /** Reference of the notes in {@link TestCaseStore#arena} by row. */
+    private long[] notes = new long[INITIAL_CAPACITY];
+
+    /** Distinct names of testers. */
+    private final List<String> testerNames = new ArrayList<String>(1);
+
+    /** UTF-8 bytes of all external ids and notes. */
+    private byte[] arena = new byte[INITIAL_ARENA_SIZE];
+
+    /** Used bytes of {@link TestCaseStore#arena}. */
+    private int arenaSize;
+
+    /** Number of rows. */
+    private int size;
+
+    /**
+     * Appends a completed testcase.
+     *
+     * @param testCase
+     *            the completed testcase.
+     */
+    void add(final TestCaseResult testCase) {
+        if (size == states.length) {
+            grow();
+        }
+        final TestLinkId<?> id = testCase.getId();
+        if (id instanceof InternalTestLinkId) {
+            internal[size] = true;
+            ids[size] = ((InternalTestLinkId) id).getId();
+        } else {
+            internal[size] = false;
+            ids[size] = append(((ExternalTestLinkId) id).getId());
+        }
+        states[size] = (byte) testCase.getState().ordinal();
+        timestamps[size] = testCase.getTimestamp();
+        durations[size] = testCase.getDuration();
+        testers[size] = indexOfTester(testCase.getTester());
+        notes[size] = append(testCase.getNotes());
+        size++;
+    }
+
+    /**
+     * Materializes one testcase.
+     *
+     * @param index
+     *            of the row.
+     * @return the testcase.
+     */
+    TestCaseResult get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        final TestLinkId<?> id;
+        if (internal[index]) {
+            id = new InternalTestLinkId(ids[index]);
+        } else {
+            id = new ExternalTestLinkId(string(ids[index]));
+        }
+        return new TestCaseResult(id, testerNames.get(testers[index]), timestamps[index], STATES[states[index]],
+                string(notes[index]), durations[index]);
+    }
+
+    /**
+     * @return the number of testcases.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of bytes held by the arena.
+     */
+    int arenaSize() {
+        return arenaSize;
+    }
+
+    /**
+     * Doubles the capacity of all columns.
+     */
+    private void grow() {
+        final int capacity = size * 2;
+        internal = Arrays.copyOf(internal, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        states = Arrays.copyOf(states, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        testers = Arrays.copyOf(testers, capacity);
+        notes = Arrays.copyOf(notes, capacity);
+    }
+
+    /**
+     * @param tester
+     *            name of the tester.
+     * @return index of <tt>tester</tt> in {@link TestCaseStore#testerNames}, added when not known yet.
+     */
+    private int indexOfTester(final String tester) {
+        int index = testerNames.indexOf(tester);
+        if (index < 0) {
+            index = testerNames.size();
+            testerNames.add(tester);
+        }
+        return index;
+    }
+
+    /**
+     * Appends the UTF-8 bytes of <tt>value</tt> to the arena.
+     *
+     * @param value
+     *            to append, may be null.
+     * @return offset in the upper and length in the lower 32 bits, {@link TestCaseStore#NO_STRING} for null.
+     */
+    private long append(final String value) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        final byte[] bytes = value.getBytes(UTF8);
+        if (arena.length - arenaSize < bytes.length) {
+            final long required = (long) arenaSize + bytes.length;
+            if (required > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Notes exceed " + Integer.MAX_VALUE + " bytes");
+            }
+            arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE, Math.max(required, 2L * arena.length)));
+        }
+        System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+        final long reference = ((long) arenaSize << 32) | bytes.length;
+        arenaSize += bytes.length;
+        return reference;
+    }
+
+    /**
+     * @param reference
+     *            returned by {@link TestCaseStore#append(String)}.
+     * @return the string stored in the arena.
+     */
+    private String string(final long reference) {
+        if (reference == NO_STRING) {
+            return null;
+        }
+        return new String(arena, (int) (reference >>> 32), (int) reference, UTF8);
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Converts the compact binary results written when the system property <tt>testlink.binary</tt> is set to
+ * <tt>true</tt> into a Testlink XML file, see {@link TestLinkXmlRunListener#TestLinkXmlRunListener()}.
+ *
+ * Journals written when <tt>testlink.journal</tt> is set use the same format. Reading stops at the first truncated or
+ * corrupt record, so files of a JVM which died during the test run may be converted as well.
+ *
+ * Binary results are written to {@link TestLinkBinaryResults#DEFAULT_RESULTS} unless <tt>testlink.results</tt> is set,
+ * the name of the XML file is derived from them, see {@link TestLinkBinaryResults#xmlFileOf(File)}.
+ *
+ * @author Mirko Friedenhagen
+ */
+public final class TestLinkBinaryResults {
+
+    /** Default file of the binary results. */
+    public static final String DEFAULT_RESULTS = "target/testlink.bin";
+
+    /** Extension of the resulting files. */
+    private static final String XML = ".xml";
+
+    /** Known extensions of binary results, stripped from the resulting files. */
+    private static final String[] EXTENSIONS = {".bin", XML};
+
+    /** Extension of compressed binary results. */
+    private static final String GZ = ".gz";
+
+    /** Utility class. */
+    private TestLinkBinaryResults() {
+        // no instances.
+    }
+
+    /**
+     * Writes all intact records of <tt>in</tt> to <tt>out</tt> as Testlink XML.
+     *
+     * @param in
+     *            binary results, closed afterwards.
+     * @param out
+     *            the xml data is written to, closed afterwards.
+     * @return the number of converted testcases.
+     * @throws IOException
+     *             when reading or writing fails.
+     */
+    public static int toXml(final InputStream in, final OutputStream out) throws IOException {
+        final TestCaseSink sink = new StreamingXmlTestCaseSink(out);
+        try {
+            return TestCaseRecordCodec.readFrames(in, sink);
+        } finally {
+            sink.close();
+        }
+    }
+
+    /**
+     * Writes all intact records of <tt>source</tt> to <tt>target</tt> as Testlink XML. Both files are compressed
+     * with gzip when their names end with <tt>.gz</tt>.
+     *
+     * @param source
+     *            binary results.
+     * @param target
+     *            Testlink XML file to write.
+     * @return the number of converted testcases.
+     * @throws IOException
+     *             when reading or writing fails.
+     */
+    public static int toXml(final File source, final File target) throws IOException {
+        final InputStream in = Compression.newInputStream(source.getPath());
+        final OutputStream out;
+        try {
+            out = Compression.newOutputStream(target.getPath());
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return toXml(in, out);
+    }
+
+    /**
+     * Writes all intact records of <tt>source</tt> to the XML file derived from its name, see
+     * {@link TestLinkBinaryResults#xmlFileOf(File)}, by means of a temporary file when the source is replaced.
+     *
+     * @param source
+     *            binary results.
+     * @return the number of converted testcases.
+     * @throws IOException
+     *             when reading or writing fails.
+     */
+    public static int toXml(final File source) throws IOException {
+        final File target = xmlFileOf(source);
+        if (!target.equals(source)) {
+            return toXml(source, target);
+        }
+        final File temporary = new File(target.getPath() + ".tmp");
+        final int count = toXml(source, temporary);
+        if (!target.delete() || !temporary.renameTo(target)) {
+            throw new IOException("Could not replace " + target + " by " + temporary);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the XML file for binary results by replacing their known extensions, see
+     * {@link TestLinkBinaryResults#EXTENSIONS}, and a trailing <tt>.gz</tt>, e.g. <tt>target/testlink.xml</tt> for
+     * {@link TestLinkBinaryResults#DEFAULT_RESULTS}. Binary results written to <tt>NAME.xml</tt> are replaced.
+     *
+     * @param source
+     *            binary results.
+     * @return the resulting XML file.
+     */
+    public static File xmlFileOf(final File source) {
+        String name = source.getName();
+        if (name.endsWith(GZ)) {
+            name = name.substring(0, name.length() - GZ.length());
+        }
+        for (final String extension : EXTENSIONS) {
+            if (name.endsWith(extension) && name.length() > extension.length()) {
+                name = name.substring(0, name.length() - extension.length());
+                break;
+            }
+        }
+        return new File(source.getParentFile(), name + XML);
+    }
+}
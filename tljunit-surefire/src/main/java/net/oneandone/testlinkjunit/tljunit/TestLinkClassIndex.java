@@ -0,0 +1,191 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Index of all methods annotated with {@link TestLink} in a directory of compiled classes.
+ *
+ * The classes are loaded through a {@link URLClassLoader} over the directory and the given classpath without being
+ * initialized, so no static initializers are run, and the annotations are read by reflection. Only public methods are
+ * indexed, including those inherited from super classes. The dependencies of the test classes must be on the given
+ * classpath or visible to the context class loader, classes which could not be loaded or linked are skipped and
+ * reported by {@link TestLinkClassIndex#getSkipped()}.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class TestLinkClassIndex {
+
+    /** Ids by class and method name, see {@link TestLinkClassIndex#key(String, String)}. */
+    private final Map<String, TestLinkId<?>> ids = new HashMap<String, TestLinkId<?>>();
+
+    /** Reasons by name of the classes which could not be loaded or linked. */
+    private final Map<String, String> skipped = new TreeMap<String, String>();
+
+    /**
+     * Scans all class files below <tt>directory</tt>.
+     *
+     * @param directory
+     *            of compiled classes, e.g. <tt>target/test-classes</tt>.
+     * @return the index.
+     * @throws IOException
+     *             when the directory could not be listed or an annotation has neither an internal nor an external id.
+     */
+    static TestLinkClassIndex scan(final File directory) throws IOException {
+        return scan(directory, Collections.<File> emptyList());
+    }
+
+    /**
+     * Scans all class files below <tt>directory</tt>, loading their dependencies from <tt>classpath</tt> as well.
+     *
+     * @param directory
+     *            of compiled classes, e.g. <tt>target/test-classes</tt>.
+     * @param classpath
+     *            jars and directories the test classes depend on.
+     * @return the index.
+     * @throws IOException
+     *             when the directory could not be listed or an annotation has neither an internal nor an external id.
+     */
+    static TestLinkClassIndex scan(final File directory, final List<File> classpath) throws IOException {
+        final URL[] urls = new URL[classpath.size() + 1];
+        urls[0] = directory.toURI().toURL();
+        for (int i = 0; i < classpath.size(); i++) {
+            urls[i + 1] = classpath.get(i).toURI().toURL();
+        }
+        final ClassLoader parent = Thread.currentThread().getContextClassLoader();
+        final URLClassLoader loader = new URLClassLoader(urls,
+                parent != null ? parent : TestLinkClassIndex.class.getClassLoader());
+        try {
+            final TestLinkClassIndex index = new TestLinkClassIndex();
+            index.scanDirectory(directory, "", loader);
+            return index;
+        } finally {
+            // URLClassLoader is only closeable since Java 7.
+            if (loader instanceof Closeable) {
+                ((Closeable) loader).close();
+            }
+        }
+    }
+
+    /**
+     * Looks up the id of a test method, which may be declared in a super class.
+     *
+     * @param className
+     *            binary name of the class, e.g. <tt>com.example.OuterTest$InnerTest</tt>.
+     * @param methodName
+     *            name of the method.
+     * @return the id or null, when the method is not annotated.
+     */
+    TestLinkId<?> get(final String className, final String methodName) {
+        return ids.get(key(className, methodName));
+    }
+
+    /**
+     * @return the number of annotated methods.
+     */
+    int size() {
+        return ids.size();
+    }
+
+    /**
+     * @return the reasons by name of the classes which could not be loaded or linked, sorted by name.
+     */
+    Map<String, String> getSkipped() {
+        return Collections.unmodifiableMap(skipped);
+    }
+
+    /**
+     * @param directory
+     *            to scan recursively.
+     * @param packagePrefix
+     *            of the classes in <tt>directory</tt>, e.g. <tt>com.example.</tt>.
+     * @param loader
+     *            to load the classes with.
+     * @throws IOException
+     *             when the directory could not be listed or an annotation has neither an internal nor an external id.
+     */
+    private void scanDirectory(final File directory, final String packagePrefix, final ClassLoader loader)
+            throws IOException {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Could not list " + directory);
+        }
+        for (final File file : files) {
+            final String name = file.getName();
+            if (file.isDirectory()) {
+                scanDirectory(file, packagePrefix + name + ".", loader);
+            } else if (name.endsWith(".class")) {
+                addClass(packagePrefix + name.substring(0, name.length() - ".class".length()), loader);
+            }
+        }
+    }
+
+    /**
+     * Adds the annotated public methods of a class, remembering classes which could not be loaded or linked.
+     *
+     * @param className
+     *            binary name of the class.
+     * @param loader
+     *            to load the class with.
+     * @throws IOException
+     *             when an annotation has neither an internal nor an external id.
+     */
+    private void addClass(final String className, final ClassLoader loader) throws IOException {
+        final Method[] methods;
+        try {
+            methods = Class.forName(className, false, loader).getMethods();
+        } catch (ClassNotFoundException e) {
+            skipped.put(className, e.toString());
+            return;
+        } catch (LinkageError e) {
+            skipped.put(className, e.toString());
+            return;
+        }
+        for (final Method method : methods) {
+            final TestLink testLink = method.getAnnotation(TestLink.class);
+            if (testLink != null) {
+                try {
+                    ids.put(key(className, method.getName()),
+                            TestLinkId.fromAnnotation(testLink, method.getName() + "(" + className + ")"));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * @param className
+     *            of the class.
+     * @param methodName
+     *            of the method.
+     * @return the key into {@link TestLinkClassIndex#ids}.
+     */
+    private static String key(final String className, final String methodName) {
+        return className + '#' + methodName;
+    }
+}
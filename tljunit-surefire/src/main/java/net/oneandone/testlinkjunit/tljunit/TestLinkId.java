@@ -31,6 +31,12 @@ abstract class TestLinkId<T> {
     /** id of the test. */
     private final T id;
 
+    /** Lazily created {@link TestLinkId#toString()}, as it is logged for every event. */
+    private String string;
+
+    /** Lazily created {@link TestLinkId#getValue()}, as it is written for every result. */
+    private String value;
+
     /**
      * Private to make sure we only have {@link ExternalTestLinkId} and {@link InternalTestLinkId} as subclasses.
      *
@@ -48,6 +54,16 @@ abstract class TestLinkId<T> {
         return id;
     }
 
+    /**
+     * @return the id as written to the results.
+     */
+    String getValue() {
+        if (value == null) {
+            value = String.valueOf(id);
+        }
+        return value;
+    }
+
     /**
      * Returns a String representation of the type of the current TestLink ID.
      *
@@ -58,7 +74,31 @@ abstract class TestLinkId<T> {
     /** {@inheritDoc} */
     @Override
     public String toString() {
-        return String.format("%s='%s'", getType(), getId());
+        if (string == null) {
+            string = String.format("%s='%s'", getType(), getId());
+        }
+        return string;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Two ids are equal when they are of the same type and value.
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        return id.equals(((TestLinkId<?>) obj).id);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return 31 * getClass().hashCode() + id.hashCode();
     }
 
     /**
@@ -71,7 +111,36 @@ abstract class TestLinkId<T> {
      *             when neither the {@link TestLink#externalId()} nor the {@link TestLink#internalId()} is set.
      */
     public static TestLinkId<?> fromDescription(Description description) {
-        final TestLink testLink = description.getAnnotation(TestLink.class);
+        return fromAnnotation(description.getAnnotation(TestLink.class), description);
+    }
+
+    /**
+     * Returns the ID of the current Testcase when its annotation was already looked up.
+     * 
+     * @param testLink
+     *            annotation of the Testcase.
+     * @param description
+     *            of the Testcase used in the error message.
+     * @return the ID of the current Testcase
+     * @throws IllegalArgumentException
+     *             when neither the {@link TestLink#externalId()} nor the {@link TestLink#internalId()} is set.
+     */
+    static TestLinkId<?> fromAnnotation(final TestLink testLink, final Description description) {
+        return fromAnnotation(testLink, description.getDisplayName());
+    }
+
+    /**
+     * Returns the ID of a {@link TestLink} annotation.
+     * 
+     * @param testLink
+     *            to extract the ID from.
+     * @param displayName
+     *            of the annotated Testcase used in the error message.
+     * @return the ID of the Testcase
+     * @throws IllegalArgumentException
+     *             when neither the {@link TestLink#externalId()} nor the {@link TestLink#internalId()} is set.
+     */
+    static TestLinkId<?> fromAnnotation(final TestLink testLink, final String displayName) {
         final String externalId = testLink.externalId();
         final long internalId = testLink.internalId();
         if (!externalId.equals(TestLink.NOT_AVAILABLE)) {
@@ -79,8 +148,7 @@ abstract class TestLinkId<T> {
         } else if (internalId != 0) {
             return new InternalTestLinkId(internalId);
         } else {
-            throw new IllegalArgumentException("Must set either internalId or externalId on '"
-                    + description.getDisplayName() + "'");
+            throw new IllegalArgumentException("Must set either internalId or externalId on '" + displayName + "'");
         }
     }
 
@@ -89,6 +157,9 @@ abstract class TestLinkId<T> {
      */
     static class ExternalTestLinkId extends TestLinkId<String> {
 
+        /** Type of external ids. */
+        static final String TYPE = "external_id";
+
         /**
          * @param id
          *            of the testcase
@@ -100,7 +171,7 @@ abstract class TestLinkId<T> {
         /** {@inheritDoc} */
         @Override
         public String getType() {
-            return "external_id";
+            return TYPE;
         }
     }
 
@@ -109,6 +180,9 @@ abstract class TestLinkId<T> {
      */
     static class InternalTestLinkId extends TestLinkId<Long> {
 
+        /** Type of internal ids. */
+        static final String TYPE = "id";
+
         /**
          * @param id
          *            of the testcase
@@ -120,7 +194,7 @@ abstract class TestLinkId<T> {
         /** {@inheritDoc} */
         @Override
         public String getType() {
-            return "id";
+            return TYPE;
         }
     }
 }
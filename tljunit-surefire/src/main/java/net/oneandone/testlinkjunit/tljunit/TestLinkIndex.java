@@ -0,0 +1,144 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.runner.Description;
+
+/**
+ * Ids of all test methods annotated with {@link TestLink}, written at compile time by {@link TestLinkProcessor} and
+ * loaded once per JVM from all resources named {@link TestLinkIndex#RESOURCE}.
+ *
+ * Keys are the display names JUnit uses for test methods, <tt>methodName(binary class name)</tt>, so looking up a
+ * {@link Description} does not need any reflection. The index is only written when {@link TestLinkProcessor} is named
+ * explicitly while compiling the tests and is replaced by every such compilation. Tests not found in the index, e.g.
+ * parameterized tests, tests inherited from another class or tests of an incremental compilation of other classes,
+ * are resolved by reflection as before.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class TestLinkIndex {
+
+    /** Name of the resources holding the index. */
+    static final String RESOURCE = "META-INF/tljunit/testlink.properties";
+
+    /** Separates the type from the value of an id. */
+    private static final char SEPARATOR = '=';
+
+    /** Ids by display name, loaded when first used. */
+    private static final Map<String, TestLinkId<?>> IDS = load(loader());
+
+    /** Utility class. */
+    private TestLinkIndex() {
+        // no instances.
+    }
+
+    /**
+     * @param description
+     *            of the test.
+     * @return the indexed id, null when the test is not found.
+     */
+    static TestLinkId<?> get(final Description description) {
+        return IDS.get(description.getDisplayName());
+    }
+
+    /**
+     * @return the class loader of the tests.
+     */
+    private static ClassLoader loader() {
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return loader != null ? loader : TestLinkIndex.class.getClassLoader();
+    }
+
+    /**
+     * Reads and merges all indexes. Unreadable indexes and malformed entries are skipped.
+     *
+     * @param loader
+     *            to find the resources with.
+     * @return ids by display name.
+     */
+    static Map<String, TestLinkId<?>> load(final ClassLoader loader) {
+        final Map<String, TestLinkId<?>> ids = new HashMap<String, TestLinkId<?>>();
+        final Enumeration<URL> resources;
+        try {
+            resources = loader.getResources(RESOURCE);
+        } catch (IOException e) {
+            return Collections.emptyMap();
+        }
+        while (resources.hasMoreElements()) {
+            final Properties index = new Properties();
+            try {
+                final InputStream in = resources.nextElement().openStream();
+                try {
+                    index.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                continue;
+            }
+            for (final String key : index.stringPropertyNames()) {
+                final TestLinkId<?> id = parse(index.getProperty(key));
+                if (id != null) {
+                    ids.put(key, id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @param id
+     *            of a test.
+     * @return the value in the index.
+     */
+    static String format(final TestLinkId<?> id) {
+        return id.getType() + SEPARATOR + id.getValue();
+    }
+
+    /**
+     * @param value
+     *            in the index.
+     * @return the id, null when the value is malformed.
+     */
+    static TestLinkId<?> parse(final String value) {
+        final int separator = value.indexOf(SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+        final String type = value.substring(0, separator);
+        final String id = value.substring(separator + 1);
+        if (type.equals(TestLinkId.ExternalTestLinkId.TYPE)) {
+            return new TestLinkId.ExternalTestLinkId(id);
+        }
+        if (type.equals(TestLinkId.InternalTestLinkId.TYPE)) {
+            try {
+                return new TestLinkId.InternalTestLinkId(Long.valueOf(id));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
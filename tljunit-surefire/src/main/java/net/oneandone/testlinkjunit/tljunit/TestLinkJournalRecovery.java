@@ -0,0 +1,73 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Converts a journal written by a JVM which died before finishing the test run into a Testlink XML file.
+ *
+ * The journal is written next to the results file when the system property <tt>testlink.journal</tt> is set to
+ * <tt>true</tt>, see {@link TestLinkXmlRunListener#TestLinkXmlRunListener()}. A left over journal is recovered
+ * automatically when the next test run starts. To recover a journal manually run
+ *
+ * <pre>
+ * java -cp tljunit-surefire.jar net.oneandone.testlinkjunit.tljunit.TestLinkJournalRecovery \
+ *     target/testlink.xml.journal target/testlink-recovered.xml
+ * </pre>
+ *
+ * @author Mirko Friedenhagen
+ */
+public final class TestLinkJournalRecovery {
+
+    /** Utility class. */
+    private TestLinkJournalRecovery() {
+        // no instances.
+    }
+
+    /**
+     * Writes all intact records of <tt>journal</tt> to <tt>target</tt> as Testlink XML.
+     *
+     * @param journal
+     *            to recover.
+     * @param target
+     *            Testlink XML file to write.
+     * @return the number of recovered testcases.
+     * @throws IOException
+     *             when the journal could not be read or the target could not be written.
+     */
+    public static int recover(final File journal, final File target) throws IOException {
+        return TestLinkBinaryResults.toXml(journal, target);
+    }
+
+    /**
+     * Recovers the journal given as first argument to the file given as second argument.
+     *
+     * @param args
+     *            journal and target file.
+     * @throws IOException
+     *             when the journal could not be read or the target could not be written.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TestLinkJournalRecovery JOURNAL TARGET");
+            return;
+        }
+        final int count = recover(new File(args[0]), new File(args[1]));
+        System.out.println("Recovered " + count + " testcases to " + args[1]);
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+
+/**
+ * Writes the results as <a href="http://jsonlines.org/">JSON Lines</a>, one JSON object per finished test, which
+ * carries the type and value of the Testlink id, the state, the timestamp in milliseconds since the epoch, the tester
+ * and the notes. Every line is flushed immediately, so the file may be tailed while tests are running.
+ *
+ * <p>
+ * Configure the surefire plugin as described in {@link TestLinkXmlRunListener}, using
+ * <tt>net.oneandone.testlinkjunit.tljunit.TestLinkJsonRunListener</tt> as listener. Both listeners may be used
+ * together. Like {@link TestLinkXmlRunListener}, one instance may be shared by several concurrent runs.
+ * </p>
+ *
+ * @author Mirko Friedenhagen
+ */
+public class TestLinkJsonRunListener extends AbstractTestLinkRunListener<InTestLinkXmlRunListener> {
+
+    /** Counts the runs sharing this listener. */
+    private final TestCaseSession session;
+
+    /**
+     * Instantiates {@link TestLinkJsonRunListener#TestLinkJsonRunListener(OutputStream, String)} with parameters taken
+     * from System properties.
+     *
+     * <dl>
+     * <dt><code>testlink.json.results</code></dt>
+     * <dd>Results are written to this filename (<tt>target/testlink.jsonl</tt> by default). Intermediate directories
+     * must be created beforehand. As every line is flushed to be tailed, the results are never compressed, filenames
+     * ending with <tt>.gz</tt> are rejected.</dd>
+     * <dt><code>testlink.tester</code></dt>
+     * <dd>To be used as name of the tester. (falls back to system property <tt>user.name</tt> by default).</dd>
+     * </dl>
+     *
+     * @throws IOException
+     *             when the file could not be written, e.g. the parent directory does not exist.
+     * @throws IllegalArgumentException
+     *             when the filename ends with <tt>.gz</tt>.
+     */
+    public TestLinkJsonRunListener() throws IOException {
+        this(newOutputStream(System.getProperty("testlink.json.results", "target/testlink.jsonl")),
+                System.getProperty("testlink.tester", System.getProperty("user.name")));
+    }
+
+    /**
+     * Opens the buffered stream of the lines. Compression is rejected, as the gzip stream of Java 6 keeps flushed
+     * lines in its deflater, so the file could not be tailed.
+     *
+     * @param fileName
+     *            of the results.
+     * @return stream to write to.
+     * @throws IOException
+     *             when the file could not be written, e.g. the parent directory does not exist.
+     * @throws IllegalArgumentException
+     *             when the filename ends with <tt>.gz</tt>.
+     */
+    private static OutputStream newOutputStream(final String fileName) throws IOException {
+        if (Compression.forFileName(fileName) != Compression.none) {
+            throw new IllegalArgumentException("JSON Lines are flushed line by line and not compressed: " + fileName);
+        }
+        return Compression.newOutputStream(fileName);
+    }
+
+    /**
+     * Writes results to <tt>out</tt> using <tt>tester</tt> as name of the tester. <tt>out</tt> will be closed in
+     * {@link TestLinkJsonRunListener#testRunFinished(org.junit.runner.Result)} of the last active run.
+     *
+     * @param out
+     *            the lines are written to.
+     * @param tester
+     *            name of the tester.
+     */
+    public TestLinkJsonRunListener(final OutputStream out, final String tester) {
+        super(new InTestLinkXmlRunListener(tester, new JsonLinesTestCaseSink(out)));
+        this.session = new TestCaseSession(getInTestLinkListener().getSink(),
+                TestCaseSession.DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Registers another run sharing this listener.
+     */
+    @Override
+    public void testRunStarted(Description description) throws Exception {
+        super.testRunStarted(description);
+        session.runStarted();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Will close the stream and log a summary of the failures when this is the last active run.
+     */
+    @Override
+    public void testRunFinished(Result result) throws Exception {
+        super.testRunFinished(result);
+        if (session.runFinished()) {
+            getInTestLinkListener().logFailureSummary();
+        }
+    }
+}
@@ -17,6 +17,7 @@ package net.oneandone.testlinkjunit.tljunit;
 
 import java.net.URI;
 
+import org.junit.runner.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,7 +28,16 @@ import org.slf4j.LoggerFactory;
  * <li>The name of the {@link Logger} may be set by means of the system property <tt>testlink.loggername</tt>, which
  * defaults to "TESTLINK".</li>
  * <li>A system property called <tt>testlink.uri</tt> will be used to log a direct link to the test case in your
- * Testlink instance. When unavailable or empty will suppress the link.</li>
+ * Testlink instance. When unavailable or empty will suppress the link. The links match the version of TestLink given
+ * by <tt>testlink.version</tt>, which defaults to <tt>1.8</tt>, use e.g. <tt>1.9</tt> for later versions. The system
+ * properties <tt>testlink.uri.internal</tt> and <tt>testlink.uri.external</tt> override the templates of the links
+ * relative to <tt>testlink.uri</tt>, see {@link TestLinkUriResolver}.</li>
+ * <li>When the system property <tt>testlink.async</tt> is <tt>true</tt>, events are handed over to a background
+ * thread calling the {@link Logger}, so tests do not wait for slow appenders. At most
+ * <tt>testlink.async.capacity</tt> events (8192 by default) are waiting. When more arrive,
+ * <tt>testlink.async.overflow</tt> decides: <tt>block</tt> (the default) lets tests wait, <tt>dropPassed</tt> drops
+ * START and PASSED events and <tt>dropAll</tt> drops all events. All waiting events are logged before
+ * {@link #testRunFinished(Result)} returns.</li>
  * </ul>
  * For more usage information, see {@link TestLinkXmlRunListener}.
  *
@@ -39,8 +49,13 @@ public class TestLinkLoggingRunListener extends AbstractTestLinkRunListener<InTe
      * By default log to {@link Logger} "TESTLINK" or one given by the system property <tt>testlink.loggername</tt>.
      */
     public TestLinkLoggingRunListener() {
-        this(LoggerFactory.getLogger(System.getProperty("testlink.loggername", "TESTLINK")), 
-             URI.create(System.getProperty("testlink.uri", "")));
+        this(LoggerFactory.getLogger(System.getProperty("testlink.loggername", "TESTLINK")),
+             TestLinkUriResolver.create(URI.create(System.getProperty("testlink.uri", "")),
+                     TestLinkVersion.of(System.getProperty("testlink.version", "1.8")),
+                     System.getProperty("testlink.uri.internal"), System.getProperty("testlink.uri.external")),
+             Boolean.getBoolean("testlink.async")
+                     ? Integer.getInteger("testlink.async.capacity", AsyncLogDispatcher.DEFAULT_CAPACITY) : 0,
+             OverflowPolicy.valueOf(System.getProperty("testlink.async.overflow", OverflowPolicy.block.name())));
     }
 
     /**
@@ -56,4 +71,58 @@ public class TestLinkLoggingRunListener extends AbstractTestLinkRunListener<InTe
         super(new InTestLinkLogRunListener(logger, testLinkUri));
     }
 
+    /**
+     * Logs to the injected {@link Logger} by means of a background thread.
+     *
+     * @param logger
+     *            to log to.
+     * @param testLinkUri
+     *            will be used to log a direct link to the test case in your Testlink instance. An {@link URI} created
+     *            from an empty string will suppress the link.
+     * @param capacity
+     *            maximum number of events waiting to be logged, 0 to log on the threads running the tests.
+     * @param overflowPolicy
+     *            what happens when more events are waiting.
+     */
+    TestLinkLoggingRunListener(final Logger logger, final URI testLinkUri, final int capacity,
+            final OverflowPolicy overflowPolicy) {
+        this(logger, TestLinkUriResolver.create(testLinkUri, TestLinkVersion.v1_8, null, null), capacity,
+                overflowPolicy);
+    }
+
+    /**
+     * Logs to the injected {@link Logger}, by means of a background thread when a capacity is given.
+     *
+     * @param logger
+     *            to log to.
+     * @param testLinkUriResolver
+     *            creates direct links to the test cases in your Testlink instance, null to suppress the link.
+     * @param capacity
+     *            maximum number of events waiting to be logged, 0 to log on the threads running the tests.
+     * @param overflowPolicy
+     *            what happens when more events are waiting.
+     */
+    TestLinkLoggingRunListener(final Logger logger, final TestLinkUriResolver testLinkUriResolver, final int capacity,
+            final OverflowPolicy overflowPolicy) {
+        this(new InTestLinkLogRunListener(logger, testLinkUriResolver,
+                capacity > 0 ? new AsyncLogDispatcher(logger, capacity, overflowPolicy) : null, Clock.SYSTEM));
+    }
+
+    /**
+     * @param inTestLinkListener
+     *            to be called when a {@link TestLink} annotation exists.
+     */
+    TestLinkLoggingRunListener(final InTestLinkLogRunListener inTestLinkListener) {
+        super(inTestLinkListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Waits until all events are logged when logging asynchronously.
+     */
+    @Override
+    public void testRunFinished(Result result) throws Exception {
+        super.testRunFinished(result);
+        getInTestLinkListener().drain();
+    }
 }
@@ -0,0 +1,150 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Writes the {@link TestLinkIndex} of all methods annotated with {@link TestLink} while compiling the tests, so the
+ * listeners find the ids without reflection.
+ *
+ * Compilation fails for methods with neither {@link TestLink#internalId()} nor {@link TestLink#externalId()}, a
+ * warning is issued for ids used more than once. The processor runs for every compilation, even without any
+ * {@link TestLink} annotation, and always replaces the index, so it never holds ids of earlier compilations which
+ * may have changed since. Incremental compilations only index the compiled classes, tests missing in the index are
+ * still resolved by reflection. Classes compiled without the processor, e.g. by an IDE into the same directory, are
+ * not reflected in the index until the next full build.
+ *
+ * The processor is not registered as a service, so it never runs in compilations merely having
+ * <tt>tljunit-surefire</tt> on the classpath. Name it explicitly for the compilation of the tests, e.g. with
+ * <tt>-processor net.oneandone.testlinkjunit.tljunit.TestLinkProcessor</tt> or <tt>annotationProcessors</tt> of the
+ * maven-compiler-plugin. Naming it also enables annotation processing on JDK 23 and later, which no longer run
+ * processors found on the classpath by default.
+ *
+ * @author Mirko Friedenhagen
+ */
+@SupportedAnnotationTypes("*")
+public final class TestLinkProcessor extends AbstractProcessor {
+
+    /** Index entries of all rounds, keyed by display name of the test. */
+    private final Properties index = new Properties();
+
+    /** First method by id, to detect duplicates. */
+    private final Map<String, Element> methods = new HashMap<String, Element>();
+
+    /** Set when a method without id was found, no index is written then. */
+    private boolean failed;
+
+    /** {@inheritDoc} */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * No annotation is claimed, so other processors may handle them as well.
+     */
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (final Element element : roundEnv.getElementsAnnotatedWith(TestLink.class)) {
+            if (element.getKind() == ElementKind.METHOD) {
+                add(element);
+            }
+        }
+        if (roundEnv.processingOver() && !failed) {
+            write();
+        }
+        return false;
+    }
+
+    /**
+     * Adds a method to the index.
+     *
+     * @param method
+     *            annotated with {@link TestLink}.
+     */
+    private void add(final Element method) {
+        final TestLink testLink = method.getAnnotation(TestLink.class);
+        final TestLinkId<?> id;
+        if (!testLink.externalId().equals(TestLink.NOT_AVAILABLE)) {
+            id = new TestLinkId.ExternalTestLinkId(testLink.externalId());
+        } else if (testLink.internalId() != 0) {
+            id = new TestLinkId.InternalTestLinkId(testLink.internalId());
+        } else {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Must set either internalId or externalId", method);
+            failed = true;
+            return;
+        }
+        final String value = TestLinkIndex.format(id);
+        final Element first = methods.get(value);
+        if (first == null) {
+            methods.put(value, method);
+        } else if (!first.equals(method)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Duplicate " + id.getType() + " '" + id.getId() + "', already used by " + displayName(first),
+                    method);
+        }
+        index.setProperty(displayName(method), value);
+    }
+
+    /**
+     * @param method
+     *            annotated with {@link TestLink}.
+     * @return the name JUnit displays for the test, e.g. <tt>testPassed(com.example.OuterTest$InnerTest)</tt>.
+     */
+    private String displayName(final Element method) {
+        final TypeElement type = (TypeElement) method.getEnclosingElement();
+        return method.getSimpleName() + "(" + processingEnv.getElementUtils().getBinaryName(type) + ")";
+    }
+
+    /**
+     * Writes the index to the class output.
+     */
+    private void write() {
+        try {
+            final FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    TestLinkIndex.RESOURCE);
+            final OutputStream out = resource.openOutputStream();
+            try {
+                index.store(out, "Generated by " + TestLinkProcessor.class.getName());
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Could not write " + TestLinkIndex.RESOURCE + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Converts the <tt>TEST-*.xml</tt> reports of surefire into a Testlink XML file after the test run, for builds which
+ * do not register a {@link TestLinkXmlRunListener} at all.
+ *
+ * The {@link TestLink} annotations are read once from the compiled test classes, see {@link TestLinkClassIndex},
+ * and joined with the testcases of the reports by class and method name. Reports are parsed in parallel. States and
+ * notes are the same {@link TestLinkXmlRunListener} would write: skipped tests are <tt>BLOCKED</tt>, failures and
+ * errors are <tt>FAILED</tt>, tests passing on a rerun are <tt>PASSED</tt>.
+ *
+ * @author Mirko Friedenhagen
+ */
+public final class TestLinkSurefireReports {
+
+    /** Format of the timestamp attribute of surefire's testsuite element. */
+    private static final String SUREFIRE_TIMESTAMP = "yyyy-MM-dd'T'HH:mm:ss";
+
+    /** Nanoseconds per second, surefire reports the time of a testcase in seconds, e.g. <tt>1,234.5</tt>. */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /** Index of all annotated test methods. */
+    private final TestLinkClassIndex index;
+
+    /** Name of the tester. */
+    private final String tester;
+
+    /** Number of threads parsing reports in parallel. */
+    private final int threads;
+
+    /**
+     * Reads all {@link TestLink} annotations below <tt>classesDirectory</tt>.
+     *
+     * @param classesDirectory
+     *            of the compiled tests, e.g. <tt>target/test-classes</tt>.
+     * @param tester
+     *            name of the tester.
+     * @param threads
+     *            number of threads parsing reports in parallel.
+     * @throws IOException
+     *             when the classes could not be read.
+     */
+    public TestLinkSurefireReports(final File classesDirectory, final String tester, final int threads)
+            throws IOException {
+        this(TestLinkClassIndex.scan(classesDirectory), tester, threads);
+    }
+
+    /**
+     * Reads all {@link TestLink} annotations below <tt>classesDirectory</tt>, loading the dependencies of the tests
+     * from <tt>classpath</tt>.
+     *
+     * @param classesDirectory
+     *            of the compiled tests, e.g. <tt>target/test-classes</tt>.
+     * @param classpath
+     *            jars and directories the tests depend on, e.g. mocking frameworks.
+     * @param tester
+     *            name of the tester.
+     * @param threads
+     *            number of threads parsing reports in parallel.
+     * @throws IOException
+     *             when the classes could not be read.
+     */
+    public TestLinkSurefireReports(final File classesDirectory, final List<File> classpath, final String tester,
+            final int threads) throws IOException {
+        this(TestLinkClassIndex.scan(classesDirectory, classpath), tester, threads);
+    }
+
+    /**
+     * @param index
+     *            of all annotated test methods.
+     * @param tester
+     *            name of the tester.
+     * @param threads
+     *            number of threads parsing reports in parallel.
+     */
+    TestLinkSurefireReports(final TestLinkClassIndex index, final String tester, final int threads) {
+        this.index = index;
+        this.tester = tester;
+        this.threads = threads;
+    }
+
+    /**
+     * Test classes which could not be loaded or linked, e.g. because a dependency is missing from the classpath. Their
+     * testcases are missing from the results.
+     *
+     * @return the reasons by name of the skipped classes, sorted by name.
+     */
+    public Map<String, String> getSkippedClasses() {
+        return index.getSkipped();
+    }
+
+    /**
+     * Writes all annotated testcases of <tt>reports</tt> to <tt>target</tt>, which is compressed with gzip when its
+     * name ends with <tt>.gz</tt>.
+     *
+     * @param reports
+     *            surefire reports.
+     * @param target
+     *            Testlink XML file to write.
+     * @return the number of written testcases.
+     * @throws IOException
+     *             when reading or writing fails.
+     */
+    public int toXml(final List<File> reports, final File target) throws IOException {
+        return toXml(reports, Compression.newOutputStream(target.getPath()));
+    }
+
+    /**
+     * Writes all annotated testcases of <tt>reports</tt> to <tt>out</tt>.
+     *
+     * @param reports
+     *            surefire reports.
+     * @param out
+     *            the xml data is written to, closed afterwards.
+     * @return the number of written testcases.
+     * @throws IOException
+     *             when reading or writing fails.
+     */
+    public int toXml(final List<File> reports, final OutputStream out) throws IOException {
+        final TestCaseSink sink = new StreamingXmlTestCaseSink(out);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, reports.size())));
+        try {
+            final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (final File report : reports) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        final InputStream in = Compression.newInputStream(report.getPath());
+                        try {
+                            return read(in, report.lastModified(), sink);
+                        } catch (IOException e) {
+                            throw new IOException("Could not convert " + report, e);
+                        } finally {
+                            in.close();
+                        }
+                    }
+                }));
+            }
+            int count = 0;
+            for (final Future<Integer> future : futures) {
+                count += get(future);
+            }
+            return count;
+        } finally {
+            executor.shutdownNow();
+            sink.close();
+        }
+    }
+
+    /**
+     * Hands all annotated testcases of one report to <tt>sink</tt>.
+     *
+     * @param in
+     *            surefire report.
+     * @param defaultTimestamp
+     *            used when the testsuite has no timestamp.
+     * @param sink
+     *            receives the testcases.
+     * @return the number of testcases.
+     * @throws IOException
+     *             when the report could not be read or parsed.
+     */
+    int read(final InputStream in, final long defaultTimestamp, final TestCaseSink sink) throws IOException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        int count = 0;
+        try {
+            final XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                long timestamp = defaultTimestamp;
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    if ("testsuite".equals(reader.getLocalName())) {
+                        timestamp = parseTimestamp(reader.getAttributeValue(null, "timestamp"), defaultTimestamp);
+                    } else if ("testcase".equals(reader.getLocalName())) {
+                        final TestCaseResult testCase = readTestCase(reader, timestamp);
+                        if (testCase != null) {
+                            sink.add(testCase);
+                            count++;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        return count;
+    }
+
+    /**
+     * Reads one testcase element including its children.
+     *
+     * @param reader
+     *            positioned on a testcase element.
+     * @param timestamp
+     *            of the testsuite.
+     * @return the completed testcase or null, when the method is not annotated.
+     * @throws XMLStreamException
+     *             when the report could not be parsed.
+     */
+    private TestCaseResult readTestCase(final XMLStreamReader reader, final long timestamp)
+            throws XMLStreamException {
+        final String className = reader.getAttributeValue(null, "classname");
+        final String name = reader.getAttributeValue(null, "name");
+        final long duration = parseDuration(reader.getAttributeValue(null, "time"));
+        final String header = String.format("%s(%s)", name, className);
+        TestState state = TestState.passed;
+        String reason = null;
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                final String element = reader.getLocalName();
+                if ("failure".equals(element) || "error".equals(element)) {
+                    state = TestState.failed;
+                    reason = reasonOf(reader);
+                } else if ("skipped".equals(element)) {
+                    state = TestState.blocked;
+                    reason = reasonOf(reader);
+                } else {
+                    depth++;
+                }
+            }
+        }
+        final TestLinkId<?> id = className == null || name == null ? null : index.get(className, methodName(name));
+        if (id == null) {
+            return null;
+        }
+        final String notes;
+        if (state == TestState.passed) {
+            notes = state.notes(header);
+        } else {
+            notes = state.notes(header, reason);
+        }
+        return new TestCaseResult(id, tester, timestamp, state, notes, duration);
+    }
+
+    /**
+     * Reads the message of a failure, error or skipped element, falling back to its text, e.g. the stacktrace.
+     *
+     * @param reader
+     *            positioned on the element, positioned on its end afterwards.
+     * @return the reason.
+     * @throws XMLStreamException
+     *             when the report could not be parsed.
+     */
+    private static String reasonOf(final XMLStreamReader reader) throws XMLStreamException {
+        final String message = reader.getAttributeValue(null, "message");
+        final String text = reader.getElementText();
+        if (message != null) {
+            return message;
+        }
+        return text.trim();
+    }
+
+    /**
+     * Strips the parameters of parameterized tests, e.g. <tt>test[0]</tt>.
+     *
+     * @param name
+     *            of the testcase in the report.
+     * @return the name of the method.
+     */
+    static String methodName(final String name) {
+        final int bracket = name.indexOf('[');
+        return bracket > 0 ? name.substring(0, bracket) : name;
+    }
+
+    /**
+     * @param time
+     *            attribute of the testcase in seconds, may be null.
+     * @return the duration in nanoseconds, {@link TestCaseResult#UNKNOWN_DURATION} when <tt>time</tt> is missing or
+     *         malformed.
+     */
+    static long parseDuration(final String time) {
+        if (time == null) {
+            return TestCaseResult.UNKNOWN_DURATION;
+        }
+        try {
+            final double seconds = Double.parseDouble(time.replace(",", ""));
+            return seconds >= 0 ? Math.round(seconds * NANOS_PER_SECOND) : TestCaseResult.UNKNOWN_DURATION;
+        } catch (NumberFormatException e) {
+            return TestCaseResult.UNKNOWN_DURATION;
+        }
+    }
+
+    /**
+     * @param timestamp
+     *            attribute of the testsuite, may be null.
+     * @param defaultTimestamp
+     *            used when <tt>timestamp</tt> is missing or malformed.
+     * @return milliseconds since the epoch.
+     */
+    private static long parseTimestamp(final String timestamp, final long defaultTimestamp) {
+        if (timestamp == null) {
+            return defaultTimestamp;
+        }
+        try {
+            return new SimpleDateFormat(SUREFIRE_TIMESTAMP).parse(timestamp).getTime();
+        } catch (ParseException e) {
+            return defaultTimestamp;
+        }
+    }
+
+    /**
+     * Waits for a single report.
+     *
+     * @param future
+     *            of the report.
+     * @return the number of testcases.
+     * @throws IOException
+     *             when the report could not be converted.
+     */
+    private static int get(final Future<Integer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while converting", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -15,7 +15,14 @@
  */
 package net.oneandone.testlinkjunit.tljunit;
 
+import java.io.UnsupportedEncodingException;
 import java.net.URI;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.oneandone.testlinkjunit.tljunit.TestLinkId.ExternalTestLinkId;
 import net.oneandone.testlinkjunit.tljunit.TestLinkId.InternalTestLinkId;
@@ -23,50 +30,100 @@ import net.oneandone.testlinkjunit.tljunit.TestLinkId.InternalTestLinkId;
 /**
  * Resolves links to the Testlink instance.
  *
+ * The links are given by templates relative to the base URI with the placeholders <tt>{id}</tt> for the id of the
+ * testcase and <tt>{prefix}</tt> for the project prefix of an external id, e.g. <tt>SM</tt> for <tt>SM-1</tt>, see
+ * {@link TestLinkVersion} for the templates of the different versions of TestLink. Templates are resolved against the
+ * base URI once during construction, links are created by concatenation only and kept in a bounded concurrent cache,
+ * so repeated links to the same testcase are not created again. Hits take no lock, when the cache is full an arbitrary
+ * link is evicted for every new one.
+ *
  * @author Mirko Friedenhagen
  */
 class TestLinkUriResolver {
 
-    /** baseUri of the Testlink instance. */
-    private final URI baseUri;
+    /** Default number of cached links. */
+    static final int DEFAULT_CACHE_SIZE = 4096;
+
+    /** Placeholder for the id of the testcase. */
+    private static final String ID = "{id}";
+
+    /** Placeholder for the project prefix of an external id. */
+    private static final String PREFIX = "{prefix}";
+
+    /** {@link TestLinkUriResolver#ID} with percent encoded braces, which survive resolving unchanged. */
+    private static final String ESCAPED_ID = "%7Bid%7D";
+
+    /** {@link TestLinkUriResolver#PREFIX} with percent encoded braces, which survive resolving unchanged. */
+    private static final String ESCAPED_PREFIX = "%7Bprefix%7D";
+
+    /** Resolved template for {@link InternalTestLinkId}s. */
+    private final Template internalTemplate;
+
+    /** Resolved template for {@link ExternalTestLinkId}s. */
+    private final Template externalTemplate;
+
+    /** Maximum number of cached links, exceeded at most by the number of concurrent misses. */
+    private final int cacheSize;
+
+    /** Links by id. */
+    private final ConcurrentMap<TestLinkId<?>, URI> cache = new ConcurrentHashMap<TestLinkId<?>, URI>();
 
     /**
-     * The constructor normalizes the URI by adding a trailing slash when it is missing.
+     * The constructor normalizes the URI by adding a trailing slash when it is missing. Links are created with the
+     * templates of {@link TestLinkVersion#v1_8}.
      * 
      * @param baseUri
      *            without <tt>index.php</tt>, eg <tt>http://testlink.sourceforge.net/demo/</tt>.
      */
     TestLinkUriResolver(URI baseUri) {
-        final String asciiUri = baseUri.toASCIIString();
-        if (asciiUri.endsWith("/")) {
-            this.baseUri = baseUri;
-        } else {
-            this.baseUri = URI.create(asciiUri + "/");
-        }
+        this(baseUri, TestLinkVersion.v1_8.getInternalTemplate(), TestLinkVersion.v1_8.getExternalTemplate(),
+                DEFAULT_CACHE_SIZE);
     }
 
     /**
-     * http://testlink.sourceforge.net/demo/lib/testcases/tcPrint.php?testcase_id=2750.
-     * 
-     * @param internalTestLinkId
-     *            id of the testcase
-     * @return an URI pointing to the printview of the last version of the testcase description.
+     * The constructor normalizes the URI by adding a trailing slash when it is missing.
+     *
+     * @param baseUri
+     *            without <tt>index.php</tt>, eg <tt>http://testlink.sourceforge.net/demo/</tt>.
+     * @param internalTemplate
+     *            relative to the base URI for {@link InternalTestLinkId}s.
+     * @param externalTemplate
+     *            relative to the base URI for {@link ExternalTestLinkId}s.
+     * @param cacheSize
+     *            maximum number of cached links.
+     * @throws IllegalArgumentException
+     *             when a template is no valid URI.
      */
-    private URI fromTestLinkId(final InternalTestLinkId internalTestLinkId) {
-        return baseUri.resolve(String.format("lib/testcases/tcPrint.php?testcase_id=%s", internalTestLinkId.getId()));
+    TestLinkUriResolver(final URI baseUri, final String internalTemplate, final String externalTemplate,
+            final int cacheSize) {
+        final String asciiUri = baseUri.toASCIIString();
+        final URI normalizedUri = asciiUri.endsWith("/") ? baseUri : URI.create(asciiUri + "/");
+        this.internalTemplate = Template.compile(normalizedUri, internalTemplate);
+        this.externalTemplate = Template.compile(normalizedUri, externalTemplate);
+        this.cacheSize = cacheSize;
     }
 
     /**
-     * http://testlink.sourceforge.net/demo/lib/testcases/archiveData.php?targetTestCase=SM-1&amp;edit=testcase&amp;allowedit=0.
-     * 
-     * @param externalTestLinkId
-     *            id of the testcase
-     * @return an URI pointing to the printview of the last version of the testcase description.
+     * Creates a resolver with the templates of the given version, unless overridden.
+     *
+     * @param baseUri
+     *            without <tt>index.php</tt>, an {@link URI} created from an empty string creates no resolver.
+     * @param version
+     *            of the TestLink instance.
+     * @param internalTemplate
+     *            for {@link InternalTestLinkId}s, null for the one of the version.
+     * @param externalTemplate
+     *            for {@link ExternalTestLinkId}s, null for the one of the version.
+     * @return the resolver or null, when the base URI is empty.
      */
-    private URI fromTestLinkId(final ExternalTestLinkId externalTestLinkId) {
-        return baseUri
-                .resolve(String.format("lib/testcases/archiveData.php?targetTestCase=%s&edit=testcase&allowedit=0",
-                        externalTestLinkId.getId()));
+    static TestLinkUriResolver create(final URI baseUri, final TestLinkVersion version, final String internalTemplate,
+            final String externalTemplate) {
+        if (baseUri.equals(InTestLinkLogRunListener.NULL_URI)) {
+            return null;
+        }
+        return new TestLinkUriResolver(baseUri,
+                internalTemplate != null ? internalTemplate : version.getInternalTemplate(),
+                externalTemplate != null ? externalTemplate : version.getExternalTemplate(), DEFAULT_CACHE_SIZE);
     }
 
     /**
@@ -80,11 +137,131 @@ class TestLinkUriResolver {
      * @return an URI pointing to the last version of the testcase description.
      */
     URI fromTestLinkId(final TestLinkId<?> testLinkId) {
+        final URI cached = cache.get(testLinkId);
+        if (cached != null) {
+            return cached;
+        }
         // As this class is package protected we may safely assume there only two kinds of TestLinkIds.
+        final URI uri;
         if (testLinkId instanceof InternalTestLinkId) {
-            return fromTestLinkId((InternalTestLinkId) testLinkId);
+            uri = internalTemplate.expand(testLinkId.getValue(), "");
         } else {
-            return fromTestLinkId((ExternalTestLinkId) testLinkId);
+            final String id = ((ExternalTestLinkId) testLinkId).getId();
+            final int separator = id.lastIndexOf('-');
+            uri = externalTemplate.expand(id, separator < 0 ? "" : id.substring(0, separator));
+        }
+        if (cacheSize > 0) {
+            if (cache.size() >= cacheSize) {
+                evictOne();
+            }
+            cache.putIfAbsent(testLinkId, uri);
+        }
+        return uri;
+    }
+
+    /**
+     * Evicts an arbitrary link to make room for a new one.
+     */
+    private void evictOne() {
+        final Iterator<TestLinkId<?>> ids = cache.keySet().iterator();
+        if (ids.hasNext()) {
+            ids.next();
+            ids.remove();
+        }
+    }
+
+    /**
+     * @return the number of cached links.
+     */
+    int getCachedCount() {
+        return cache.size();
+    }
+
+    /**
+     * Template resolved against the base URI, split into the literal parts and the placeholders in between.
+     */
+    private static final class Template {
+
+        /** Literal parts, one more than placeholders. */
+        private final String[] literals;
+
+        /** Placeholders between the literal parts, true for {@link TestLinkUriResolver#ID}. */
+        private final boolean[] ids;
+
+        /**
+         * @param literals
+         *            literal parts, one more than placeholders.
+         * @param ids
+         *            placeholders between the literal parts, true for {@link TestLinkUriResolver#ID}.
+         */
+        private Template(final String[] literals, final boolean[] ids) {
+            this.literals = literals;
+            this.ids = ids;
+        }
+
+        /**
+         * Resolves the template against the base URI. Placeholders are not allowed in URIs, so they are escaped
+         * while resolving and split off afterwards.
+         *
+         * @param baseUri
+         *            with trailing slash.
+         * @param template
+         *            relative to the base URI.
+         * @return the compiled template.
+         * @throws IllegalArgumentException
+         *             when the template is no valid URI.
+         */
+        static Template compile(final URI baseUri, final String template) {
+            final String resolved = baseUri.resolve(template.replace(ID, ESCAPED_ID).replace(PREFIX, ESCAPED_PREFIX))
+                    .toASCIIString();
+            final List<String> literals = new ArrayList<String>();
+            final List<Boolean> ids = new ArrayList<Boolean>();
+            int start = 0;
+            while (true) {
+                final int id = resolved.indexOf(ESCAPED_ID, start);
+                final int prefix = resolved.indexOf(ESCAPED_PREFIX, start);
+                final int next = id < 0 ? prefix : prefix < 0 ? id : Math.min(id, prefix);
+                if (next < 0) {
+                    break;
+                }
+                literals.add(resolved.substring(start, next));
+                ids.add(next == id);
+                start = next + (next == id ? ESCAPED_ID : ESCAPED_PREFIX).length();
+            }
+            literals.add(resolved.substring(start));
+            final boolean[] placeholders = new boolean[ids.size()];
+            for (int i = 0; i < placeholders.length; i++) {
+                placeholders[i] = ids.get(i);
+            }
+            return new Template(literals.toArray(new String[literals.size()]), placeholders);
+        }
+
+        /**
+         * @param id
+         *            of the testcase.
+         * @param prefix
+         *            of the project.
+         * @return the link with the encoded values.
+         */
+        URI expand(final String id, final String prefix) {
+            final StringBuilder sb = new StringBuilder(literals[0]);
+            for (int i = 0; i < ids.length; i++) {
+                sb.append(encode(ids[i] ? id : prefix)).append(literals[i + 1]);
+            }
+            return URI.create(sb.toString());
+        }
+
+        /**
+         * @param value
+         *            to encode.
+         * @return the value encoded for an URI.
+         */
+        private static String encode(final String value) {
+            try {
+                return URLEncoder.encode(value, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException("UTF-8 is always supported", e);
+            }
         }
     }
 }
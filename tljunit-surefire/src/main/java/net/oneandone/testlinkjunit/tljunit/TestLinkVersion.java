@@ -0,0 +1,86 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+/**
+ * Versions of TestLink with their URI templates for linking to a testcase, see {@link TestLinkUriResolver}.
+ *
+ * @author Mirko Friedenhagen
+ */
+enum TestLinkVersion {
+
+    /** TestLink 1.8 and before, links to the printview and the archive. */
+    v1_8("lib/testcases/tcPrint.php?testcase_id={id}",
+            "lib/testcases/archiveData.php?targetTestCase={id}&edit=testcase&allowedit=0"),
+
+    /** TestLink 1.9 and later, links to the archive and by means of the deep link of <tt>linkto.php</tt>. */
+    v1_9("lib/testcases/archiveData.php?edit=testcase&id={id}",
+            "linkto.php?tprojectPrefix={prefix}&item=testcase&id={id}");
+
+    /** Template for {@link TestLinkId.InternalTestLinkId}s. */
+    private final String internalTemplate;
+
+    /** Template for {@link TestLinkId.ExternalTestLinkId}s. */
+    private final String externalTemplate;
+
+    /**
+     * @param internalTemplate
+     *            template for {@link TestLinkId.InternalTestLinkId}s.
+     * @param externalTemplate
+     *            template for {@link TestLinkId.ExternalTestLinkId}s.
+     */
+    private TestLinkVersion(final String internalTemplate, final String externalTemplate) {
+        this.internalTemplate = internalTemplate;
+        this.externalTemplate = externalTemplate;
+    }
+
+    /**
+     * @return the template for {@link TestLinkId.InternalTestLinkId}s.
+     */
+    String getInternalTemplate() {
+        return internalTemplate;
+    }
+
+    /**
+     * @return the template for {@link TestLinkId.ExternalTestLinkId}s.
+     */
+    String getExternalTemplate() {
+        return externalTemplate;
+    }
+
+    /**
+     * Returns the templates of a version of TestLink, e.g. <tt>1.8</tt>, <tt>1.9.20</tt> or <tt>2.0</tt>.
+     *
+     * @param version
+     *            of the TestLink instance, at least major and minor version.
+     * @return {@link #v1_8} up to version 1.8, {@link #v1_9} afterwards.
+     * @throws IllegalArgumentException
+     *             when the version is malformed.
+     */
+    static TestLinkVersion of(final String version) {
+        final String[] parts = version.trim().split("\\.");
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("Malformed version '" + version + "'");
+        }
+        try {
+            final int major = Integer.parseInt(parts[0]);
+            final int minor = Integer.parseInt(parts[1]);
+            return major < 1 || major == 1 && minor <= 8 ? v1_8 : v1_9;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed version '" + version + "'", e);
+        }
+    }
+}
@@ -15,14 +15,17 @@
  */
 package net.oneandone.testlinkjunit.tljunit;
 
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
 
-import org.apache.maven.shared.utils.io.IOUtil;
 import org.apache.maven.shared.utils.xml.Xpp3Dom;
 
+import org.junit.runner.Description;
 import org.junit.runner.Result;
 
 /**
@@ -91,37 +94,79 @@ import org.junit.runner.Result;
  * }
  * </pre>
  *
- * <p>Note that this implementation is threadsafe but holds all results in memory before flushing them
- * to the specified XML file.</p>
+ * <p>Note that this implementation is threadsafe but by default holds all results in memory before flushing them
+ * to the specified XML file. When setting the system property <tt>testlink.streaming</tt> to <tt>true</tt>
+ * every testcase is written as soon as it is finished, see {@link StreamingXmlTestCaseSink}.</p>
+ *
+ * <p>One instance may be added to several {@link org.junit.runner.JUnitCore}s running concurrently: the results are
+ * only closed when the last active run finishes, see {@link TestCaseSession}.</p>
  *
  * @author Mirko Friedenhagen
  */
 public class TestLinkXmlRunListener extends AbstractTestLinkRunListener<InTestLinkXmlRunListener> {
 
-    /** Stream to which the results will be printed. */
-    private final OutputStream out;
-
-    /** Needed for conversion of final result to bytes. */
-    private static final Charset UTF8 = Charset.forName("utf-8");
+    /** Counts the runs sharing this listener. */
+    private final TestCaseSession session;
 
     /**
-     * Instantiates {@link TestLinkXmlRunListener#TestLinkXmlRunListener(OutputStream, String)} with parameters taken
-     * from System properties.
+     * Instantiates {@link TestLinkXmlRunListener#TestLinkXmlRunListener(OutputStream, String, boolean)} with
+     * parameters taken from System properties.
      * 
      * <dl>
      * <dt><code>testlink.results</code></dt>
-     * <dd>Results are written to this filename (<tt>target/testlink.xml</tt> by default). Intermediate directories must be
-     * created beforehand.</dd>
+     * <dd>Results are written to this filename (<tt>target/testlink.xml</tt> by default, <tt>target/testlink.bin</tt>
+     * when <tt>testlink.binary</tt> is <tt>true</tt>). Intermediate directories must be created beforehand. When the filename ends with <tt>.gz</tt>, the results are compressed with gzip.</dd>
+     * <dt><code>testlink.results.bufferSize</code></dt>
+     * <dd>Size of the buffer used when writing the results (<tt>65536</tt> by default).</dd>
      * <dt><code>testlink.tester</code></dt>
      * <dd>To be used as name of the tester. (falls back to system property <tt>user.name</tt> by default).</dd>
+     * <dt><code>testlink.streaming</code></dt>
+     * <dd>When <tt>true</tt>, every testcase is written as soon as it is finished (<tt>false</tt> by default).</dd>
+     * <dt><code>testlink.binary</code></dt>
+     * <dd>When <tt>true</tt>, compact binary records are written instead of XML (<tt>false</tt> by default). These
+     * are converted to XML after the test run, see {@link TestLinkBinaryResults}.</dd>
+     * <dt><code>testlink.baseline</code></dt>
+     * <dd>When set, only testcases whose state changed since the results in this XML file, or which are new, are
+     * written to <tt>testlink.results</tt> (not set by default). A missing file is treated as an empty baseline.
+     * Notes of failures without message may reference the trace of an earlier failure of the same signature, which is
+     * missing from <tt>testlink.results</tt> when that testcase was already failing in the baseline; it is still
+     * written to <tt>testlink.baseline.results</tt>.</dd>
+     * <dt><code>testlink.baseline.results</code></dt>
+     * <dd>When <tt>testlink.baseline</tt> is set, all results are written to this XML file to be used as the next
+     * baseline, which may be <tt>testlink.baseline</tt> itself (<tt>target/testlink-baseline.xml</tt> by default).
+     * </dd>
+     * <dt><code>testlink.aggregate</code></dt>
+     * <dd>When set, repeated invocations of a testcase, e.g. by parameterized tests or reruns, are merged into one
+     * testcase by the given {@link MergeRule}: <tt>worst</tt>, <tt>last</tt> or <tt>rerun</tt> (not set by default).
+     * </dd>
+     * <dt><code>testlink.aggregate.maxNotes</code></dt>
+     * <dd>Maximum length of merged notes (<tt>4096</tt> by default).</dd>
+     * <dt><code>testlink.journal</code></dt>
+     * <dd>When <tt>true</tt>, every testcase is appended to a journal <tt>${testlink.results}.journal</tt> as well,
+     * so results survive a crashing JVM (<tt>false</tt> by default). A left over journal is recovered to
+     * <tt>${testlink.results}.recovered</tt>.</dd>
+     * <dt><code>testlink.journal.syncInterval</code></dt>
+     * <dd>Milliseconds between two syncs of the journal to disk (<tt>1000</tt> by default).</dd>
+     * <dt><code>testlink.trace.maxFrames</code></dt>
+     * <dd>Maximum number of frames of the test's own code in the notes of failures without message, frames of JUnit,
+     * reflection and surefire are collapsed (<tt>20</tt> by default). Only the first failure with the same root cause
+     * carries the trace, see {@link FailureTraces}.</dd>
+     * <dt><code>testlink.checkpointInterval</code></dt>
+     * <dd>Minimal milliseconds between two flushes of the results while other runs are still active
+     * (<tt>10000</tt> by default).</dd>
      * </dl>
      * 
      * @throws FileNotFoundException
      *             when the file could not be written, e.g. the parent directory does not exist.
+     * @throws IllegalStateException
+     *             when the results could not be prepared otherwise, e.g. the baseline could not be read.
      */
     public TestLinkXmlRunListener() throws FileNotFoundException {
-        this(new FileOutputStream(System.getProperty("testlink.results",
-                "target/testlink.xml")), System.getProperty("testlink.tester", System.getProperty("user.name")));
+        this(new InTestLinkXmlRunListener(System.getProperty("testlink.tester", System.getProperty("user.name")),
+                createSink(System.getProperty("testlink.results", Boolean.getBoolean("testlink.binary")
+                        ? TestLinkBinaryResults.DEFAULT_RESULTS : "target/testlink.xml")),
+                new FailureTraces(Integer.getInteger("testlink.trace.maxFrames", FailureTraces.DEFAULT_MAX_FRAMES))),
+                Long.getLong("testlink.checkpointInterval", TestCaseSession.DEFAULT_CHECKPOINT_INTERVAL));
     }
 
     /**
@@ -136,22 +181,154 @@ public class TestLinkXmlRunListener extends AbstractTestLinkRunListener<InTestLi
      *            name of the tester.
      */
     public TestLinkXmlRunListener(final OutputStream out, final String tester) {
-        super(new InTestLinkXmlRunListener(tester));
-        this.out = out;
+        this(tester, new DomTestCaseSink(out));
+    }
+
+    /**
+     * Writes results to <tt>out</tt> using <tt>tester</tt> as name of the tester.
+     *
+     * When <tt>streaming</tt> is true, every testcase is written as soon as it is finished, otherwise all results will
+     * be written bufferedly in {@link TestLinkXmlRunListener#testRunFinished(org.junit.runner.Result)}. <tt>out</tt>
+     * will be closed there.
+     *
+     * @param out
+     *            the xml data is written to.
+     * @param tester
+     *            name of the tester.
+     * @param streaming
+     *            whether to write every testcase as soon as it is finished.
+     */
+    public TestLinkXmlRunListener(final OutputStream out, final String tester, final boolean streaming) {
+        this(tester, streaming ? new StreamingXmlTestCaseSink(out) : new DomTestCaseSink(out));
+    }
+
+    /**
+     * Hands all completed testcases to <tt>sink</tt>.
+     *
+     * @param tester
+     *            name of the tester.
+     * @param sink
+     *            receives all completed testcases and is closed in
+     *            {@link TestLinkXmlRunListener#testRunFinished(org.junit.runner.Result)}.
+     */
+    TestLinkXmlRunListener(final String tester, final TestCaseSink sink) {
+        this(new InTestLinkXmlRunListener(tester, sink), TestCaseSession.DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Injects the listener for testcases with a {@link TestLink} annotation.
+     *
+     * @param inTestLinkListener
+     *            hands all completed testcases to its sink, which is closed in
+     *            {@link TestLinkXmlRunListener#testRunFinished(org.junit.runner.Result)} of the last active run.
+     * @param checkpointInterval
+     *            minimal milliseconds between two flushes of the sink while other runs are still active.
+     */
+    TestLinkXmlRunListener(final InTestLinkXmlRunListener inTestLinkListener, final long checkpointInterval) {
+        super(inTestLinkListener);
+        this.session = new TestCaseSession(inTestLinkListener.getSink(), checkpointInterval);
+    }
+
+    /**
+     * Creates the sink configured by the System properties described in
+     * {@link TestLinkXmlRunListener#TestLinkXmlRunListener()}.
+     *
+     * @param fileName
+     *            results are written to this file.
+     * @return the sink.
+     * @throws FileNotFoundException
+     *             when the file or the journal could not be written.
+     */
+    private static TestCaseSink createSink(final String fileName) throws FileNotFoundException {
+        try {
+            return createSinks(fileName);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not prepare the results " + fileName, e);
+        }
+    }
+
+    /**
+     * Creates the chain of sinks configured by System properties.
+     *
+     * @param fileName
+     *            of the results.
+     * @return the outermost sink.
+     * @throws IOException
+     *             when the results could not be written or the baseline could not be read.
+     */
+    private static TestCaseSink createSinks(final String fileName) throws IOException {
+        final OutputStream out = Compression.newOutputStream(fileName);
+        TestCaseSink sink;
+        if (Boolean.getBoolean("testlink.binary")) {
+            sink = new BinaryTestCaseSink(out);
+        } else if (Boolean.getBoolean("testlink.streaming")) {
+            sink = new StreamingXmlTestCaseSink(out);
+        } else {
+            sink = new DomTestCaseSink(out);
+        }
+        final String baseline = System.getProperty("testlink.baseline");
+        if (baseline != null) {
+            final Map<TestLinkId<?>, TestState> states = readBaseline(baseline);
+            sink = new DeltaTestCaseSink(states, sink, new StreamingXmlTestCaseSink(Compression.newOutputStream(
+                    System.getProperty("testlink.baseline.results", "target/testlink-baseline.xml"))));
+        }
+        final String aggregate = System.getProperty("testlink.aggregate");
+        if (aggregate != null) {
+            sink = new AggregatingTestCaseSink(MergeRule.valueOf(aggregate),
+                    Integer.getInteger("testlink.aggregate.maxNotes", AggregatingTestCaseSink.DEFAULT_MAX_NOTES_LENGTH),
+                    sink);
+        }
+        if (Boolean.getBoolean("testlink.journal")) {
+            return new JournalTestCaseSink(new File(fileName + ".journal"), new File(fileName + ".recovered"),
+                    Long.getLong("testlink.journal.syncInterval", JournalTestCaseSink.DEFAULT_SYNC_INTERVAL), sink);
+        }
+        return sink;
+    }
+
+    /**
+     * Reads the states of the baseline.
+     *
+     * @param fileName
+     *            of the previous results.
+     * @return states by id, empty when the file does not exist.
+     * @throws IOException
+     *             when the file could not be read or parsed.
+     */
+    private static Map<TestLinkId<?>, TestState> readBaseline(final String fileName) throws IOException {
+        if (!new File(fileName).exists()) {
+            return Collections.emptyMap();
+        }
+        final InputStream in = Compression.newInputStream(fileName);
+        try {
+            return DeltaTestCaseSink.readBaseline(in);
+        } finally {
+            in.close();
+        }
     }
 
     /**
      * {@inheritDoc}
-     * Will write the result to the outputstream and close the stream afterwards.
+     * Registers another run sharing this listener.
+     */
+    @Override
+    public void testRunStarted(Description description) throws Exception {
+        super.testRunStarted(description);
+        session.runStarted();
+    }
+
+    /**
+     * {@inheritDoc}
+     * When this is the last active run, will write the outstanding results to the outputstream, close the stream
+     * afterwards and log a summary of the failures, otherwise just flushes the results written so far from time to
+     * time.
      */
     @Override
     public void testRunFinished(Result result) throws Exception {
         super.testRunFinished(result);
-        final String valueOf = String.valueOf(getResults());
-        try {
-            IOUtil.copy(valueOf.getBytes(UTF8), out);
-        } finally {
-            out.close();
+        if (session.runFinished()) {
+            getInTestLinkListener().logFailureSummary();
         }
     }
 
@@ -159,8 +336,14 @@ public class TestLinkXmlRunListener extends AbstractTestLinkRunListener<InTestLi
      * Returns the results of the {@link InTestLinkXmlRunListener} for unit testing.
      * 
      * @return the results
+     * @throws IllegalStateException
+     *             when results are not held in memory.
      */
     Xpp3Dom getResults() {
-        return getInTestLinkListener().getResults();
+        final TestCaseSink sink = getInTestLinkListener().getSink();
+        if (!(sink instanceof DomTestCaseSink)) {
+            throw new IllegalStateException("Results are not held in memory by " + sink.getClass().getSimpleName());
+        }
+        return ((DomTestCaseSink) sink).getResults();
     }
 }
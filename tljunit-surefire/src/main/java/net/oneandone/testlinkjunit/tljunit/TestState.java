@@ -36,7 +36,13 @@ enum TestState {
     private final String description;
 
     /** One letter state shown in XML output. */
-    private final char state;
+    private final String state;
+
+    /** Template of the notes following the test header, see {@link TestState#notes(String)}. */
+    private final String notesSuffix;
+
+    /** Template of the notes between test header and reason, see {@link TestState#notes(String, String)}. */
+    private final String notesBecause;
 
     /**
      * Constructor.
@@ -46,7 +52,9 @@ enum TestState {
      */
     TestState(final String description, final char state) {
         this.description = description;
-        this.state = state;
+        this.state = String.valueOf(state);
+        this.notesSuffix = "' " + description + ".";
+        this.notesBecause = "' " + description + " because '";
     }
 
     /**
@@ -60,6 +68,53 @@ enum TestState {
      * @return the one letter state.
      */
     String getState() {
-        return String.valueOf(state);
+        return state;
+    }
+
+    /**
+     * Creates the notes of a testcase without reason, e.g. <tt>'testPassed(com.example.Test)' PASSED.</tt>, without
+     * the overhead of {@link String#format(String, Object...)}.
+     *
+     * @param testHeader
+     *            display name of the testcase.
+     * @return the notes.
+     */
+    String notes(final String testHeader) {
+        return new StringBuilder(testHeader.length() + notesSuffix.length() + 1).append('\'').append(testHeader)
+                .append(notesSuffix).toString();
+    }
+
+    /**
+     * Creates the notes of a testcase with reason, e.g. <tt>'testFailed(com.example.Test)' FAILED because 'Oops'.</tt>,
+     * without the overhead of {@link String#format(String, Object...)}.
+     *
+     * @param testHeader
+     *            display name of the testcase.
+     * @param reason
+     *            message or trace of the failure.
+     * @return the notes.
+     */
+    String notes(final String testHeader, final String reason) {
+        final String because = String.valueOf(reason);
+        return new StringBuilder(testHeader.length() + notesBecause.length() + because.length() + 3).append('\'')
+                .append(testHeader).append(notesBecause).append(because).append("'.").toString();
+    }
+
+    /**
+     * Looks up the state shown in XML output.
+     *
+     * @param state
+     *            one letter state in XML output.
+     * @return the state.
+     * @throws IllegalArgumentException
+     *             when <tt>state</tt> is unknown.
+     */
+    static TestState forState(final String state) {
+        for (final TestState testState : values()) {
+            if (testState.getState().equals(state)) {
+                return testState;
+            }
+        }
+        throw new IllegalArgumentException("Unknown state '" + state + "'");
     }
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Threadsafe formatter of the timestamps written to the results, e.g. <tt>2013-01-01 12:00:00</tt>, in the default
+ * timezone at the time of creation.
+ *
+ * As timestamps have a resolution of seconds and results are mostly written in chronological order, the text of the
+ * last formatted second is memoized, so only the first testcase of every second is actually formatted.
+ *
+ * @author Mirko Friedenhagen
+ */
+final class TimestampFormat {
+
+    /** Pattern of TestLink timestamps. */
+    static final String TESTLINK_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    /** Milliseconds per second. */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /** Not threadsafe, guarded by itself. */
+    private final DateFormat format;
+
+    /** Last formatted second, replaced as a whole. */
+    private volatile Memo last = new Memo(Long.MIN_VALUE, null);
+
+    /**
+     * Formats TestLink timestamps.
+     */
+    TimestampFormat() {
+        this(TESTLINK_PATTERN);
+    }
+
+    /**
+     * @param pattern
+     *            of {@link SimpleDateFormat}, must not have a resolution below seconds.
+     */
+    TimestampFormat(final String pattern) {
+        this.format = new SimpleDateFormat(pattern, Locale.US);
+    }
+
+    /**
+     * @param timestamp
+     *            in milliseconds since the epoch.
+     * @return the formatted timestamp.
+     */
+    String format(final long timestamp) {
+        final long second = floorDiv(timestamp, MILLIS_PER_SECOND);
+        final Memo memo = last;
+        if (memo.second == second) {
+            return memo.text;
+        }
+        final String text;
+        synchronized (format) {
+            text = format.format(new Date(second * MILLIS_PER_SECOND));
+        }
+        last = new Memo(second, text);
+        return text;
+    }
+
+    /**
+     * @param dividend
+     *            to divide.
+     * @param divisor
+     *            positive divisor.
+     * @return the largest value less than or equal to the quotient, as {@link Math}<tt>.floorDiv</tt> is not
+     *         available in Java 6.
+     */
+    private static long floorDiv(final long dividend, final long divisor) {
+        final long quotient = dividend / divisor;
+        return dividend % divisor < 0 ? quotient - 1 : quotient;
+    }
+
+    /**
+     * Immutable pair of a second and its text.
+     */
+    private static final class Memo {
+
+        /** Seconds since the epoch. */
+        private final long second;
+
+        /** Formatted second. */
+        private final String text;
+
+        /**
+         * @param second
+         *            since the epoch.
+         * @param text
+         *            formatted second.
+         */
+        Memo(final long second, final String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
@@ -31,7 +31,8 @@
  * <h3>Running tests with the maven-surefire-plugin</h3>
  * <p>
  * You have to configure the surefire plugin to use the additional
- * {@link net.oneandone.testlinkjunit.tljunit.TestLinkXmlRunListener} or 
+ * {@link net.oneandone.testlinkjunit.tljunit.TestLinkXmlRunListener},
+ * {@link net.oneandone.testlinkjunit.tljunit.TestLinkJsonRunListener} or
  * {@link net.oneandone.testlinkjunit.tljunit.TestLinkLoggingRunListener}.
  * See documentation in these classes.</p>
  *
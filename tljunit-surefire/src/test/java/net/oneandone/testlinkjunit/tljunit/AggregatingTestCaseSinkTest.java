@@ -0,0 +1,118 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.maven.shared.utils.xml.Xpp3Dom;
+import org.junit.Test;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class AggregatingTestCaseSinkTest {
+
+    private final DomTestCaseSink dom = new DomTestCaseSink(new ByteArrayOutputStream());
+
+    @Test
+    public void testWorst() throws IOException {
+        final Xpp3Dom results = aggregate(MergeRule.worst, TestState.passed, TestState.failed, TestState.blocked);
+        assertEquals(2, results.getChildCount());
+        assertEquals("f", results.getChild(0).getChild("result").getValue());
+        assertEquals("T-1 0\nT-1 1\nT-1 2", results.getChild(0).getChild("notes").getValue());
+        assertEquals("T-2", results.getChild(1).getAttribute("external_id"));
+        assertEquals("p", results.getChild(1).getChild("result").getValue());
+    }
+
+    @Test
+    public void testRankOf() {
+        assertEquals(2, MergeRule.rankOf("f"));
+        assertEquals(1, MergeRule.rankOf("b"));
+        assertEquals(0, MergeRule.rankOf("p"));
+        assertEquals(-1, MergeRule.rankOf("x"));
+        assertEquals(-1, MergeRule.rankOf(null));
+    }
+
+    @Test
+    public void testLast() throws IOException {
+        final Xpp3Dom results = aggregate(MergeRule.last, TestState.failed, TestState.blocked);
+        assertEquals("b", results.getChild(0).getChild("result").getValue());
+    }
+
+    @Test
+    public void testRerun() throws IOException {
+        assertEquals("p", aggregate(MergeRule.rerun, TestState.failed, TestState.passed, TestState.failed)
+                .getChild(0).getChild("result").getValue());
+        assertEquals("f", aggregate(MergeRule.rerun, TestState.blocked, TestState.failed)
+                .getChild(0).getChild("result").getValue());
+    }
+
+    @Test
+    public void testMergeNotes() {
+        assertEquals("a", MergeRule.mergeNotes(null, "a", 10));
+        assertEquals("a", MergeRule.mergeNotes("a", null, 10));
+        assertEquals("a\nb", MergeRule.mergeNotes("a", "b", 10));
+        final String cut = MergeRule.mergeNotes("0123456789", "0123456789", 16);
+        assertEquals("0123456789 [...]", cut);
+        assertEquals(cut, MergeRule.mergeNotes(cut, "more", 16));
+    }
+
+    @Test
+    public void testConcurrentInvocations() throws Exception {
+        final AggregatingTestCaseSink sink = new AggregatingTestCaseSink(MergeRule.worst, 64, dom);
+        final Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final TestState state = t == 3 ? TestState.failed : TestState.passed;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        sink.add(new TestCaseResult(new TestLinkId.InternalTestLinkId((long) i % 10), "goofy", i,
+                                state, "notes"));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        sink.close();
+        final Xpp3Dom results = dom.getResults();
+        assertEquals(10, results.getChildCount());
+        for (final Xpp3Dom testCase : results.getChildren()) {
+            assertEquals("f", testCase.getChild("result").getValue());
+            assertTrue(testCase.getChild("notes").getValue().length() <= 64);
+        }
+    }
+
+    private Xpp3Dom aggregate(final MergeRule rule, final TestState... states) throws IOException {
+        final DomTestCaseSink target = new DomTestCaseSink(new ByteArrayOutputStream());
+        final AggregatingTestCaseSink sink = new AggregatingTestCaseSink(rule,
+                AggregatingTestCaseSink.DEFAULT_MAX_NOTES_LENGTH, target);
+        for (int i = 0; i < states.length; i++) {
+            sink.add(new TestCaseResult(new TestLinkId.ExternalTestLinkId("T-1"), "goofy", i, states[i], "T-1 " + i));
+            sink.add(new TestCaseResult(new TestLinkId.ExternalTestLinkId("T-2"), "goofy", i, TestState.passed,
+                    "T-2 " + i));
+        }
+        sink.close();
+        return target.getResults();
+    }
+}
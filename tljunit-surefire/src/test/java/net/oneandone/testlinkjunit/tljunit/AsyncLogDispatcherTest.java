@@ -0,0 +1,191 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class AsyncLogDispatcherTest {
+
+    private final RecordingLogger recorder = new RecordingLogger();
+
+    @Test
+    public void testDrainLogsAllEventsInOrder() throws InterruptedException {
+        final AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(recorder.logger(), 4, OverflowPolicy.block);
+        final List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            dispatcher.dispatch(LogEvent.of(LogEvent.Level.info, "event {}", i));
+            expected.add("info event {} [" + i + "]");
+        }
+        dispatcher.drain();
+        assertEquals(expected, recorder.getCalls());
+    }
+
+    @Test
+    public void testDropAllWhenFull() throws InterruptedException {
+        final AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(recorder.logger(), 2, OverflowPolicy.dropAll);
+        recorder.blockFirstCall();
+        dispatcher.dispatch(LogEvent.of(LogEvent.Level.info, "taken"));
+        recorder.awaitFirstCall();
+        dispatcher.dispatch(LogEvent.of(LogEvent.Level.info, "queued"));
+        dispatcher.dispatch(LogEvent.of(LogEvent.Level.error, "queued"));
+        dispatcher.dispatch(LogEvent.of(LogEvent.Level.info, "dropped"));
+        dispatcher.dispatch(LogEvent.of(LogEvent.Level.error, "dropped"));
+        assertEquals(2, dispatcher.getDropped());
+        recorder.release();
+        dispatcher.drain();
+        assertEquals("[info taken [], info queued [], error queued [], "
+                + "warn Dropped {} events as more than {} were waiting (policy {}). [2, 2, dropAll]]",
+                recorder.getCalls().toString());
+        assertEquals(0, dispatcher.getDropped());
+    }
+
+    @Test
+    public void testDropPassedWhenFull() throws InterruptedException {
+        final AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(recorder.logger(), 1, OverflowPolicy.dropPassed);
+        recorder.blockFirstCall();
+        dispatcher.dispatch(LogEvent.of(LogEvent.Level.info, "taken"));
+        recorder.awaitFirstCall();
+        dispatcher.dispatch(LogEvent.of(LogEvent.Level.info, "queued"));
+        dispatcher.dispatch(LogEvent.of(LogEvent.Level.info, "dropped"));
+        final Thread failing = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.dispatch(LogEvent.of(LogEvent.Level.error, "waiting"));
+            }
+        });
+        failing.start();
+        failing.join(100);
+        assertTrue("error events must wait for room", failing.isAlive());
+        recorder.release();
+        failing.join();
+        dispatcher.drain();
+        assertEquals("[info taken [], info queued [], error waiting [], "
+                + "warn Dropped {} events as more than {} were waiting (policy {}). [1, 1, dropPassed]]",
+                recorder.getCalls().toString());
+    }
+
+    @Test
+    public void testFailingLoggerDoesNotStopDispatcher() throws InterruptedException {
+        final AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(recorder.logger(), 4, OverflowPolicy.block);
+        recorder.failNextCall();
+        dispatcher.dispatch(LogEvent.of(LogEvent.Level.warn, "failing"));
+        dispatcher.dispatch(LogEvent.of(LogEvent.Level.warn, "logged"));
+        dispatcher.drain();
+        assertEquals("[warn logged [], warn Logging failed for {} events. [1]]", recorder.getCalls().toString());
+    }
+
+    @Test
+    public void testLoggerErrorDoesNotStopDispatcher() throws InterruptedException {
+        final AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(recorder.logger(), 4, OverflowPolicy.block);
+        recorder.failNextCall(new NoClassDefFoundError("missing appender"));
+        dispatcher.dispatch(LogEvent.of(LogEvent.Level.warn, "failing"));
+        dispatcher.dispatch(LogEvent.of(LogEvent.Level.warn, "logged"));
+        dispatcher.drain();
+        assertEquals("[warn logged [], warn Logging failed for {} events. [1]]", recorder.getCalls().toString());
+    }
+
+    /**
+     * Records all calls of a {@link Logger} as <tt>method format [arguments]</tt>.
+     */
+    static class RecordingLogger implements InvocationHandler {
+
+        private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        private volatile boolean blocking;
+
+        private volatile Throwable failing;
+
+        Logger logger() {
+            return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] {Logger.class}, this);
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getName().startsWith("is")) {
+                return true;
+            }
+            if (method.getReturnType() != void.class) {
+                return method.getName().equals("getName") ? "recording" : null;
+            }
+            if (blocking) {
+                blocking = false;
+                entered.countDown();
+                released.await();
+            }
+            final Throwable failure = failing;
+            if (failure != null) {
+                failing = null;
+                throw failure;
+            }
+            final List<Object> arguments = new ArrayList<Object>();
+            for (int i = 1; i < args.length; i++) {
+                if (args[i] instanceof Object[]) {
+                    arguments.addAll(Arrays.asList((Object[]) args[i]));
+                } else {
+                    arguments.add(args[i]);
+                }
+            }
+            calls.add(method.getName() + " " + args[0] + " " + arguments);
+            return null;
+        }
+
+        void blockFirstCall() {
+            blocking = true;
+        }
+
+        void awaitFirstCall() throws InterruptedException {
+            entered.await();
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        void failNextCall() {
+            failNextCall(new IllegalStateException("failing appender"));
+        }
+
+        void failNextCall(final Throwable failure) {
+            failing = failure;
+        }
+
+        List<String> getCalls() {
+            synchronized (calls) {
+                return new ArrayList<String>(calls);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.maven.shared.utils.io.IOUtil;
+import org.junit.Test;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class CompressionTest {
+
+    private static final String CONTENT = "<results/>";
+
+    @Test
+    public void testForFileName() {
+        assertEquals(Compression.gzip, Compression.forFileName("target/testlink.xml.gz"));
+        assertEquals(Compression.none, Compression.forFileName("target/testlink.xml"));
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        final File file = new File("target/compression-test.xml.gz");
+        write(file);
+        assertEquals(CONTENT, read(new GZIPInputStream(new FileInputStream(file))));
+        assertEquals(CONTENT, read(Compression.newInputStream(file.getPath())));
+    }
+
+    @Test
+    public void testPlain() throws IOException {
+        final File file = new File("target/compression-test.xml");
+        write(file);
+        assertEquals(CONTENT.length(), file.length());
+        assertEquals(CONTENT, read(Compression.newInputStream(file.getPath())));
+    }
+
+    private void write(final File file) throws IOException {
+        final OutputStream out = Compression.newOutputStream(file.getPath());
+        try {
+            out.write(CONTENT.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private String read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            IOUtil.copy(in, out);
+        } finally {
+            in.close();
+        }
+        return out.toString("UTF-8");
+    }
+}
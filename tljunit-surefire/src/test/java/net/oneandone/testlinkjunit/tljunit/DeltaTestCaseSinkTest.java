@@ -0,0 +1,86 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.maven.shared.utils.xml.Xpp3Dom;
+import org.junit.Test;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class DeltaTestCaseSinkTest {
+
+    private final DomTestCaseSink delta = new DomTestCaseSink(new ByteArrayOutputStream());
+
+    private final DomTestCaseSink full = new DomTestCaseSink(new ByteArrayOutputStream());
+
+    @Test
+    public void testWritesChangedAndNewOnly() throws IOException {
+        final DeltaTestCaseSink sink = new DeltaTestCaseSink(readBaseline(), delta, full);
+        sink.add(createTestCase(new TestLinkId.ExternalTestLinkId("T-1"), TestState.passed));
+        sink.add(createTestCase(new TestLinkId.ExternalTestLinkId("T-2"), TestState.passed));
+        sink.add(createTestCase(new TestLinkId.InternalTestLinkId(3L), TestState.blocked));
+        sink.add(createTestCase(new TestLinkId.InternalTestLinkId(4L), TestState.failed));
+        sink.flush();
+        sink.close();
+        final Xpp3Dom changed = delta.getResults();
+        assertEquals(2, changed.getChildCount());
+        assertEquals("T-2", changed.getChild(0).getAttribute("external_id"));
+        assertEquals("4", changed.getChild(1).getAttribute("id"));
+        assertEquals(4, full.getResults().getChildCount());
+    }
+
+    @Test
+    public void testReadBaseline() throws IOException {
+        final Map<TestLinkId<?>, TestState> states = readBaseline();
+        assertEquals(3, states.size());
+        assertEquals(TestState.passed, states.get(new TestLinkId.ExternalTestLinkId("T-1")));
+        assertEquals(TestState.failed, states.get(new TestLinkId.ExternalTestLinkId("T-2")));
+        assertEquals(TestState.blocked, states.get(new TestLinkId.InternalTestLinkId(3L)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadBaselineWithoutId() throws IOException {
+        DeltaTestCaseSink.readBaseline(new ByteArrayInputStream(
+                "<results><testcase><result>p</result></testcase></results>".getBytes("UTF-8")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadBaselineWithUnknownState() throws IOException {
+        DeltaTestCaseSink.readBaseline(new ByteArrayInputStream(
+                "<results><testcase id=\"1\"><result>x</result></testcase></results>".getBytes("UTF-8")));
+    }
+
+    private Map<TestLinkId<?>, TestState> readBaseline() throws IOException {
+        final DomTestCaseSink previous = new DomTestCaseSink(new ByteArrayOutputStream());
+        previous.add(createTestCase(new TestLinkId.ExternalTestLinkId("T-1"), TestState.passed));
+        previous.add(createTestCase(new TestLinkId.ExternalTestLinkId("T-2"), TestState.failed));
+        previous.add(createTestCase(new TestLinkId.InternalTestLinkId(3L), TestState.blocked));
+        return DeltaTestCaseSink.readBaseline(
+                new ByteArrayInputStream(previous.getResults().toString().getBytes("UTF-8")));
+    }
+
+    private TestCaseResult createTestCase(final TestLinkId<?> id, final TestState state) {
+        return new TestCaseResult(id, "goofy", 0L, state, "notes of " + id);
+    }
+}
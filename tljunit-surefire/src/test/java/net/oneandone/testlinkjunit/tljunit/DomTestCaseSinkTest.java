@@ -0,0 +1,69 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class DomTestCaseSinkTest {
+
+    private static final String LS = System.getProperty("line.separator");
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private final DomTestCaseSink sink = new DomTestCaseSink(out);
+
+    @Test
+    public void testCloseWritesHeaderAndLayout() throws IOException {
+        final String timestamp = new TimestampFormat().format(0L);
+        sink.add(new TestCaseResult(new TestLinkId.ExternalTestLinkId("T-1"), "goofy", 0L, TestState.failed,
+                "'foo' FAILED because 'a < b'.", 1500000000L));
+        sink.add(new TestCaseResult(new TestLinkId.InternalTestLinkId(2L), "goofy", 0L, TestState.blocked, null));
+        sink.close();
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + LS
+                + "<results>" + LS
+                + "  <testcase external_id=\"T-1\">" + LS
+                + "    <tester>goofy</tester>" + LS
+                + "    <timestamp>" + timestamp + "</timestamp>" + LS
+                + "    <result>f</result>" + LS
+                + "    <notes><![CDATA['foo' FAILED because 'a < b'.]]></notes>" + LS
+                + "    <execution_duration>0.03</execution_duration>" + LS
+                + "  </testcase>" + LS
+                + "  <testcase id=\"2\">" + LS
+                + "    <tester>goofy</tester>" + LS
+                + "    <timestamp>" + timestamp + "</timestamp>" + LS
+                + "    <result>b</result>" + LS
+                + "    <notes/>" + LS
+                + "  </testcase>" + LS
+                + "</results>", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testCloseWritesLikeDom() throws IOException {
+        sink.add(new TestCaseResult(new TestLinkId.ExternalTestLinkId("T-1"), "goofy", 0L, TestState.passed,
+                "'foo' PASSED."));
+        final String dom = sink.getResults().toString();
+        sink.close();
+        assertEquals(dom, out.toString("UTF-8"));
+    }
+}
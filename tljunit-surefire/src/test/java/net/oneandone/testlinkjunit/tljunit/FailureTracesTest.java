@@ -0,0 +1,108 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class FailureTracesTest {
+
+    private final FailureTraces traces = new FailureTraces(2);
+
+    @Test
+    public void testRender() {
+        final IllegalStateException thrown = createThrowable("boom", null);
+        assertEquals("java.lang.IllegalStateException: boom"
+                + "\n\tat com.example.Dao.connect(Dao.java:1)"
+                + "\n\tat com.example.Dao.query(Dao.java:2)"
+                + "\n\t... 4 more", traces.render(thrown));
+    }
+
+    @Test
+    public void testRenderCollapsesFrameworkFrames() {
+        final RuntimeException thrown = new RuntimeException("outer");
+        thrown.setStackTrace(new StackTraceElement[] {
+            frame("com.example.FooTest", "test"),
+            frame("sun.reflect.NativeMethodAccessorImpl", "invoke0"),
+            frame("java.lang.reflect.Method", "invoke"),
+            frame("org.junit.runners.model.FrameworkMethod$1", "runReflectiveCall") });
+        assertEquals("java.lang.RuntimeException: outer"
+                + "\n\tat com.example.FooTest.test(FooTest.java:1)"
+                + "\n\t... 3 framework frames", traces.render(thrown));
+    }
+
+    @Test
+    public void testRenderCauses() {
+        final IllegalStateException root = createThrowable("root", null);
+        final IllegalStateException thrown = createThrowable("outer", root);
+        root.initCause(thrown);
+        final String rendered = traces.render(thrown);
+        assertTrue(rendered, rendered.contains("\nCaused by: java.lang.IllegalStateException: root"));
+        assertEquals(rendered.indexOf("Caused by"), rendered.lastIndexOf("Caused by"));
+    }
+
+    @Test
+    public void testDescribeInternsSignatures() {
+        final String first = traces.describe("a(Foo)", createThrowable("boom", null));
+        assertTrue(first, first.startsWith("java.lang.IllegalStateException: boom\n\tat"));
+        assertEquals("java.lang.IllegalStateException: boom, same trace as 'a(Foo)'",
+                traces.describe("b(Foo)", createThrowable("bang", null)));
+        traces.describe("c(Foo)", new NullPointerException());
+        final List<String> summary = traces.summary();
+        assertEquals(2, summary.size());
+        assertEquals("2 x java.lang.IllegalStateException at com.example.Dao.connect(Dao.java:1), first in 'a(Foo)'",
+                summary.get(0));
+        assertTrue(summary.get(1), summary.get(1).startsWith("1 x java.lang.NullPointerException"));
+    }
+
+    @Test
+    public void testSignatureOfUsesRootCause() {
+        final RuntimeException wrapper = new RuntimeException(createThrowable("root", null));
+        assertEquals("java.lang.IllegalStateException at com.example.Dao.connect(Dao.java:1)",
+                FailureTraces.signatureOf(wrapper));
+    }
+
+    private IllegalStateException createThrowable(final String message, final Throwable cause) {
+        final IllegalStateException thrown = new IllegalStateException(message);
+        if (cause != null) {
+            thrown.initCause(cause);
+        }
+        thrown.setStackTrace(new StackTraceElement[] {
+            frame("com.example.Dao", "connect"),
+            frame("com.example.Dao", "query", 2),
+            frame("com.example.DaoTest", "setUp"),
+            frame("org.junit.internal.runners.statements.RunBefores", "evaluate"),
+            frame("com.example.Rule", "evaluate"),
+            frame("com.example.Main", "main") });
+        return thrown;
+    }
+
+    private StackTraceElement frame(final String className, final String method) {
+        return frame(className, method, 1);
+    }
+
+    private StackTraceElement frame(final String className, final String method, final int line) {
+        final String simpleName = className.substring(className.lastIndexOf('.') + 1).replaceAll("\\$.*", "");
+        return new StackTraceElement(className, method, simpleName + ".java", line);
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.shared.utils.xml.Xpp3Dom;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class InTestLinkXmlRunListenerTest {
+
+    /** Bytes a passed testcase may allocate in the thread running it. */
+    private static final long BYTES_PER_PASSED_TEST = 512;
+
+    private static final int WARMUP = 20000;
+
+    private static final int TESTS = 10000;
+
+    private final AtomicInteger added = new AtomicInteger();
+
+    private final TestCaseSink sink = new TestCaseSink() {
+        @Override
+        public void add(TestCaseResult testCase) {
+            added.incrementAndGet();
+        }
+
+        @Override
+        public void flush() {
+            // nothing to write.
+        }
+
+        @Override
+        public void close() {
+            // nothing to write.
+        }
+    };
+
+    @Test
+    public void testNotes() {
+        final String header = "testFoo(com.example.FooTest)";
+        assertEquals(String.format("'%s' PASSED.", header), TestState.passed.notes(header));
+        assertEquals(String.format("'%s' FAILED because '%s'.", header, "Oops"),
+                TestState.failed.notes(header, "Oops"));
+        assertEquals(String.format("'%s' BLOCKED because '%s'.", header, null), TestState.blocked.notes(header, null));
+    }
+
+    @Test
+    public void testPassedNotesRenderedOnDemand() {
+        final TestCaseResult testCase = new TestCaseResult(new TestLinkId.ExternalTestLinkId("T1"), "goofy", 0L)
+                .completeWithoutReason(TestState.passed, "testFoo(com.example.FooTest)", 0L);
+        assertEquals("'testFoo(com.example.FooTest)' PASSED.", testCase.getNotes());
+        assertEquals(TestState.passed, testCase.getState());
+    }
+
+    @Test
+    public void testExecutionDuration() {
+        final TestLinkId<?> id = new TestLinkId.ExternalTestLinkId("T1");
+        assertEquals("1.50", new TestCaseResult(id, "goofy", 0L, 0L).finish(90000000000L).getExecutionDuration());
+        assertEquals("0.01", new TestCaseResult(id, "goofy", 0L, 0L).finish(300000000L).getExecutionDuration());
+        assertEquals("0.00", new TestCaseResult(id, "goofy", 0L, 0L).finish(299999999L).getExecutionDuration());
+        assertNull(new TestCaseResult(id, "goofy", 0L, TestState.passed, null).getExecutionDuration());
+    }
+
+    @Test
+    public void testExecutionDurationMeasuredByClock() throws Exception {
+        final DomTestCaseSink domSink = new DomTestCaseSink(new ByteArrayOutputStream());
+        final InTestLinkXmlRunListener listener = new InTestLinkXmlRunListener("goofy", domSink,
+                new FailureTraces(FailureTraces.DEFAULT_MAX_FRAMES), new Clock() {
+                    private long nanos;
+
+                    @Override
+                    long currentTimeMillis() {
+                        return 0L;
+                    }
+
+                    @Override
+                    long nanoTime() {
+                        nanos += 45000000000L;
+                        return nanos;
+                    }
+                });
+        final Description passed = Description.createTestDescription(SUTTestLinkRunListener.class,
+                "testSuccessExternal", SUTTestLinkRunListener.class.getMethod("testSuccessExternal").getAnnotations());
+        final Description failed = Description.createTestDescription(SUTTestLinkRunListener.class,
+                "testFailed", SUTTestLinkRunListener.class.getMethod("testFailed").getAnnotations());
+        listener.testStarted(passed);
+        listener.testFinished(passed);
+        listener.testStarted(failed);
+        listener.testFailure(new Failure(failed, new AssertionError("Oops")));
+        listener.testFinished(failed);
+        final Xpp3Dom results = domSink.getResults();
+        assertEquals("0.75", results.getChild(0).getChild("execution_duration").getValue());
+        assertEquals("0.75", results.getChild(1).getChild("execution_duration").getValue());
+        assertEquals("f", results.getChild(1).getChild("result").getValue());
+    }
+
+    @Test
+    public void testTraceKeptForFailureWithoutMessageAfterFailureWithMessage() throws Exception {
+        final DomTestCaseSink domSink = new DomTestCaseSink(new ByteArrayOutputStream());
+        final InTestLinkXmlRunListener listener = new InTestLinkXmlRunListener("goofy", domSink,
+                new FailureTraces(FailureTraces.DEFAULT_MAX_FRAMES));
+        final Description withMessage = Description.createTestDescription(SUTTestLinkRunListener.class,
+                "testFailed", SUTTestLinkRunListener.class.getMethod("testFailed").getAnnotations());
+        final Description withoutMessage = Description.createTestDescription(SUTTestLinkRunListener.class,
+                "testFailedWithOutMessage",
+                SUTTestLinkRunListener.class.getMethod("testFailedWithOutMessage").getAnnotations());
+        listener.testStarted(withMessage);
+        listener.testFailure(new Failure(withMessage, createThrowable("Oops")));
+        listener.testFinished(withMessage);
+        listener.testStarted(withoutMessage);
+        listener.testFailure(new Failure(withoutMessage, createThrowable(null)));
+        listener.testFinished(withoutMessage);
+        final Xpp3Dom results = domSink.getResults();
+        assertEquals(TestState.failed.notes(withMessage.getDisplayName(), "Oops"),
+                results.getChild(0).getChild("notes").getValue());
+        final String notes = results.getChild(1).getChild("notes").getValue();
+        assertTrue(notes, notes.contains("java.lang.IllegalStateException\n\tat "
+                + InTestLinkXmlRunListenerTest.class.getName() + ".createThrowable"));
+        assertFalse(notes, notes.contains("same trace as"));
+    }
+
+    @Test
+    public void testPassedTestAllocatesFixedBudget() throws Exception {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+        final TestLinkXmlRunListener listener = new TestLinkXmlRunListener("goofy", sink);
+        final Description description = Description.createTestDescription(SUTTestLinkRunListener.class,
+                "testSuccessExternal", SUTTestLinkRunListener.class.getMethod("testSuccessExternal").getAnnotations());
+        runPassed(listener, description, WARMUP);
+        final long threadId = Thread.currentThread().getId();
+        final long before = allocations.getThreadAllocatedBytes(threadId);
+        runPassed(listener, description, TESTS);
+        final long perTest = (allocations.getThreadAllocatedBytes(threadId) - before) / TESTS;
+        assertEquals(WARMUP + TESTS, added.get());
+        assertTrue(perTest + " bytes per passed test", perTest <= BYTES_PER_PASSED_TEST);
+    }
+
+    private void runPassed(final TestLinkXmlRunListener listener, final Description description, final int count)
+            throws Exception {
+        for (int i = 0; i < count; i++) {
+            listener.testStarted(description);
+            listener.testFinished(description);
+        }
+    }
+
+    private static Throwable createThrowable(final String message) {
+        return new IllegalStateException(message);
+    }
+}
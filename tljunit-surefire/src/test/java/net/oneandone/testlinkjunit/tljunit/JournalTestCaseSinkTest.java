@@ -0,0 +1,127 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.apache.maven.shared.utils.xml.Xpp3Dom;
+import org.apache.maven.shared.utils.xml.Xpp3DomBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class JournalTestCaseSinkTest extends AbstractTestLinkRunListenerTest {
+
+    private File journal;
+
+    private File recovered;
+
+    @Before
+    public void createFiles() throws IOException {
+        journal = File.createTempFile("testlink", ".journal");
+        recovered = File.createTempFile("testlink", ".recovered");
+    }
+
+    @After
+    public void deleteFiles() {
+        journal.delete();
+        recovered.delete();
+    }
+
+    @Test
+    public void testJournalIsDeletedAfterSuccessfulClose() throws IOException {
+        final JournalTestCaseSink sink = new JournalTestCaseSink(journal, recovered, 0,
+                new DomTestCaseSink(new ByteArrayOutputStream()));
+        sink.add(createTestCase(new TestLinkId.InternalTestLinkId(1L), TestState.passed));
+        sink.close();
+        assertFalse(journal.exists());
+    }
+
+    @Test
+    public void testRecoverTruncatedJournal() throws Exception {
+        final JournalTestCaseSink sink = new JournalTestCaseSink(journal, recovered, 0,
+                new DomTestCaseSink(new ByteArrayOutputStream()));
+        sink.add(createTestCase(new TestLinkId.InternalTestLinkId(1L), TestState.passed));
+        sink.add(createTestCase(new TestLinkId.ExternalTestLinkId("T1"), TestState.blocked));
+        sink.add(createTestCase(new TestLinkId.ExternalTestLinkId("T2"), TestState.failed));
+        // the JVM dies in the middle of the next record.
+        final FileOutputStream out = new FileOutputStream(journal, true);
+        try {
+            out.write(new byte[] {0, 0, 1, 0, 2});
+        } finally {
+            out.close();
+        }
+        assertEquals(3, TestLinkJournalRecovery.recover(journal, recovered));
+        final Xpp3Dom results = readRecovered();
+        assertEquals(3, results.getChildCount());
+        assertAllTestCasesHaveRequiredElements(results);
+        assertEquals(2, countTestsWithExternalIdfinal(results));
+        assertEquals(1, countIgnoredTests(results));
+    }
+
+    @Test
+    public void testLeftOverJournalIsRecoveredOnStart() throws Exception {
+        new JournalTestCaseSink(journal, recovered, 0, new DomTestCaseSink(new ByteArrayOutputStream()))
+                .add(createTestCase(new TestLinkId.InternalTestLinkId(1L), TestState.passed));
+        final JournalTestCaseSink sink = new JournalTestCaseSink(journal, recovered, 0,
+                new DomTestCaseSink(new ByteArrayOutputStream()));
+        assertEquals(1, readRecovered().getChildCount());
+        assertEquals(0, journal.length());
+        sink.close();
+    }
+
+    @Test
+    public void testCorruptRecordStopsRecovery() throws Exception {
+        final JournalTestCaseSink sink = new JournalTestCaseSink(journal, recovered, 0,
+                new DomTestCaseSink(new ByteArrayOutputStream()));
+        sink.add(createTestCase(new TestLinkId.InternalTestLinkId(1L), TestState.passed));
+        sink.add(createTestCase(new TestLinkId.InternalTestLinkId(2L), TestState.passed));
+        // flip the last byte of the notes in the second record.
+        final long length = journal.length();
+        final RandomAccessFile file = new RandomAccessFile(journal, "rw");
+        try {
+            file.seek(length - 13);
+            file.write(file.read() ^ 0xff);
+        } finally {
+            file.close();
+        }
+        assertEquals(1, TestLinkJournalRecovery.recover(journal, recovered));
+    }
+
+    private TestCaseResult createTestCase(final TestLinkId<?> id, final TestState state) {
+        return new TestCaseResult(id, "donald", System.currentTimeMillis(), state, "'" + id + "' äöüß");
+    }
+
+    private Xpp3Dom readRecovered() throws Exception {
+        final FileInputStream in = new FileInputStream(recovered);
+        try {
+            return Xpp3DomBuilder.build(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class JsonLinesTestCaseSinkTest {
+
+    @Test
+    public void testListener() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final JUnitCore core = new JUnitCore();
+        core.addListener(new TestLinkJsonRunListener(out, "goofy"));
+        core.run(SUTTestLinkRunListener.class);
+        final String[] lines = out.toString("UTF-8").split("\n");
+        assertEquals(7, lines.length);
+        int external = 0;
+        int blocked = 0;
+        for (final String line : lines) {
+            assertTrue(line, line.startsWith("{\"type\":") && line.endsWith("}"));
+            assertTrue(line, line.contains("\"tester\":\"goofy\""));
+            external += line.contains("\"type\":\"external_id\"") ? 1 : 0;
+            blocked += line.contains("\"state\":\"BLOCKED\",\"result\":\"b\"") ? 1 : 0;
+        }
+        assertEquals(5, external);
+        assertEquals(2, blocked);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompressedResultsRejected() throws Exception {
+        System.setProperty("testlink.json.results", "target/testlink.jsonl.gz");
+        try {
+            new TestLinkJsonRunListener();
+        } finally {
+            System.clearProperty("testlink.json.results");
+        }
+    }
+
+    @Test
+    public void testToJson() {
+        final TestCaseResult testCase = new TestCaseResult(new TestLinkId.InternalTestLinkId(4L), "donald", 0,
+                TestState.failed, "'a\"b' FAILED because 'c:\\d\n\tat e\u0001'.");
+        assertEquals("{\"type\":\"id\",\"id\":4,\"state\":\"FAILED\",\"result\":\"f\",\"timestamp\":0,"
+                + "\"tester\":\"donald\",\"notes\":\"'a\\\"b' FAILED because 'c:\\\\d\\n\\tat e\\u0001'.\"}",
+                JsonLinesTestCaseSink.toJson(testCase).toString());
+    }
+}
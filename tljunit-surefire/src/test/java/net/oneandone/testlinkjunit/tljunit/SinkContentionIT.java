@@ -0,0 +1,73 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Checks that no testcase is lost when {@link DomTestCaseSink#add(TestCaseResult)} is called by an increasing number
+ * of threads at once. The throughput is measured by <tt>SinkContentionBenchmark</tt> of tljunit-benchmarks.
+ *
+ * @author Mirko Friedenhagen
+ */
+public class SinkContentionIT {
+
+    private static final int TEST_CASES = 200000;
+
+    private static final int MAX_THREADS = Math.min(64, 2 * Runtime.getRuntime().availableProcessors());
+
+    private final TestCaseResult testCase = new TestCaseResult(new TestLinkId.ExternalTestLinkId("T-1"), "goofy", 0L,
+            TestState.passed, "'test(Foo)' PASSED.");
+
+    @Test
+    public void testContention() throws InterruptedException {
+        for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+            final DomTestCaseSink sink = new DomTestCaseSink(new ByteArrayOutputStream());
+            addConcurrently(sink, threads);
+            assertEquals(threads + " threads", TEST_CASES / threads * threads, sink.getResults().getChildCount());
+        }
+    }
+
+    private void addConcurrently(final TestCaseSink sink, final int threads) throws InterruptedException {
+        final int perThread = TEST_CASES / threads;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < perThread; i++) {
+                            sink.add(testCase);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+    }
+}
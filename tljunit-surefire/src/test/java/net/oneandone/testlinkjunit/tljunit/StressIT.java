@@ -0,0 +1,463 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.NOPLogger;
+
+/**
+ * Stress test feeding synthetic TestLink cases through one shared listener from many threads.
+ *
+ * Configured by system properties:
+ * <dl>
+ * <dt><tt>stress.sizes</tt></dt>
+ * <dd>comma separated numbers of cases, e.g. <tt>10000,100000,1000000</tt> (<tt>10000,100000</tt> by default).</dd>
+ * <dt><tt>stress.threads</tt></dt>
+ * <dd>number of platform threads (<tt>50</tt> by default).</dd>
+ * <dt><tt>stress.virtualTasks</tt></dt>
+ * <dd>number of tasks on virtual threads, skipped when the JVM has none (<tt>1000</tt> by default).</dd>
+ * <dt><tt>stress.limits</tt></dt>
+ * <dd>when <tt>true</tt>, exceeding the following limits fails the test, otherwise it is only logged as timing and
+ * heap usage depend on the machine (<tt>false</tt> by default).</dd>
+ * <dt><tt>stress.scalingTolerance</tt></dt>
+ * <dd>maximum factor the time per case may grow between two sizes (<tt>4</tt> by default).</dd>
+ * <dt><tt>stress.bytesPerCase</tt></dt>
+ * <dd>budget of retained heap per case held by {@link TestLinkXmlRunListener} (<tt>512</tt> by default).</dd>
+ * </dl>
+ *
+ * Lost testcases and tests left running always fail the test.
+ *
+ * @author Mirko Friedenhagen
+ */
+public class StressIT {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StressIT.class);
+
+    private static final int THREADS = Integer.getInteger("stress.threads", 50);
+
+    private static final int VIRTUAL_TASKS = Integer.getInteger("stress.virtualTasks", 1000);
+
+    private static final boolean LIMITS = Boolean.getBoolean("stress.limits");
+
+    private static final double SCALING_TOLERANCE = Double.parseDouble(System.getProperty("stress.scalingTolerance",
+            "4"));
+
+    private static final long BYTES_PER_CASE = Long.getLong("stress.bytesPerCase", 512);
+
+    private static final Ignore IGNORE = new Ignore() {
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return Ignore.class;
+        }
+
+        @Override
+        public String value() {
+            return "stress";
+        }
+    };
+
+    private static final AssertionError FAILURE = new AssertionError("stress");
+
+    @Test
+    public void testXmlListenerOnPlatformThreads() throws Exception {
+        stress(new XmlListenerFactory(), new PlatformThreads());
+    }
+
+    @Test
+    public void testXmlListenerOnVirtualThreads() throws Exception {
+        stress(new XmlListenerFactory(), new VirtualThreads());
+    }
+
+    @Test
+    public void testLoggingListenerOnPlatformThreads() throws Exception {
+        stress(new LoggingListenerFactory(), new PlatformThreads());
+    }
+
+    @Test
+    public void testLoggingListenerOnVirtualThreads() throws Exception {
+        stress(new LoggingListenerFactory(), new VirtualThreads());
+    }
+
+    private void stress(final ListenerFactory factory, final ThreadFactory threads) throws Exception {
+        Measurement previous = null;
+        for (final String size : System.getProperty("stress.sizes", "10000,100000").split(",")) {
+            final Measurement measurement = run(factory, threads, Integer.parseInt(size.trim()));
+            LOG.info("{} on {}: {}", new Object[] {factory, threads, measurement});
+            if (factory.retainsResults()) {
+                checkLimit("Retained " + measurement.retainedPerCase() + " bytes per case",
+                        measurement.retainedPerCase() <= BYTES_PER_CASE);
+            }
+            if (previous != null) {
+                checkLimit(String.format("Time per case grew from %.0fns to %.0fns", previous.nanosPerCase(),
+                        measurement.nanosPerCase()),
+                        measurement.nanosPerCase() <= SCALING_TOLERANCE * previous.nanosPerCase());
+            }
+            previous = measurement;
+        }
+    }
+
+    private static void checkLimit(final String message, final boolean withinLimit) {
+        if (LIMITS) {
+            assertTrue(message, withinLimit);
+        } else if (!withinLimit) {
+            LOG.warn(message);
+        }
+    }
+
+    private Measurement run(final ListenerFactory factory, final ThreadFactory threads, final int cases)
+            throws Exception {
+        final CountingOutputStream out = new CountingOutputStream();
+        final long usedBefore = usedHeap();
+        resetPeakHeap();
+        final RunListener listener = factory.create(out);
+        final long started = System.nanoTime();
+        listener.testRunStarted(Description.EMPTY);
+        final ExecutorService executor = threads.create();
+        try {
+            final int tasks = threads.tasks();
+            final List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int task = 0; task < tasks; task++) {
+                final int from = (int) ((long) cases * task / tasks);
+                final int to = (int) ((long) cases * (task + 1) / tasks);
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = from; i < to; i++) {
+                            fire(listener, i);
+                        }
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        final long finished = System.nanoTime();
+        final long retained = usedHeap() - usedBefore;
+        listener.testRunFinished(new Result());
+        final long closed = System.nanoTime();
+        assertEquals(0, factory.running(listener));
+        if (factory.retainsResults()) {
+            assertEquals("Lost testcases", cases, factory.completed());
+        }
+        return new Measurement(cases, finished - started, closed - finished, peakHeap(), retained, out.count);
+    }
+
+    private static void fire(final RunListener listener, final int i) {
+        try {
+            final String name = "case" + i;
+            switch (i % 10) {
+            case 0:
+                final Description failed = description(name, false);
+                listener.testStarted(failed);
+                listener.testFailure(new Failure(failed, FAILURE));
+                listener.testFinished(failed);
+                break;
+            case 1:
+                listener.testIgnored(description(name, true));
+                break;
+            case 2:
+                final Description assumption = description(name, false);
+                listener.testStarted(assumption);
+                listener.testAssumptionFailure(new Failure(assumption, FAILURE));
+                listener.testFinished(assumption);
+                break;
+            default:
+                final Description passed = description(name, false);
+                listener.testStarted(passed);
+                listener.testFinished(passed);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Description description(final String name, final boolean ignored) {
+        final TestLink testLink = new TestLink() {
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return TestLink.class;
+            }
+
+            @Override
+            public long internalId() {
+                return 0;
+            }
+
+            @Override
+            public String externalId() {
+                return "STRESS-" + name;
+            }
+        };
+        if (ignored) {
+            return Description.createTestDescription(StressIT.class.getName(), name, testLink, IGNORE);
+        }
+        return Description.createTestDescription(StressIT.class.getName(), name, testLink);
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void resetPeakHeap() {
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static final class Measurement {
+
+        private final int cases;
+
+        private final long eventNanos;
+
+        private final long closeNanos;
+
+        private final long peakHeap;
+
+        private final long retained;
+
+        private final long outputBytes;
+
+        Measurement(final int cases, final long eventNanos, final long closeNanos, final long peakHeap,
+                final long retained, final long outputBytes) {
+            this.cases = cases;
+            this.eventNanos = eventNanos;
+            this.closeNanos = closeNanos;
+            this.peakHeap = peakHeap;
+            this.retained = retained;
+            this.outputBytes = outputBytes;
+        }
+
+        double nanosPerCase() {
+            return (double) (eventNanos + closeNanos) / cases;
+        }
+
+        long retainedPerCase() {
+            return retained / cases;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d cases, %d cases/s, close %dms, peak heap %dMB, retained %d bytes/case, "
+                    + "output %d bytes", cases, cases * 1000000000L / Math.max(1L, eventNanos + closeNanos),
+                    closeNanos / 1000000L, peakHeap >> 20, retainedPerCase(), outputBytes);
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+
+    private static final class CountingSink implements TestCaseSink {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final TestCaseSink delegate;
+
+        CountingSink(final TestCaseSink delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void add(final TestCaseResult testCase) {
+            count.incrementAndGet();
+            delegate.add(testCase);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private interface ListenerFactory {
+
+        RunListener create(OutputStream out);
+
+        boolean retainsResults();
+
+        int running(RunListener listener);
+
+        int completed();
+    }
+
+    private static final class XmlListenerFactory implements ListenerFactory {
+
+        private CountingSink sink;
+
+        @Override
+        public RunListener create(final OutputStream out) {
+            sink = new CountingSink(new DomTestCaseSink(out));
+            return new TestLinkXmlRunListener("stress", sink);
+        }
+
+        @Override
+        public int completed() {
+            return sink.count.get();
+        }
+
+        @Override
+        public boolean retainsResults() {
+            return true;
+        }
+
+        @Override
+        public int running(final RunListener listener) {
+            return ((TestLinkXmlRunListener) listener).getInTestLinkListener().getRunningTestCaseCount();
+        }
+
+        @Override
+        public String toString() {
+            return "TestLinkXmlRunListener";
+        }
+    }
+
+    private static final class LoggingListenerFactory implements ListenerFactory {
+
+        @Override
+        public RunListener create(final OutputStream out) {
+            return new TestLinkLoggingRunListener(NOPLogger.NOP_LOGGER, URI.create("http://testlink.example.org/"));
+        }
+
+        @Override
+        public boolean retainsResults() {
+            return false;
+        }
+
+        @Override
+        public int completed() {
+            throw new UnsupportedOperationException("results are only logged");
+        }
+
+        @Override
+        public int running(final RunListener listener) {
+            return ((TestLinkLoggingRunListener) listener).getInTestLinkListener().getRunningTestCount();
+        }
+
+        @Override
+        public String toString() {
+            return "TestLinkLoggingRunListener";
+        }
+    }
+
+    private interface ThreadFactory {
+
+        ExecutorService create() throws Exception;
+
+        int tasks();
+    }
+
+    private static final class PlatformThreads implements ThreadFactory {
+
+        @Override
+        public ExecutorService create() {
+            return Executors.newFixedThreadPool(THREADS);
+        }
+
+        @Override
+        public int tasks() {
+            return THREADS;
+        }
+
+        @Override
+        public String toString() {
+            return THREADS + " platform threads";
+        }
+    }
+
+    private static final class VirtualThreads implements ThreadFactory {
+
+        @Override
+        public ExecutorService create() throws Exception {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (NoSuchMethodException e) {
+                assumeNoException(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public int tasks() {
+            return VIRTUAL_TASKS;
+        }
+
+        @Override
+        public String toString() {
+            return VIRTUAL_TASKS + " virtual threads";
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class TestCaseSessionTest {
+
+    private final List<String> calls = new ArrayList<String>();
+
+    private final TestCaseSink sink = new TestCaseSink() {
+        @Override
+        public void add(TestCaseResult testCase) {
+            calls.add("add");
+        }
+
+        @Override
+        public void flush() {
+            calls.add("flush");
+        }
+
+        @Override
+        public void close() {
+            calls.add("close");
+        }
+    };
+
+    @Test
+    public void testClosesAfterLastRunOnly() throws IOException {
+        final TestCaseSession session = new TestCaseSession(sink, TestCaseSession.DEFAULT_CHECKPOINT_INTERVAL);
+        session.runStarted();
+        session.runStarted();
+        session.runFinished();
+        assertEquals("[]", calls.toString());
+        session.runFinished();
+        assertEquals("[close]", calls.toString());
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        final TestCaseSession session = new TestCaseSession(sink, 0);
+        session.runStarted();
+        session.runStarted();
+        session.runStarted();
+        session.runFinished();
+        session.runFinished();
+        session.runFinished();
+        assertEquals("[flush, flush, close]", calls.toString());
+    }
+
+    @Test
+    public void testFinishedWithoutStartedCloses() throws IOException {
+        final TestCaseSession session = new TestCaseSession(sink, 0);
+        session.runFinished();
+        session.runFinished();
+        assertEquals("[close]", calls.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStartAfterClose() throws IOException {
+        final TestCaseSession session = new TestCaseSession(sink, 0);
+        session.runStarted();
+        session.runFinished();
+        session.runStarted();
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class TestCaseStoreTest {
+
+    private final TestCaseStore store = new TestCaseStore();
+
+    @Test
+    public void testRoundTrip() {
+        store.add(new TestCaseResult(new TestLinkId.InternalTestLinkId(4711L), "goofy", 1000L, TestState.failed,
+                "'foo' FAILED because 'bär'."));
+        store.add(new TestCaseResult(new TestLinkId.ExternalTestLinkId("T-1"), "donald", 2000L, TestState.blocked,
+                null));
+        assertEquals(2, store.size());
+        final TestCaseResult first = store.get(0);
+        assertEquals(4711L, first.getId().getId());
+        assertEquals("id", first.getId().getType());
+        assertEquals("goofy", first.getTester());
+        assertEquals(1000L, first.getTimestamp());
+        assertEquals(TestState.failed, first.getState());
+        assertEquals("'foo' FAILED because 'bär'.", first.getNotes());
+        final TestCaseResult second = store.get(1);
+        assertEquals("T-1", second.getId().getId());
+        assertEquals("external_id", second.getId().getType());
+        assertEquals("donald", second.getTester());
+        assertEquals(TestState.blocked, second.getState());
+        assertNull(second.getNotes());
+        assertEquals(TestCaseResult.UNKNOWN_DURATION, second.getDuration());
+    }
+
+    @Test
+    public void testDurationRoundTrip() throws IOException {
+        store.add(new TestCaseResult(new TestLinkId.ExternalTestLinkId("T-1"), "goofy", 1000L, TestState.passed,
+                "'foo' PASSED.", 90000000000L));
+        assertEquals(90000000000L, store.get(0).getDuration());
+        final TestCaseResult decoded = TestCaseRecordCodec.decode(TestCaseRecordCodec.encode(store.get(0)));
+        assertEquals(90000000000L, decoded.getDuration());
+        assertEquals("1.50", decoded.getExecutionDuration());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testDecodeRecordWithoutDurationFails() throws IOException {
+        final byte[] record = TestCaseRecordCodec.encode(new TestCaseResult(new TestLinkId.InternalTestLinkId(4711L),
+                "goofy", 1000L, TestState.failed, "'foo' FAILED because 'bär'.", 42L));
+        TestCaseRecordCodec.decode(Arrays.copyOf(record, record.length - 8));
+    }
+
+    @Test
+    public void testGrows() {
+        final StringBuilder notes = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            notes.append("0123456789");
+        }
+        for (int i = 0; i < 1000; i++) {
+            store.add(new TestCaseResult(new TestLinkId.ExternalTestLinkId("T-" + i), "goofy", i, TestState.passed,
+                    notes.toString()));
+        }
+        assertEquals(1000, store.size());
+        for (int i = 0; i < 1000; i++) {
+            final TestCaseResult testCase = store.get(i);
+            assertEquals("T-" + i, testCase.getId().getId());
+            assertEquals(i, testCase.getTimestamp());
+            assertEquals(notes.toString(), testCase.getNotes());
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        store.get(0);
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.Description;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class TestLinkProcessorTest {
+
+    private static final String SOURCE = "package sample;\n"
+            + "import net.oneandone.testlinkjunit.tljunit.TestLink;\n"
+            + "public class SampleTest {\n"
+            + "    @TestLink(externalId = \"SAMPLE-1\") public void testExternal() {}\n"
+            + "    @TestLink(internalId = 2) public void testInternal() {}\n"
+            + "    public static class InnerTest {\n"
+            + "        @TestLink(externalId = \"SAMPLE-1\") public void testDuplicate() {}\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final String MISSING_ID = "package sample;\n"
+            + "import net.oneandone.testlinkjunit.tljunit.TestLink;\n"
+            + "public class MissingTest {\n"
+            + "    @TestLink public void testMissing() {}\n"
+            + "}\n";
+
+    private File classes;
+
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @Before
+    public void createClassesDirectory() throws IOException {
+        classes = File.createTempFile("testlink", ".classes");
+        assertTrue(classes.delete());
+        assertTrue(classes.mkdir());
+        diagnostics = new DiagnosticCollector<JavaFileObject>();
+    }
+
+    @Test
+    public void testWritesIndex() throws IOException {
+        assertTrue(compile("sample.SampleTest", SOURCE));
+        final Properties index = readIndex();
+        assertEquals(3, index.size());
+        assertEquals("external_id=SAMPLE-1", index.getProperty("testExternal(sample.SampleTest)"));
+        assertEquals("id=2", index.getProperty("testInternal(sample.SampleTest)"));
+        assertEquals("external_id=SAMPLE-1", index.getProperty("testDuplicate(sample.SampleTest$InnerTest)"));
+    }
+
+    @Test
+    public void testWarnsOnDuplicateIds() throws IOException {
+        assertTrue(compile("sample.SampleTest", SOURCE));
+        final List<String> warnings = messages(Diagnostic.Kind.WARNING);
+        assertEquals(1, warnings.size());
+        assertTrue(warnings.get(0), warnings.get(0).startsWith("Duplicate external_id 'SAMPLE-1', already used by "));
+    }
+
+    @Test
+    public void testFailsOnMissingId() throws IOException {
+        assertFalse(compile("sample.MissingTest", MISSING_ID));
+        assertEquals(Collections.singletonList("Must set either internalId or externalId"),
+                messages(Diagnostic.Kind.ERROR));
+        assertFalse(new File(classes, TestLinkIndex.RESOURCE).exists());
+    }
+
+    @Test
+    public void testReplacesIndex() throws IOException {
+        assertTrue(compile("sample.SampleTest", SOURCE));
+        assertTrue(compile("sample.PlainTest", "package sample;\npublic class PlainTest {}\n"));
+        assertTrue(readIndex().isEmpty());
+    }
+
+    @Test
+    public void testLoadsIndex() throws IOException {
+        assertTrue(compile("sample.SampleTest", SOURCE));
+        final Map<String, TestLinkId<?>> ids = TestLinkIndex.load(
+                new URLClassLoader(new URL[] {classes.toURI().toURL()}, null));
+        assertEquals(3, ids.size());
+        assertEquals(new TestLinkId.ExternalTestLinkId("SAMPLE-1"), ids.get("testExternal(sample.SampleTest)"));
+        assertEquals(new TestLinkId.InternalTestLinkId(2L), ids.get("testInternal(sample.SampleTest)"));
+    }
+
+    @Test
+    public void testGetFindsCompiledTests() {
+        assertEquals(new TestLinkId.ExternalTestLinkId("T1"),
+                TestLinkIndex.get(Description.createTestDescription(SUTTestLinkRunListener.class,
+                        "testSuccessExternal")));
+        assertNull(TestLinkIndex.get(Description.createTestDescription(SUTTestLinkRunListener.class,
+                "testNoTestLinkAnnotationSuccess")));
+    }
+
+    @Test
+    public void testParse() {
+        assertEquals(new TestLinkId.ExternalTestLinkId("A=B"), TestLinkIndex.parse("external_id=A=B"));
+        assertEquals(new TestLinkId.InternalTestLinkId(3L), TestLinkIndex.parse("id=3"));
+        assertNull(TestLinkIndex.parse("id=three"));
+        assertNull(TestLinkIndex.parse("name=3"));
+        assertNull(TestLinkIndex.parse("3"));
+    }
+
+    private boolean compile(final String className, final String source) {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+        final JavaFileObject file = new SimpleJavaFileObject(
+                URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        final JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-d", classes.getPath(), "-classpath", System.getProperty("java.class.path"),
+                        "-proc:only"), null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new TestLinkProcessor()));
+        return task.call();
+    }
+
+    private List<String> messages(final Diagnostic.Kind kind) {
+        final List<String> messages = new ArrayList<String>();
+        for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == kind) {
+                messages.add(diagnostic.getMessage(null));
+            }
+        }
+        return messages;
+    }
+
+    private Properties readIndex() throws IOException {
+        final Properties index = new Properties();
+        final InputStream in = new FileInputStream(new File(classes, TestLinkIndex.RESOURCE));
+        try {
+            index.load(in);
+        } finally {
+            in.close();
+        }
+        return index;
+    }
+}
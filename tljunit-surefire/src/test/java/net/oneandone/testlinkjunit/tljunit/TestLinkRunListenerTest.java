@@ -16,10 +16,15 @@
 package net.oneandone.testlinkjunit.tljunit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeNoException;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -31,11 +36,13 @@ import java.util.Locale;
 import java.util.TimeZone;
 
 import org.apache.maven.shared.utils.xml.Xpp3Dom;
+import org.apache.maven.shared.utils.xml.Xpp3DomBuilder;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.Description;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
 import org.slf4j.LoggerFactory;
 
 
@@ -58,6 +65,256 @@ public class TestLinkRunListenerTest extends AbstractTestLinkRunListenerTest {
         assertEquals(2, countIgnoredTests(results));
     }
 
+    @Test
+    public void testStreaming() throws Exception {
+        final JUnitCore core = new JUnitCore();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TestLinkXmlRunListener xmlListener = new TestLinkXmlRunListener(out, "goofy", true);
+        core.addListener(xmlListener);
+        core.run(SUTTestLinkRunListener.class);
+        final Xpp3Dom results = Xpp3DomBuilder.build(new ByteArrayInputStream(out.toByteArray()), "UTF-8");
+        assertEquals(7, results.getChildCount());
+        assertAllTestCasesHaveRequiredElements(results);
+        assertEquals(5, countTestsWithExternalIdfinal(results));
+        assertEquals(2, countIgnoredTests(results));
+    }
+
+    @Test
+    public void testBinary() throws Exception {
+        final JUnitCore core = new JUnitCore();
+        final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        core.addListener(new TestLinkXmlRunListener("goofy", new BinaryTestCaseSink(binary)));
+        core.run(SUTTestLinkRunListener.class);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(7, TestLinkBinaryResults.toXml(new ByteArrayInputStream(binary.toByteArray()), out));
+        final Xpp3Dom results = Xpp3DomBuilder.build(new ByteArrayInputStream(out.toByteArray()), "UTF-8");
+        assertEquals(7, results.getChildCount());
+        assertAllTestCasesHaveRequiredElements(results);
+        assertEquals(5, countTestsWithExternalIdfinal(results));
+        assertEquals(2, countIgnoredTests(results));
+    }
+
+    @Test
+    public void testWrittenResultsMatchDom() throws Exception {
+        final JUnitCore core = new JUnitCore();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TestLinkXmlRunListener xmlListener = new TestLinkXmlRunListener(out, "goofy");
+        core.addListener(xmlListener);
+        core.run(SUTTestLinkRunListener.class);
+        assertEquals(xmlListener.getResults().toString(), out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testDrainKeepsOrder() {
+        final DomTestCaseSink sink = new DomTestCaseSink(new ByteArrayOutputStream());
+        final int count = 2 * DomTestCaseSink.DRAIN_THRESHOLD + 1;
+        for (int i = 0; i < count; i++) {
+            sink.add(new TestCaseResult(new TestLinkId.InternalTestLinkId((long) i), "goofy", 0L, TestState.passed,
+                    "passed"));
+        }
+        final Xpp3Dom results = sink.getResults();
+        assertEquals(count, results.getChildCount());
+        for (int i = 0; i < count; i++) {
+            assertEquals(String.valueOf(i), results.getChild(i).getAttribute("id"));
+        }
+    }
+
+    @Test
+    public void testFailureReportedByAnotherThread() throws Exception {
+        final DomTestCaseSink sink = new DomTestCaseSink(new ByteArrayOutputStream());
+        final InTestLinkXmlRunListener listener = new InTestLinkXmlRunListener("goofy", sink);
+        final Description description = createDescription("testFailed");
+        listener.testStarted(description);
+        final Thread timeout = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                listener.testFailure(new Failure(description, new AssertionError("timed out")));
+            }
+        });
+        timeout.start();
+        timeout.join();
+        listener.testFinished(description);
+        assertEquals("f", sink.getResults().getChild(0).getChild("result").getValue());
+        assertEquals(0, listener.getRunningTestCaseCount());
+        assertEquals(0, listener.getRunningTestCount());
+    }
+
+    @Test
+    public void testEqualDescriptionsOfConcurrentRuns() throws Exception {
+        final DomTestCaseSink sink = new DomTestCaseSink(new ByteArrayOutputStream());
+        final InTestLinkXmlRunListener listener = new InTestLinkXmlRunListener("goofy", sink);
+        final Description first = createDescription("testFailed");
+        final Description second = createDescription("testFailed");
+        assertEquals(first, second);
+        listener.testStarted(first);
+        listener.testStarted(second);
+        listener.testFailure(new Failure(first, new AssertionError("failed")));
+        listener.testFinished(second);
+        listener.testFinished(first);
+        final Xpp3Dom results = sink.getResults();
+        assertEquals("p", results.getChild(0).getChild("result").getValue());
+        assertEquals("f", results.getChild(1).getChild("result").getValue());
+        assertEquals(0, listener.getRunningTestCaseCount());
+    }
+
+    @Test
+    public void testFailureOfTestNotStarted() throws Exception {
+        final DomTestCaseSink sink = new DomTestCaseSink(new ByteArrayOutputStream());
+        final InTestLinkXmlRunListener listener = new InTestLinkXmlRunListener("goofy", sink);
+        final Description description = createDescription("testFailed");
+        listener.testFailure(new Failure(description, new AssertionError("failed")));
+        listener.testFinished(description);
+        assertEquals(0, sink.getResults().getChildCount());
+        assertEquals(0, listener.getRunningTestCount());
+    }
+
+    @Test
+    public void testLoggingListenerForgetsFinishedTests() throws Exception {
+        final JUnitCore core = new JUnitCore();
+        final TestLinkLoggingRunListener loggingListener = new TestLinkLoggingRunListener();
+        core.addListener(loggingListener);
+        core.run(SUTTestLinkRunListener.class);
+        assertEquals(0, loggingListener.getInTestLinkListener().getRunningTestCount());
+    }
+
+    @Test
+    public void testAsyncLoggingListenerLogsSameEvents() throws Exception {
+        final AsyncLogDispatcherTest.RecordingLogger synchronous = new AsyncLogDispatcherTest.RecordingLogger();
+        final AsyncLogDispatcherTest.RecordingLogger asynchronous = new AsyncLogDispatcherTest.RecordingLogger();
+        final URI uri = URI.create("http://testlink.sourceforge.net/demo/");
+        final JUnitCore core = new JUnitCore();
+        // time stands still, so both listeners log the same elapsed time.
+        final Clock clock = new Clock() {
+            @Override
+            long currentTimeMillis() {
+                return 0L;
+            }
+
+            @Override
+            long nanoTime() {
+                return 0L;
+            }
+        };
+        core.addListener(new TestLinkLoggingRunListener(new InTestLinkLogRunListener(synchronous.logger(), uri, null,
+                clock)));
+        core.addListener(new TestLinkLoggingRunListener(new InTestLinkLogRunListener(asynchronous.logger(), uri,
+                new AsyncLogDispatcher(asynchronous.logger(), 2, OverflowPolicy.block), clock)));
+        core.run(SUTTestLinkRunListener.class);
+        assertTrue(synchronous.getCalls().size() > 0);
+        assertEquals(synchronous.getCalls(), asynchronous.getCalls());
+    }
+
+    @Test
+    public void testIdResolvedOncePerRunningTest() throws Exception {
+        final TestLinkXmlRunListener xmlListener = new TestLinkXmlRunListener(new ByteArrayOutputStream(), "goofy");
+        final InTestLinkXmlRunListener listener = xmlListener.getInTestLinkListener();
+        // not found in the TestLinkIndex, so resolved by reflection.
+        final Description description = Description.createTestDescription(SUTTestLinkRunListener.class,
+                "testSuccessExternal[0]", createDescription("testSuccessExternal").getAnnotations().toArray(
+                        new Annotation[0]));
+        final Description plain = createDescription("testNoTestLinkAnnotationSuccess");
+        xmlListener.testStarted(description);
+        xmlListener.testStarted(plain);
+        final TestLinkId<?> id = listener.getTestLinkId(description);
+        assertSame(id, listener.getTestLinkId(description));
+        assertSame(id.toString(), id.toString());
+        assertNull(listener.getTestLinkId(plain));
+        xmlListener.testFinished(plain);
+        xmlListener.testFinished(description);
+        assertNotSame(id, listener.getTestLinkId(description));
+        assertEquals(id, listener.getTestLinkId(description));
+        assertNull(listener.getTestLinkId(plain));
+    }
+
+    @Test
+    public void testIdFoundInIndex() throws Exception {
+        final TestLinkXmlRunListener xmlListener = new TestLinkXmlRunListener(new ByteArrayOutputStream(), "goofy");
+        // descriptions without annotations, e.g. of surefire, are looked up in the index.
+        final Description description = Description.createTestDescription(SUTTestLinkRunListener.class,
+                "testSuccessExternal");
+        assertNotNull(TestLinkIndex.get(description));
+        assertSame(TestLinkIndex.get(description), xmlListener.getInTestLinkListener().getTestLinkId(description));
+    }
+
+    @Test
+    public void testIndexPreferredToRuntimeAnnotation() throws Exception {
+        final TestLinkXmlRunListener xmlListener = new TestLinkXmlRunListener(new ByteArrayOutputStream(), "goofy");
+        final Description description = createDescription("testSuccessExternal");
+        assertNotNull(TestLinkIndex.get(description));
+        assertSame(TestLinkIndex.get(description), xmlListener.getInTestLinkListener().getTestLinkId(description));
+    }
+
+    @Test
+    public void testPrefilterSkipsUnannotatedTests() throws Exception {
+        final TestLinkXmlRunListener xmlListener = new TestLinkXmlRunListener(new ByteArrayOutputStream(), "goofy");
+        final InTestLinkXmlRunListener listener = xmlListener.getInTestLinkListener();
+        final Description suite = Description.createSuiteDescription(SUTTestLinkRunListener.class);
+        suite.addChild(createDescription("testSuccessExternal"));
+        suite.addChild(createDescription("testNoTestLinkAnnotationSuccess"));
+        xmlListener.testRunStarted(Description.EMPTY);
+        xmlListener.testSuiteStarted(suite);
+        // same display name as a test known to have no annotation, so the annotation is never looked at.
+        final Description plain = Description.createTestDescription(SUTTestLinkRunListener.class,
+                "testNoTestLinkAnnotationSuccess", createDescription("testSuccessExternal").getAnnotations().toArray(
+                        new Annotation[0]));
+        xmlListener.testStarted(plain);
+        assertNull(listener.getTestLinkId(plain));
+        xmlListener.testFinished(plain);
+        assertEquals(0, listener.getRunningTestCaseCount());
+        final Description annotated = createDescription("testSuccessExternal");
+        xmlListener.testStarted(annotated);
+        assertEquals(new TestLinkId.ExternalTestLinkId("T1"), listener.getTestLinkId(annotated));
+        xmlListener.testFinished(annotated);
+    }
+
+    @Test
+    public void testUnannotatedTestsRememberedBounded() throws Exception {
+        final TestLinkXmlRunListener xmlListener = new TestLinkXmlRunListener(new ByteArrayOutputStream(), "goofy");
+        final InTestLinkXmlRunListener listener = xmlListener.getInTestLinkListener();
+        final Description suite = Description.createSuiteDescription(SUTTestLinkRunListener.class);
+        for (int i = 0; i <= AbstractInTestLinkRunListener.MAX_UNANNOTATED; i++) {
+            suite.addChild(Description.createTestDescription(SUTTestLinkRunListener.class, "plain" + i));
+        }
+        xmlListener.testRunStarted(suite);
+        assertEquals(1, listener.getUnannotatedCount());
+        final Description forgotten = Description.createTestDescription(SUTTestLinkRunListener.class, "plain0");
+        xmlListener.testStarted(forgotten);
+        assertNull(listener.getTestLinkId(forgotten));
+        xmlListener.testFinished(forgotten);
+        assertEquals(2, listener.getUnannotatedCount());
+    }
+
+    private Description createDescription(final String methodName) throws NoSuchMethodException {
+        return Description.createTestDescription(SUTTestLinkRunListener.class, methodName,
+                SUTTestLinkRunListener.class.getMethod(methodName).getAnnotations());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStreamingHoldsNoResults() throws IOException {
+        final TestLinkXmlRunListener xmlListener = new TestLinkXmlRunListener(new ByteArrayOutputStream(), "goofy",
+                true);
+        try {
+            xmlListener.getResults();
+        } finally {
+            xmlListener.getInTestLinkListener().getSink().close();
+        }
+    }
+
+    @Test
+    public void testStreamingWriterFailureDoesNotBlock() {
+        final StreamingXmlTestCaseSink sink = new StreamingXmlTestCaseSink(new ByteArrayOutputStream(), 1);
+        // the missing id fails the writer thread with a NullPointerException.
+        for (int i = 0; i < 10; i++) {
+            sink.add(new TestCaseResult(null, "goofy", 0L, TestState.passed, "'foo' PASSED."));
+        }
+        try {
+            sink.close();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof NullPointerException);
+        }
+    }
+
     @Test
     @TestLink(externalId="testCreateTimeStamp")
     public void testCreateTimeStamp() {
@@ -65,11 +322,22 @@ public class TestLinkRunListenerTest extends AbstractTestLinkRunListenerTest {
         TimeZone.setDefault(timeZoneUTC);
         final Calendar calendar = Calendar.getInstance(timeZoneUTC, Locale.US);
         calendar.setTimeInMillis(0);
-        final InTestLinkXmlRunListener inTestLinkStrategy = new InTestLinkXmlRunListener("noone");
-        Xpp3Dom timeStamp = inTestLinkStrategy.createTimeStamp(calendar.getTime());
+        final DomTestCaseSink sink = new DomTestCaseSink(new ByteArrayOutputStream());
+        Xpp3Dom timeStamp = sink.createTimeStamp(calendar.getTime());
         assertEquals(XML_HEADER + "<timestamp>1970-01-01 00:00:00</timestamp>", timeStamp.toString());
     }
 
+    @Test
+    public void testTimestampFormatMemoizesSecond() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        final TimestampFormat format = new TimestampFormat();
+        final String first = format.format(1000L);
+        assertEquals("1970-01-01 00:00:01", first);
+        assertSame(first, format.format(1999L));
+        assertEquals("1970-01-01 00:00:02", format.format(2000L));
+        assertEquals("1969-12-31 23:59:59", format.format(-1L));
+    }
+
     @Test
     @TestLink(externalId="testTestLinkAnnotationWithoutId")
     public void testTestLinkAnnotationWithoutId() {
@@ -89,7 +357,8 @@ public class TestLinkRunListenerTest extends AbstractTestLinkRunListenerTest {
                 return TestLink.NOT_AVAILABLE;
             }
         });
-        final InTestLinkXmlRunListener inTestLinkStrategy = new InTestLinkXmlRunListener("noone");
+        final InTestLinkXmlRunListener inTestLinkStrategy = new InTestLinkXmlRunListener("noone",
+                new DomTestCaseSink(new ByteArrayOutputStream()));
         try {
             inTestLinkStrategy.testStarted(description);
             fail("IllegalArgumentException should be thrown!");
@@ -0,0 +1,163 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+
+import org.apache.maven.shared.utils.xml.Xpp3Dom;
+import org.apache.maven.shared.utils.xml.Xpp3DomBuilder;
+import org.junit.Test;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class TestLinkSurefireReportsTest {
+
+    private static final String SUT = SUTTestLinkRunListener.class.getName();
+
+    private static final String REPORT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<testsuite name=\"" + SUT + "\" timestamp=\"2013-01-01T00:00:00\" tests=\"6\">"
+            + "<properties><property name=\"foo\" value=\"bar\"/></properties>"
+            + "<testcase name=\"testSuccessExternal\" classname=\"" + SUT + "\" time=\"0.001\"/>"
+            + "<testcase name=\"testSuccessInternal[0]\" classname=\"" + SUT + "\" time=\"0.001\">"
+            + "<flakyFailure message=\"first\" type=\"java.lang.AssertionError\">trace</flakyFailure></testcase>"
+            + "<testcase name=\"testFailed\" classname=\"" + SUT + "\" time=\"0.001\">"
+            + "<failure message=\"Oops\" type=\"java.lang.AssertionError\">trace</failure>"
+            + "<system-out>output</system-out></testcase>"
+            + "<testcase name=\"testFailedWithOutMessage\" classname=\"" + SUT + "\" time=\"0.001\">"
+            + "<error type=\"java.lang.NullPointerException\">  java.lang.NullPointerException  </error></testcase>"
+            + "<testcase name=\"testIgnore\" classname=\"" + SUT + "\" time=\"0\">"
+            + "<skipped message=\"Does not run.\"/></testcase>"
+            + "<testcase name=\"testNoTestLinkAnnotationSuccess\" classname=\"" + SUT + "\" time=\"0.001\"/>"
+            + "</testsuite>";
+
+    @Test
+    public void testIndex() throws IOException {
+        final TestLinkClassIndex index = TestLinkClassIndex.scan(classesDirectory());
+        assertEquals(new TestLinkId.ExternalTestLinkId("T1"), index.get(SUT, "testSuccessExternal"));
+        assertEquals(new TestLinkId.InternalTestLinkId(4L), index.get(SUT, "testSuccessInternal"));
+        assertNull(index.get(SUT, "testNoTestLinkAnnotationSuccess"));
+        assertNull(index.get("does.not.Exist", "testSuccessExternal"));
+    }
+
+    @Test
+    public void testIndexFindsInheritedMethods() throws IOException {
+        final TestLinkClassIndex index = TestLinkClassIndex.scan(classesDirectory());
+        assertEquals(new TestLinkId.ExternalTestLinkId("testCreateTimeStamp"),
+                index.get(TestLinkRunListenerTest.class.getName(), "testCreateTimeStamp"));
+        assertEquals(new TestLinkId.ExternalTestLinkId("CONVERTER-SUBCLASS"),
+                index.get(SubClass.class.getName(), "testInherited"));
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        final TestLinkSurefireReports reports = new TestLinkSurefireReports(classesDirectory(), "goofy", 2);
+        final DomTestCaseSink sink = new DomTestCaseSink(new ByteArrayOutputStream());
+        assertEquals(5, reports.read(new ByteArrayInputStream(REPORT.getBytes("UTF-8")), 0L, sink));
+        final Xpp3Dom results = sink.getResults();
+        assertEquals("p", results.getChild(0).getChild("result").getValue());
+        assertEquals("'testSuccessExternal(" + SUT + ")' PASSED.", results.getChild(0).getChild("notes").getValue());
+        assertEquals("goofy", results.getChild(0).getChild("tester").getValue());
+        assertEquals("p", results.getChild(1).getChild("result").getValue());
+        assertEquals("4", results.getChild(1).getAttribute("id"));
+        assertEquals("'testFailed(" + SUT + ")' FAILED because 'Oops'.", results.getChild(2).getChild("notes")
+                .getValue());
+        assertEquals("'testFailedWithOutMessage(" + SUT + ")' FAILED because 'java.lang.NullPointerException'.",
+                results.getChild(3).getChild("notes").getValue());
+        assertEquals("b", results.getChild(4).getChild("result").getValue());
+        assertEquals("'testIgnore(" + SUT + ")' BLOCKED because 'Does not run.'.", results.getChild(4)
+                .getChild("notes").getValue());
+        assertEquals("0.00", results.getChild(4).getChild("execution_duration").getValue());
+    }
+
+    @Test
+    public void testToXml() throws Exception {
+        final File report = new File("target/TEST-" + SUT + ".xml");
+        final OutputStream reportOut = new FileOutputStream(report);
+        try {
+            reportOut.write(REPORT.getBytes("UTF-8"));
+        } finally {
+            reportOut.close();
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TestLinkSurefireReports reports = new TestLinkSurefireReports(classesDirectory(), "goofy", 2);
+        assertEquals(15, reports.toXml(Collections.nCopies(3, report), out));
+        final Xpp3Dom results = Xpp3DomBuilder.build(new ByteArrayInputStream(out.toByteArray()), "UTF-8");
+        assertEquals(15, results.getChildCount());
+    }
+
+    @Test
+    public void testSkipsClassesWhichCouldNotBeLoaded() throws IOException {
+        final File directory = new File("target/broken-classes");
+        directory.mkdirs();
+        final OutputStream out = new FileOutputStream(new File(directory, "Broken.class"));
+        try {
+            out.write(new byte[] { 1, 2, 3, 4 });
+        } finally {
+            out.close();
+        }
+        final TestLinkClassIndex index = TestLinkClassIndex.scan(directory,
+                Collections.singletonList(classesDirectory()));
+        assertEquals(0, index.size());
+        assertEquals(Collections.singleton("Broken"), index.getSkipped().keySet());
+        assertTrue(index.getSkipped().get("Broken"), index.getSkipped().get("Broken").contains("ClassFormatError"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotADirectory() throws IOException {
+        TestLinkClassIndex.scan(new File(classesDirectory(), "does-not-exist"));
+    }
+
+    @Test
+    public void testParseDuration() {
+        assertEquals(1000000L, TestLinkSurefireReports.parseDuration("0.001"));
+        assertEquals(1234500000000L, TestLinkSurefireReports.parseDuration("1,234.5"));
+        assertEquals(TestCaseResult.UNKNOWN_DURATION, TestLinkSurefireReports.parseDuration(null));
+        assertEquals(TestCaseResult.UNKNOWN_DURATION, TestLinkSurefireReports.parseDuration("-1"));
+        assertEquals(TestCaseResult.UNKNOWN_DURATION, TestLinkSurefireReports.parseDuration("n/a"));
+    }
+
+    @Test
+    public void testMethodName() {
+        assertEquals("test", TestLinkSurefireReports.methodName("test[0]"));
+        assertEquals("test", TestLinkSurefireReports.methodName("test"));
+    }
+
+    private File classesDirectory() {
+        return new File(SUTTestLinkRunListener.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+    }
+
+    public static class SuperClass {
+
+        @TestLink(externalId = "CONVERTER-SUBCLASS")
+        public void testInherited() {
+            // only scanned.
+        }
+    }
+
+    public static class SubClass extends SuperClass {
+    }
+}
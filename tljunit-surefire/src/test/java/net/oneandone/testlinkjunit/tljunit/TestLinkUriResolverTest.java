@@ -16,6 +16,8 @@
 package net.oneandone.testlinkjunit.tljunit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.net.URI;
 import java.util.Arrays;
@@ -34,24 +36,38 @@ public class TestLinkUriResolverTest {
 
     private final URI expectedUri;
     private final TestLinkId<?> testLinkId;
+    private final TestLinkVersion version;
 
     @Parameters
     public static Collection<Object[]> getData() {
         return Arrays.asList(
             new Object[]{
                 URI.create("http://testlink.sourceforge.net/demo/lib/testcases/tcPrint.php?testcase_id=2750"),
-                new TestLinkId.InternalTestLinkId(2750L)
+                new TestLinkId.InternalTestLinkId(2750L),
+                TestLinkVersion.v1_8
             },
             new Object[]{
                 URI.create("http://testlink.sourceforge.net/demo/lib/testcases/archiveData.php?targetTestCase=SM-1&edit=testcase&allowedit=0"),
-                new TestLinkId.ExternalTestLinkId("SM-1")
+                new TestLinkId.ExternalTestLinkId("SM-1"),
+                TestLinkVersion.v1_8
+            },
+            new Object[]{
+                URI.create("http://testlink.sourceforge.net/demo/lib/testcases/archiveData.php?edit=testcase&id=2750"),
+                new TestLinkId.InternalTestLinkId(2750L),
+                TestLinkVersion.v1_9
+            },
+            new Object[]{
+                URI.create("http://testlink.sourceforge.net/demo/linkto.php?tprojectPrefix=SM&item=testcase&id=SM-1"),
+                new TestLinkId.ExternalTestLinkId("SM-1"),
+                TestLinkVersion.v1_9
             }
         );
     }
 
-    public TestLinkUriResolverTest(URI expectedUri, final TestLinkId<?> testLinkId) {
+    public TestLinkUriResolverTest(URI expectedUri, final TestLinkId<?> testLinkId, final TestLinkVersion version) {
         this.testLinkId = testLinkId;
         this.expectedUri = expectedUri;
+        this.version = version;
     }
 
     /**
@@ -61,8 +77,8 @@ public class TestLinkUriResolverTest {
      */
     @Test
     public void testFromInternalTestLinkId() {
-        final TestLinkUriResolver resolver = new TestLinkUriResolver(
-                URI.create("http://testlink.sourceforge.net/demo/"));
+        final TestLinkUriResolver resolver = TestLinkUriResolver.create(
+                URI.create("http://testlink.sourceforge.net/demo/"), version, null, null);
         final URI actual = resolver.fromTestLinkId(testLinkId);
         assertEquals(expectedUri, actual);
     }
@@ -74,8 +90,58 @@ public class TestLinkUriResolverTest {
      */
     @Test
     public void testFromInternalTestLinkIdWithoutTrailingSlash() {
-        final TestLinkUriResolver resolver = new TestLinkUriResolver(URI.create("http://testlink.sourceforge.net/demo"));
+        final TestLinkUriResolver resolver = TestLinkUriResolver.create(
+                URI.create("http://testlink.sourceforge.net/demo"), version, null, null);
         final URI actual = resolver.fromTestLinkId(testLinkId);
         assertEquals(expectedUri, actual);
     }
+
+    @Test
+    public void testCachedPerTestLinkId() {
+        final TestLinkUriResolver resolver = TestLinkUriResolver.create(
+                URI.create("http://testlink.sourceforge.net/demo/"), version, null, null);
+        final URI actual = resolver.fromTestLinkId(testLinkId);
+        assertSame(actual, resolver.fromTestLinkId(testLinkId));
+        assertEquals(1, resolver.getCachedCount());
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        final TestLinkUriResolver resolver = new TestLinkUriResolver(
+                URI.create("http://testlink.sourceforge.net/demo/"), version.getInternalTemplate(),
+                version.getExternalTemplate(), 0);
+        assertEquals(expectedUri, resolver.fromTestLinkId(testLinkId));
+        assertEquals(expectedUri, resolver.fromTestLinkId(testLinkId));
+        assertEquals(0, resolver.getCachedCount());
+    }
+
+    @Test
+    public void testCacheEvictsWhenFull() {
+        final TestLinkUriResolver resolver = new TestLinkUriResolver(
+                URI.create("http://testlink.sourceforge.net/demo/"), version.getInternalTemplate(),
+                version.getExternalTemplate(), 2);
+        resolver.fromTestLinkId(new TestLinkId.ExternalTestLinkId("SM-1"));
+        resolver.fromTestLinkId(new TestLinkId.ExternalTestLinkId("SM-2"));
+        final TestLinkId<?> third = new TestLinkId.ExternalTestLinkId("SM-3");
+        final URI thirdUri = resolver.fromTestLinkId(third);
+        assertEquals(2, resolver.getCachedCount());
+        assertSame(thirdUri, resolver.fromTestLinkId(third));
+    }
+
+    @Test
+    public void testOverriddenTemplates() {
+        final TestLinkUriResolver resolver = TestLinkUriResolver.create(
+                URI.create("http://testlink.sourceforge.net/demo/"), version, "/tl/{id}", "browse/{prefix}/{id}");
+        final URI actual = resolver.fromTestLinkId(testLinkId);
+        if (testLinkId instanceof TestLinkId.InternalTestLinkId) {
+            assertEquals(URI.create("http://testlink.sourceforge.net/tl/2750"), actual);
+        } else {
+            assertEquals(URI.create("http://testlink.sourceforge.net/demo/browse/SM/SM-1"), actual);
+        }
+    }
+
+    @Test
+    public void testNoResolverWithoutUri() {
+        assertNull(TestLinkUriResolver.create(InTestLinkLogRunListener.NULL_URI, version, null, null));
+    }
 }
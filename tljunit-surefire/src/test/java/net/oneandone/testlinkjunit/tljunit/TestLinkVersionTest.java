@@ -0,0 +1,46 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.testlinkjunit.tljunit;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Mirko Friedenhagen
+ */
+public class TestLinkVersionTest {
+
+    @Test
+    public void testOf() {
+        assertEquals(TestLinkVersion.v1_8, TestLinkVersion.of("1.7"));
+        assertEquals(TestLinkVersion.v1_8, TestLinkVersion.of("1.8"));
+        assertEquals(TestLinkVersion.v1_8, TestLinkVersion.of(" 1.8.5 "));
+        assertEquals(TestLinkVersion.v1_9, TestLinkVersion.of("1.9"));
+        assertEquals(TestLinkVersion.v1_9, TestLinkVersion.of("1.9.20"));
+        assertEquals(TestLinkVersion.v1_9, TestLinkVersion.of("2.0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfWithoutMinorVersion() {
+        TestLinkVersion.of("2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfMalformed() {
+        TestLinkVersion.of("1.x");
+    }
+}
@@ -26,10 +26,12 @@ import java.net.URI;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.maven.shared.utils.xml.Xpp3Dom;
 import org.junit.After;
 import org.junit.Test;
+import org.junit.runner.Description;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Result;
 import org.slf4j.LoggerFactory;
@@ -48,12 +50,19 @@ public class ThreadingIT extends AbstractTestLinkRunListenerTest {
 
     private final PrintStream out;
 
+    private final AtomicInteger closed = new AtomicInteger();
+
     public ThreadingIT() throws FileNotFoundException {
         out = new PrintStream(new OutputStream() {
             @Override
             public void write(int b) throws IOException {
                 // just do nothing
             }
+
+            @Override
+            public void close() {
+                closed.incrementAndGet();
+            }
         });
         xmlRunListener = new TestLinkXmlRunListener(out, "donald");
         loggingRunListener = new TestLinkLoggingRunListener(LoggerFactory.getLogger("THREADINGIT"),
@@ -64,6 +73,9 @@ public class ThreadingIT extends AbstractTestLinkRunListenerTest {
     public void tearDown() throws Exception {
         pool.shutdown();
         pool.awaitTermination(100, TimeUnit.SECONDS);
+        assertEquals(0, closed.get());
+        xmlRunListener.testRunFinished(new Result());
+        assertEquals(1, closed.get());
         final Xpp3Dom results = xmlRunListener.getResults();
         assertAllTestCasesHaveRequiredElements(results);
         assertEquals(700, results.getChildCount());
@@ -79,7 +91,9 @@ public class ThreadingIT extends AbstractTestLinkRunListenerTest {
 
     @TestLink(externalId = "testParallel")
     @Test
-    public void testParallel() throws FileNotFoundException {
+    public void testParallel() throws Exception {
+        // keeps the results open until all runs are finished.
+        xmlRunListener.testRunStarted(Description.EMPTY);
         for (int i = 0; i < 100; i++) {
             final JUnitCore core = new JUnitCore();
             core.addListener(xmlRunListener);